@@ -12,12 +12,22 @@ package com.osiris.autoplug.client;
 import com.osiris.autoplug.client.configs.*;
 import com.osiris.autoplug.client.console.UserInput;
 import com.osiris.autoplug.client.managers.FileManager;
+import com.osiris.autoplug.client.monitoring.HangWatchdog;
+import com.osiris.autoplug.client.monitoring.Metrics;
+import com.osiris.autoplug.client.monitoring.MetricsServer;
+import com.osiris.autoplug.client.monitoring.ServerDiagnostics;
+import com.osiris.autoplug.client.monitoring.TickMonitor;
 import com.osiris.autoplug.client.network.local.ConPluginCommandReceive;
 import com.osiris.autoplug.client.network.online.ConMain;
+import com.osiris.autoplug.client.tasks.backup.BackupVerifier;
+import com.osiris.autoplug.client.utils.ConsoleHistory;
 import com.osiris.autoplug.client.utils.GD;
+import com.osiris.autoplug.client.utils.StartupTimer;
 import com.osiris.autoplug.client.utils.UtilsConfig;
 import com.osiris.autoplug.client.utils.UtilsJar;
 import com.osiris.autoplug.core.logger.AL;
+import com.osiris.autoplug.core.logger.Message;
+import com.osiris.autoplug.core.logger.MessageFormatter;
 import com.osiris.dyml.DYModule;
 import com.osiris.dyml.DreamYaml;
 import com.osiris.dyml.watcher.DYFileEvent;
@@ -35,6 +45,10 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -45,6 +59,7 @@ public class Main {
     public static final ConMain CON_MAIN = new ConMain();
 
     public static void main(String[] args) {
+        StartupTimer timer = new StartupTimer();
         // Check various things to ensure an fully functioning application.
         // If one of these checks fails this application is stopped.
         try {
@@ -92,6 +107,7 @@ public class Main {
             system.checkReadWritePermissions();
             system.checkInternetAccess();
             system.addShutDownHook();
+            timer.phase("checks");
 
             // Set default SysOut to TeeOutput, for the OnlineConsole
             AnsiConsole.systemInstall(); // This must happen before the stuff below.
@@ -120,6 +136,7 @@ public class Main {
             AL.debug(Main.class, "!!!IMPORTANT!!! -> THIS LOG-FILE CONTAINS SENSITIVE INFORMATION <- !!!IMPORTANT!!!");
             AL.debug(Main.class, "!!!IMPORTANT!!! -> THIS LOG-FILE CONTAINS SENSITIVE INFORMATION <- !!!IMPORTANT!!!");
             AL.debug(Main.class, "Running autoplug from: " + jarPath);
+            timer.phase("logger");
         } catch (Exception e) {
             e.printStackTrace();
             System.err.println("There was a critical error that prevented AutoPlug from starting!");
@@ -163,20 +180,42 @@ public class Main {
                 }
             }
 
+            timer.phase("preset"); // Includes waiting for user input on the first run
             AL.info("Loading configurations...");
             new UtilsJar().determineServerJar();
             UtilsConfig utilsConfig = new UtilsConfig();
 
             List<DYModule> allModules = new ArrayList<>();
 
-            // Loads or creates all needed configuration files
-            GeneralConfig generalConfig = new GeneralConfig();
+            // Loads or creates all needed configuration files.
+            // They don't depend on each other and each has its own file, thus get loaded in parallel.
+            ConfigPreset finalPreset = preset;
+            ExecutorService configLoader = Executors.newFixedThreadPool(Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors())));
+            Future<GeneralConfig> futureGeneralConfig = configLoader.submit(GeneralConfig::new);
+            Future<LoggerConfig> futureLoggerConfig = configLoader.submit(LoggerConfig::new);
+            Future<WebConfig> futureWebConfig = configLoader.submit(() -> new WebConfig(finalPreset));
+            Future<BackupConfig> futureBackupConfig = configLoader.submit(() -> new BackupConfig(finalPreset));
+            Future<RestarterConfig> futureRestarterConfig = configLoader.submit(() -> new RestarterConfig(finalPreset));
+            Future<UpdaterConfig> futureUpdaterConfig = configLoader.submit(() -> new UpdaterConfig(finalPreset));
+            Future<TasksConfig> futureTasksConfig = configLoader.submit(TasksConfig::new);
+            Future<SharedFilesConfig> futureSharedFilesConfig = configLoader.submit(SharedFilesConfig::new);
+            Future<MonitoringConfig> futureMonitoringConfig = configLoader.submit(MonitoringConfig::new);
+            configLoader.shutdown();
+
+            GeneralConfig generalConfig = getConfig(futureGeneralConfig);
             utilsConfig.setCommentsOfNotUsedOldDYModules(generalConfig.getAllInEdit(), generalConfig.getAllLoaded());
             allModules.addAll(generalConfig.getAllInEdit());
 
-            LoggerConfig loggerConfig = new LoggerConfig();
+            LoggerConfig loggerConfig = getConfig(futureLoggerConfig);
             utilsConfig.setCommentsOfNotUsedOldDYModules(loggerConfig.getAllInEdit(), loggerConfig.getAllLoaded());
             allModules.addAll(loggerConfig.getAllInEdit());
+            GD.CONSOLE_HISTORY = new ConsoleHistory(loggerConfig.history_max_lines.asInt(),
+                    loggerConfig.history_off_heap.asBoolean() ? loggerConfig.history_off_heap_size.asInt() * 1024 * 1024 : 0);
+            boolean isDebug = loggerConfig.debug.asBoolean();
+            AL.actionsOnMessageEvent.add(message -> {
+                if (message.getType() != Message.Type.DEBUG || isDebug)
+                    GD.CONSOLE_HISTORY.add(MessageFormatter.formatForAnsiConsole(message));
+            });
             // Extra debug options
             if (loggerConfig.debug.asBoolean()) {
                 AL.debug(Main.class, "Note that debug mode is enabled.");
@@ -191,35 +230,40 @@ public class Main {
                 Logger.getLogger("org.quartz.core.SchedulerSignalerImpl").setLevel(Level.OFF);
             }
 
-            WebConfig webConfig = new WebConfig(preset);
+            WebConfig webConfig = getConfig(futureWebConfig);
             utilsConfig.setCommentsOfNotUsedOldDYModules(webConfig.getAllInEdit(), webConfig.getAllLoaded());
             allModules.addAll(webConfig.getAllInEdit());
 
             //PluginsConfig pluginsConfig = new PluginsConfig(); // Gets loaded anyway before the plugin updater starts
             //allModules.addAll(pluginsConfig.getAllInEdit()); // Do not do this because its A LOT of unneeded log spam
 
-            BackupConfig backupConfig = new BackupConfig(preset);
+            BackupConfig backupConfig = getConfig(futureBackupConfig);
             utilsConfig.setCommentsOfNotUsedOldDYModules(backupConfig.getAllInEdit(), backupConfig.getAllLoaded());
             allModules.addAll(backupConfig.getAllInEdit());
 
-            RestarterConfig restarterConfig = new RestarterConfig(preset);
+            RestarterConfig restarterConfig = getConfig(futureRestarterConfig);
             utilsConfig.setCommentsOfNotUsedOldDYModules(restarterConfig.getAllInEdit(), restarterConfig.getAllLoaded());
             allModules.addAll(restarterConfig.getAllInEdit());
 
-            UpdaterConfig updaterConfig = new UpdaterConfig(preset);
+            UpdaterConfig updaterConfig = getConfig(futureUpdaterConfig);
             utilsConfig.setCommentsOfNotUsedOldDYModules(updaterConfig.getAllInEdit(), updaterConfig.getAllLoaded());
             allModules.addAll(updaterConfig.getAllInEdit());
 
-            TasksConfig tasksConfig = new TasksConfig();
+            TasksConfig tasksConfig = getConfig(futureTasksConfig);
             utilsConfig.setCommentsOfNotUsedOldDYModules(tasksConfig.getAllInEdit(), tasksConfig.getAllLoaded());
             allModules.addAll(tasksConfig.getAllInEdit());
 
-            SharedFilesConfig sharedFilesConfig = new SharedFilesConfig();
+            SharedFilesConfig sharedFilesConfig = getConfig(futureSharedFilesConfig);
             utilsConfig.setCommentsOfNotUsedOldDYModules(sharedFilesConfig.getAllInEdit(), sharedFilesConfig.getAllLoaded());
             allModules.addAll(sharedFilesConfig.getAllInEdit());
 
+            MonitoringConfig monitoringConfig = getConfig(futureMonitoringConfig);
+            utilsConfig.setCommentsOfNotUsedOldDYModules(monitoringConfig.getAllInEdit(), monitoringConfig.getAllLoaded());
+            allModules.addAll(monitoringConfig.getAllInEdit());
+
             utilsConfig.printAllModulesToDebugExceptServerKey(allModules, generalConfig.server_key.asString());
             AL.info("Configurations loaded.");
+            timer.phase("configs");
 
             AL.debug(Main.class, " ");
             AL.debug(Main.class, "DEBUG DETAILS:");
@@ -244,6 +288,7 @@ public class Main {
                 generalConfig.server_key.setValues(scanner.nextLine());
                 generalConfig.save();
             }
+            timer.phase("server-key"); // Includes waiting for user input, if there was no key
 
 
             try {
@@ -313,7 +358,52 @@ public class Main {
 
             new ConPluginCommandReceive();
 
+            if (monitoringConfig.tick_monitor.asBoolean()) {
+                TickMonitor.SERVER.setHistorySize(monitoringConfig.tick_monitor_history_size.asInt());
+                TickMonitor.SERVER.start(monitoringConfig.tick_monitor_interval.asInt(),
+                        monitoringConfig.tick_monitor_tps_command.asString(),
+                        monitoringConfig.tick_monitor_mspt_command.asString(),
+                        Double.parseDouble(monitoringConfig.tick_monitor_lag_mspt.asString()));
+            }
+
+            if (monitoringConfig.tick_monitor.asBoolean() && !monitoringConfig.diagnostics_on_lag.asString().equals("none"))
+                TickMonitor.SERVER.actionsOnLag.add(ServerDiagnostics.createLagAction(
+                        monitoringConfig.diagnostics_on_lag.asString(),
+                        monitoringConfig.diagnostics_profile_settings.asString(),
+                        monitoringConfig.diagnostics_on_lag_profile_seconds.asInt(),
+                        monitoringConfig.diagnostics_on_lag_cooldown.asInt()));
+
+            if (monitoringConfig.hang_watchdog.asBoolean())
+                HangWatchdog.SERVER.start(monitoringConfig.hang_watchdog_required_signals.asInt(),
+                        monitoringConfig.hang_watchdog_silence.asInt(),
+                        monitoringConfig.hang_watchdog_probe_command.asString(),
+                        monitoringConfig.hang_watchdog_ping_timeout.asInt(),
+                        Double.parseDouble(monitoringConfig.hang_watchdog_min_tps.asString()),
+                        monitoringConfig.hang_watchdog_stop_timeout.asInt(),
+                        monitoringConfig.hang_watchdog_profile_seconds.asInt(),
+                        monitoringConfig.hang_watchdog_diagnostics_timeout.asInt(),
+                        monitoringConfig.hang_watchdog_max_restarts.asInt());
+
+            if (monitoringConfig.metrics.asBoolean()) {
+                try {
+                    new MetricsServer(Metrics.AUTOPLUG).start(monitoringConfig.metrics_bind.asString(), monitoringConfig.metrics_port.asInt());
+                } catch (Exception e) {
+                    AL.warn("Failed to start the metrics server on port " + monitoringConfig.metrics_port.asString() + "!", e);
+                }
+            }
+
+            if (backupConfig.backup_verify.asBoolean())
+                new BackupVerifier(backupConfig.backup_verify_interval.asInt()).start();
+
             UserInput.keyboard();
+            timer.phase("connections");
+
+            AL.info("AutoPlug started in " + timer);
+            if (!StartupTimer.isUsingAppCDS())
+                AL.debug(Main.class, "AutoPlug starts faster with a class-data sharing archive. " +
+                        "On Java 19+ add '-XX:+AutoCreateSharedArchive -XX:SharedArchiveFile=./autoplug/system/cds/autoplug.jsa' " +
+                        "to AutoPlugs start command (before -jar). On Java 13-18 use '-XX:ArchiveClassesAtExit=./autoplug/system/cds/autoplug.jsa' once " +
+                        "and '-XX:SharedArchiveFile=./autoplug/system/cds/autoplug.jsa' afterwards.");
 
             if (generalConfig.server_auto_start.asBoolean())
                 Server.start();
@@ -329,4 +419,16 @@ public class Main {
         }
     }
 
+    /**
+     * Waits for the config and throws the original exception, if loading failed.
+     */
+    private static <T> T getConfig(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+            throw e;
+        }
+    }
+
 }
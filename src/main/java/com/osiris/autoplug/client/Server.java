@@ -9,18 +9,29 @@
 package com.osiris.autoplug.client;
 
 import com.osiris.autoplug.client.configs.GeneralConfig;
+import com.osiris.autoplug.client.configs.LoggerConfig;
+import com.osiris.autoplug.client.configs.MonitoringConfig;
 import com.osiris.autoplug.client.configs.UpdaterConfig;
+import com.osiris.autoplug.client.managers.CDSManager;
 import com.osiris.autoplug.client.managers.FileManager;
+import com.osiris.autoplug.client.monitoring.GcLogReader;
+import com.osiris.autoplug.client.monitoring.HangWatchdog;
+import com.osiris.autoplug.client.monitoring.ProcessMonitor;
+import com.osiris.autoplug.client.monitoring.TickMonitor;
 import com.osiris.autoplug.client.network.online.connections.ConOnlineConsoleSend;
 import com.osiris.autoplug.client.tasks.BeforeServerStartupTasks;
+import com.osiris.autoplug.client.tasks.backup.BandwidthLimiter;
 import com.osiris.autoplug.client.utils.AsyncInputStream;
+import com.osiris.autoplug.client.utils.BufferedLineSink;
 import com.osiris.autoplug.client.utils.GD;
+import com.osiris.autoplug.client.utils.JvmFlagProfile;
+import com.osiris.autoplug.client.utils.KeywordClassifier;
 import com.osiris.autoplug.client.utils.UtilsJar;
+import com.osiris.autoplug.client.utils.UtilsJava;
 import com.osiris.autoplug.core.logger.AL;
 import com.osiris.dyml.exceptions.*;
 import net.lingala.zip4j.ZipFile;
 import net.lingala.zip4j.model.FileHeader;
-import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.SystemUtils;
 import org.fusesource.jansi.Ansi;
 import org.jetbrains.annotations.NotNull;
@@ -34,6 +45,12 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 
 public final class Server {
@@ -41,8 +58,33 @@ public final class Server {
     public static int PORT = 0;
     @Nullable
     public static AsyncInputStream ASYNC_SERVER_IN;
+    /**
+     * Executed once the server process exits normally (exit-code 0), with the exit-code.
+     */
+    public static final List<Consumer<Integer>> actionsOnStop = new CopyOnWriteArrayList<>();
+    /**
+     * Executed once the server process exits with an exit-code other than 0,
+     * without being stopped or killed through AutoPlug.
+     */
+    public static final List<Consumer<Integer>> actionsOnCrash = new CopyOnWriteArrayList<>();
+    /**
+     * Executed once the server process was killed through AutoPlug, with the exit-code.
+     */
+    public static final List<Consumer<Integer>> actionsOnKill = new CopyOnWriteArrayList<>();
     private static Process process;
-    private static Thread threadServerAliveChecker;
+    /**
+     * Completed with the exit-code, once the current process exits.
+     */
+    @NotNull
+    private static volatile CompletableFuture<Integer> exitFuture = CompletableFuture.completedFuture(0);
+    private static volatile boolean isStopRequested;
+    private static volatile boolean isKillRequested;
+    private static volatile boolean isRestarting;
+    @Nullable
+    private static volatile CDSManager cdsManager;
+    private static volatile int pid = -1;
+    @Nullable
+    private static volatile String javaCommand;
 
     static {
         Properties properties = new Properties();
@@ -89,11 +131,40 @@ public final class Server {
     public static void restart() {
         //Before starting make backups and check for updates
         AL.info("Restarting server...");
+        isRestarting = true;
         try {
             stop();
             start();
         } catch (Exception e) {
             AL.warn(e);
+        } finally {
+            isRestarting = false;
+        }
+    }
+
+    /**
+     * Restarts a server that doesn't respond anymore. Tries to stop it first
+     * and kills it, if it didn't stop within the provided time.
+     *
+     * @param startDelayMs time to wait between the stop and the start.
+     */
+    public static void restartFrozen(int stopTimeoutSeconds, long startDelayMs) {
+        AL.info("Restarting frozen server...");
+        isRestarting = true;
+        try {
+            if (!stop(stopTimeoutSeconds)) {
+                AL.warn("Server didn't stop within " + stopTimeoutSeconds + " seconds!");
+                kill();
+            }
+            if (startDelayMs > 0) {
+                AL.info("Starting server in " + (startDelayMs / 1000) + " seconds...");
+                Thread.sleep(startDelayMs);
+            }
+            start();
+        } catch (Exception e) {
+            AL.warn(e);
+        } finally {
+            isRestarting = false;
         }
     }
 
@@ -101,18 +172,35 @@ public final class Server {
      * Blocks until the server was stopped.
      */
     public static void stop() throws IOException, InterruptedException, DYWriterException, NotLoadedException, IllegalKeyException, DuplicateKeyException, DYReaderException, IllegalListException {
+        stop(0);
+    }
+
+    /**
+     * Blocks until the server was stopped, or the timeout was reached.
+     *
+     * @param timeoutSeconds 0 to wait forever.
+     * @return false if the server is still running.
+     */
+    public static boolean stop(int timeoutSeconds) throws IOException, InterruptedException, DYWriterException, NotLoadedException, IllegalKeyException, DuplicateKeyException, DYReaderException, IllegalListException {
 
         AL.info("Stopping server...");
 
         if (isRunning()) {
+            isStopRequested = true;
             submitCommand(new GeneralConfig().server_stop_command.asString());
-            while (Server.isRunning())
-                Thread.sleep(1000);
+            try {
+                if (timeoutSeconds > 0) onExit().get(timeoutSeconds, TimeUnit.SECONDS);
+                else onExit().get();
+            } catch (TimeoutException e) {
+                return false;
+            } catch (ExecutionException e) {
+                AL.warn(e);
+            }
             ASYNC_SERVER_IN = null;
         } else {
             AL.warn("Server not running!");
         }
-
+        return true;
     }
 
     /**
@@ -124,18 +212,22 @@ public final class Server {
         try {
 
             if (isRunning()) {
+                isKillRequested = true;
                 process.destroy();
+                try {
+                    onExit().get(10, TimeUnit.SECONDS);
+                } catch (TimeoutException e) {
+                    AL.warn("Server didn't exit within 10 seconds, killing it forcibly!");
+                    process.destroyForcibly();
+                    onExit().get();
+                }
             } else {
                 AL.warn("Server is not running!");
             }
-
-            while (isRunning()) {
-                Thread.sleep(1000);
-            }
             AL.info("Server killed!");
             return true;
 
-        } catch (InterruptedException e) {
+        } catch (Exception e) {
             AL.warn(e);
             return false;
         }
@@ -145,6 +237,136 @@ public final class Server {
         return process != null && process.isAlive();
     }
 
+    /**
+     * True once a stop or kill was requested through AutoPlug, until the next start.
+     */
+    public static boolean isStopRequested() {
+        return isStopRequested || isKillRequested;
+    }
+
+    /**
+     * PID of the current/last server process, or -1 if it couldn't be determined.
+     */
+    public static int getPid() {
+        return pid;
+    }
+
+    /**
+     * The java binary the current/last server process was started with.
+     */
+    @Nullable
+    public static String getJavaCommand() {
+        return javaCommand;
+    }
+
+    /**
+     * Returns a future, that gets completed with the exit-code, once the current server process exits. <br>
+     * Already completed if there is no running server.
+     */
+    @NotNull
+    public static CompletableFuture<Integer> onExit() {
+        return exitFuture;
+    }
+
+    /**
+     * Java 8 has no Process#onExit(), thus a thread waits for the process and completes the future,
+     * which happens right after the process exits.
+     */
+    private static void watchExit(@NotNull Process process) {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        exitFuture = future;
+        Thread thread = new Thread(() -> {
+            int exitCode;
+            try {
+                exitCode = process.waitFor();
+            } catch (InterruptedException e) {
+                future.completeExceptionally(e);
+                return;
+            }
+            try {
+                onProcessExit(exitCode);
+            } catch (Exception e) {
+                AL.warn(e);
+            }
+            future.complete(exitCode);
+        }, "Server-Exit-Watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void onProcessExit(int exitCode) throws Exception {
+        AL.info("Server was stopped.");
+        List<Consumer<Integer>> actions;
+        if (isKillRequested) actions = actionsOnKill;
+        else if (exitCode != 0 && !isStopRequested) actions = actionsOnCrash;
+        else actions = actionsOnStop;
+        CDSManager cds = cdsManager;
+        if (cds != null && cds.isCreating() && actions != actionsOnStop)
+            cds.delete(); // Might be incomplete
+        for (Consumer<Integer> action :
+                actions) {
+            try {
+                action.accept(exitCode);
+            } catch (Exception e) {
+                AL.warn(e);
+            }
+        }
+
+        if (isRestarting) return; // Restart was requested through AutoPlug, thus AutoPlug keeps running
+
+        GeneralConfig config = new GeneralConfig();
+        if (config.server_autoplug_stop.asBoolean()) {
+            AL.info("Stopping AutoPlug too, since 'autoplug-stop' is enabled.");
+            System.exit(0);
+        } else {
+            AL.info("To stop AutoPlug too, enter '.stop both'.");
+        }
+
+        if (actions == actionsOnCrash) {
+            AL.warn("Server crash was detected! Exit-Code should be 0, but is '" + exitCode + "'!");
+            if (config.server_restart_on_crash.asBoolean()) {
+                AL.info("Restart on crash is enabled, thus the server is restarting...");
+                // Not from this thread, since the future must be completed first
+                new Thread(Server::start, "Server-Crash-Restarter").start();
+            }
+        }
+    }
+
+    @NotNull
+    private static BufferedLineSink.OverflowPolicy parseOverflowPolicy(String policy) {
+        try {
+            return BufferedLineSink.OverflowPolicy.valueOf(policy.trim().toUpperCase());
+        } catch (Exception e) {
+            AL.warn("Unknown overflow policy '" + policy + "', using DROP_OLDEST instead.");
+            return BufferedLineSink.OverflowPolicy.DROP_OLDEST;
+        }
+    }
+
+    /**
+     * Creates the classifier that colors the servers output lines,
+     * with the users highlight rules first, followed by the default rules.
+     */
+    @NotNull
+    public static KeywordClassifier<Ansi.Color> createOutputColors(@NotNull LoggerConfig loggerConfig) {
+        KeywordClassifier<Ansi.Color> colors = new KeywordClassifier<>();
+        if (loggerConfig.server_output_highlight.asBoolean())
+            for (String rule :
+                    loggerConfig.server_output_highlight_list.asStringList()) {
+                try {
+                    String[] split = rule.trim().split(" ", 2);
+                    colors.add(split[1], Ansi.Color.valueOf(split[0].toUpperCase()));
+                } catch (Exception e) {
+                    AL.warn("Invalid highlight rule '" + rule + "'! Format: '<COLOR> <keyword>'", e);
+                }
+            }
+        colors.add("error", Ansi.Color.RED)
+                .add("critical", Ansi.Color.RED)
+                .add("exception", Ansi.Color.RED)
+                .add("warn", Ansi.Color.YELLOW) // Also matches "warning"
+                .add("debug", Ansi.Color.BLUE);
+        return colors.build();
+    }
+
     private static void createProcess(String path) throws Exception {
         GeneralConfig config = new GeneralConfig();
         List<String> commands = new ArrayList<>();
@@ -221,12 +443,26 @@ public final class Server {
             }
         }
 
-        // 2. Add all before-flags
+        javaCommand = commands.get(0);
+
+        // 2. Add all before-flags, the profiles first, so that the users flags can override them
+        List<String> userFlags = new ArrayList<>();
         if (config.server_flags_enabled.asBoolean()) {
             List<String> list = config.server_flags_list.asStringList();
             for (String s : list) {
-                commands.add("-" + s);
+                userFlags.add("-" + s);
             }
+        }
+        JvmFlagProfile profile = JvmFlagProfile.parse(config.server_flags_profile.asString());
+        if (profile != JvmFlagProfile.NONE) {
+            try {
+                commands.addAll(profile.createFlags(commands.get(0), config.server_flags_profile_heap.asString(), userFlags));
+            } catch (Exception e) {
+                AL.warn("Failed to compute the flags of profile " + profile + ", starting without them.", e);
+            }
+        }
+        if (config.server_flags_enabled.asBoolean()) {
+            commands.addAll(userFlags);
             /* TODO not working:
             commands.add("-org.jline.terminal.dumb=true");
             commands.add("-org.jline.terminal.dumb.color=true");
@@ -235,6 +471,38 @@ public final class Server {
              */
         }
 
+        // 2.1 Add the AppCDS flags
+        if (config.server_cds.asBoolean()) {
+            try {
+                CDSManager cds = new CDSManager(commands.get(0), new File(path), new ArrayList<>(commands.subList(1, commands.size())));
+                commands.addAll(cds.getFlags());
+                cdsManager = cds;
+            } catch (Exception e) {
+                AL.warn("Failed to set up the AppCDS archive, starting without it.", e);
+            }
+        } else
+            cdsManager = null;
+
+        // 2.2 Add the GC log flags for the process monitor
+        MonitoringConfig monitoringConfig = new MonitoringConfig();
+        File gcLog = null;
+        if (monitoringConfig.process_monitor.asBoolean() && monitoringConfig.process_monitor_gc_log.asBoolean()) {
+            if (GcLogReader.isGcLogSet(commands)) {
+                AL.info("Not enabling AutoPlugs GC log, since the server flags already contain one. GC pauses won't be monitored.");
+            } else {
+                try {
+                    gcLog = new File(GD.WORKING_DIR + "/autoplug/system/gc.log");
+                    if (!gcLog.getParentFile().exists()) gcLog.getParentFile().mkdirs();
+                    if (gcLog.exists()) gcLog.delete(); // From the previous run
+                    // Relative path, because a Windows drive letter would break the -Xlog syntax
+                    commands.addAll(GcLogReader.getFlags("autoplug/system/gc.log", new UtilsJava().getMajorVersion(commands.get(0))));
+                } catch (Exception e) {
+                    gcLog = null;
+                    AL.warn("Failed to enable the GC log, starting without it.", e);
+                }
+            }
+        }
+
         // 3. Add the -jar command and server jar path
         commands.add("-jar");
         // To ensure that russian and other chars in the file path/name are read correctly
@@ -271,65 +539,63 @@ public final class Server {
         //processBuilder.inheritIO(); // BACK TO PIPED, BECAUSE OF MASSIVE ERRORS LIKE COMMANDS NOT BEEING EXECUTED, which affects the restarter
         processBuilder.redirectInput(ProcessBuilder.Redirect.PIPE);
         processBuilder.redirectOutput(ProcessBuilder.Redirect.PIPE);
+        isStopRequested = false;
+        isKillRequested = false;
         process = processBuilder.start();
-
-        // Server OutputStream writes to our process InputStream, thus we can read its output:
+        // Lifecycle listeners and restart on crash get triggered right after the process exits.
+        // Installed first, so that onExit() belongs to this process and nothing below can prevent it.
+        watchExit(process);
+        // Server OutputStream writes to our process InputStream, thus we can read its output.
+        // Reading starts once all listeners are added, so that no line (like JVM errors about invalid flags) gets lost.
         ASYNC_SERVER_IN = new AsyncInputStream(process.getInputStream());
-        ASYNC_SERVER_IN.listeners.add(line -> {
-            try {
-                Ansi ansi = Ansi.ansi();
-                if (StringUtils.containsIgnoreCase(line, "error") ||
-                        StringUtils.containsIgnoreCase(line, "critical") ||
-                        StringUtils.containsIgnoreCase(line, "exception")) {
-                    ansi.fgRed().a(line).reset();
-                } else if (StringUtils.containsIgnoreCase(line, "warn") ||
-                        StringUtils.containsIgnoreCase(line, "warning")) {
-                    ansi.fgYellow().a(line).reset();
-                } else if (StringUtils.containsIgnoreCase(line, "debug")) {
-                    ansi.fgBlue().a(line).reset();
-                } else {
-                    ansi.a(line).reset();
-                }
-                System.out.println(ansi);
-                ConOnlineConsoleSend.send("" + ansi);
-            } catch (Exception e) {
-                AL.warn(e);
-            }
-        });
-
-        // Also create a thread which checks if the server is running or not.
-        if (threadServerAliveChecker == null) {
-            threadServerAliveChecker = new Thread(() -> {
+        try {
+            // Terminal and online console get their own buffers and threads,
+            // so that they can't block the reading of the servers output, which would block the server.
+            LoggerConfig loggerConfig = new LoggerConfig();
+            int bufferSize = loggerConfig.server_output_buffer_size.asInt();
+            BufferedLineSink terminalSink = ASYNC_SERVER_IN.registerSink(new BufferedLineSink("Terminal", bufferSize,
+                    parseOverflowPolicy(loggerConfig.server_output_terminal_overflow_policy.asString()),
+                    System.out::println));
+            BufferedLineSink onlineConsoleSink = ASYNC_SERVER_IN.registerSink(new BufferedLineSink("OnlineConsole", bufferSize,
+                    parseOverflowPolicy(loggerConfig.server_output_online_console_overflow_policy.asString()),
+                    ConOnlineConsoleSend::send));
+            KeywordClassifier<Ansi.Color> colors = createOutputColors(loggerConfig);
+            boolean isTickMonitor = monitoringConfig.tick_monitor.asBoolean();
+            boolean isHideTickReplies = monitoringConfig.tick_monitor_hide_replies.asBoolean();
+            TickMonitor.SERVER.onServerStart();
+            HangWatchdog.SERVER.onServerStart();
+            ASYNC_SERVER_IN.listeners.add(line -> {
                 try {
-                    boolean lastIsRunningCheck = false;
-                    boolean currentIsRunningCheck;
-                    while (true) {
-                        Thread.sleep(2000);
-                        currentIsRunningCheck = Server.isRunning();
-                        if (!currentIsRunningCheck && lastIsRunningCheck) {
-                            AL.info("Server was stopped.");
-                            if (new GeneralConfig().server_autoplug_stop.asBoolean()) {
-                                AL.info("Stopping AutoPlug too, since 'autoplug-stop' is enabled.");
-                                System.exit(0);
-                            } else {
-                                AL.info("To stop AutoPlug too, enter '.stop both'.");
-                            }
-
-                            if (process.exitValue() != 0) {
-                                AL.warn("Server crash was detected! Exit-Code should be 0, but is '" + process.exitValue() + "'!");
-                                if (new GeneralConfig().server_restart_on_crash.asBoolean()) {
-                                    AL.info("Restart on crash is enabled, thus the server is restarting...");
-                                    Server.start();
-                                }
-                            }
-                        }
-                        lastIsRunningCheck = currentIsRunningCheck;
-                    }
+                    boolean isTickReply = isTickMonitor && TickMonitor.SERVER.onServerOutput(line);
+                    // Always called, since it must see every line
+                    boolean isProbeReply = HangWatchdog.SERVER.onServerOutput(line, isTickReply);
+                    if ((isTickReply && isHideTickReplies) || isProbeReply)
+                        return;
+                    Ansi.Color color = colors.classify(line);
+                    String coloredLine;
+                    if (color == null)
+                        coloredLine = Ansi.ansi().a(line).reset().toString();
+                    else
+                        coloredLine = Ansi.ansi().fg(color).a(line).reset().toString();
+                    GD.CONSOLE_HISTORY.add(coloredLine);
+                    terminalSink.offer(coloredLine);
+                    onlineConsoleSink.offer(coloredLine);
                 } catch (Exception e) {
-                    AL.error("Thread for checking if Server is alive was stopped due to an error.", e);
+                    AL.warn(e);
                 }
             });
-            threadServerAliveChecker.start();
+            // Backups running in the background slow down when the server can't keep up
+            ASYNC_SERVER_IN.listeners.add(BandwidthLimiter.BACKUPS::onServerOutput);
+        } finally {
+            ASYNC_SERVER_IN.start(); // Also if the above failed, since the server blocks once its output isn't read
+        }
+
+        pid = ProcessMonitor.findPid(process, path);
+
+        if (monitoringConfig.process_monitor.asBoolean()) {
+            ProcessMonitor.SERVER.setIntervalSeconds(monitoringConfig.process_monitor_interval.asInt());
+            ProcessMonitor.SERVER.setHistorySize(monitoringConfig.process_monitor_history_size.asInt());
+            ProcessMonitor.SERVER.watch(process, pid, gcLog);
         }
     }
 
@@ -352,6 +618,8 @@ public final class Server {
 
     public static void submitCommand(@NotNull String command) throws IOException {
         if (isRunning()) {
+            TickMonitor.SERVER.onCommandSubmitted();
+            HangWatchdog.SERVER.onCommandSubmitted();
             OutputStream os = process.getOutputStream();
             // Since the command won't be executed if it doesn't end with a new line char we do the below:
             if (command.contains(System.lineSeparator()))
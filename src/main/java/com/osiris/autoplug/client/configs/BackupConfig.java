@@ -69,6 +69,21 @@ public class BackupConfig extends DreamYaml {
     public DYModule backup_plugins_upload_path;
     public DYModule backup_plugins_upload_rsa;
 
+    public DYModule backup_snapshot;
+    public DYModule backup_snapshot_hardlink_list;
+
+    public DYModule backup_throttle;
+    public DYModule backup_throttle_max_mb_per_second;
+    public DYModule backup_throttle_adaptive;
+
+    public DYModule backup_retention_gfs;
+    public DYModule backup_retention_gfs_hourly;
+    public DYModule backup_retention_gfs_daily;
+    public DYModule backup_retention_gfs_weekly;
+
+    public DYModule backup_verify;
+    public DYModule backup_verify_interval;
+
     public BackupConfig() throws NotLoadedException, DYWriterException, IOException, IllegalKeyException, DuplicateKeyException, DYReaderException, IllegalListException {
         this(ConfigPreset.DEFAULT);
     }
@@ -189,6 +204,52 @@ public class BackupConfig extends DreamYaml {
         backup_plugins_upload_path = put(name, "plugins-backup", "upload", "path");
         backup_plugins_upload_rsa = put(name, "plugins-backup", "upload", "rsa-key");
 
+        put(name, "snapshot").setCountTopSpaces(1);
+        backup_snapshot = put(name, "snapshot", "enable").setDefValues("false").setComments(
+                "Takes a snapshot of the files before archiving them, for all backups above.",
+                "The snapshot gets created via reflinks (copy-on-write clones on btrfs, XFS and bcachefs), hardlinks or regular copies (in this order).",
+                "On supported file systems this only takes a few milliseconds.",
+                "The zip gets created from the snapshot in the background, after the server was started,",
+                "which removes the backup time from the restart downtime.",
+                "Note that regular copies temporarily need as much free disk space as the files that get backed up.");
+        backup_snapshot_hardlink_list = put(name, "snapshot", "hardlink-list").setDefValues(
+                "**/level.dat",
+                "**/playerdata/*.dat",
+                "*.jar"
+        ).setComments(
+                "Used when reflinks are not supported. Files matching one of these glob patterns get hardlinked, all others copied.",
+                "Only add files that get replaced (written to a new file and renamed), never files that get rewritten in place (like region files),",
+                "because a hardlink shares its content with the original file.",
+                "The patterns are matched against the path starting with the backed up files/folders name, for example: 'world/playerdata/<uuid>.dat'.");
+
+        put(name, "throttle").setCountTopSpaces(1);
+        backup_throttle = put(name, "throttle", "enable").setDefValues("true").setComments(
+                "Limits the disk and network bandwidth of backups that run next to the live server (background archiving of snapshots and their uploads).",
+                "Backups that run while the server is offline are never throttled, to keep the downtime short.");
+        backup_throttle_max_mb_per_second = put(name, "throttle", "max-mb-per-second").setDefValues("50").setComments(
+                "Read megabytes per second (of the backed up files and, when verifying/uploading, of the zips),",
+                "shared by all running backups. The written (compressed) zips aren't counted.");
+        backup_throttle_adaptive = put(name, "throttle", "adaptive").setDefValues("true").setComments(
+                "Halves the bandwidth each time the server falls behind (\"Can't keep up!\" in the console)",
+                "and slowly raises it again, once the server is fine.");
+
+        put(name, "retention").setCountTopSpaces(1);
+        backup_retention_gfs = put(name, "retention", "gfs", "enable").setDefValues("false").setComments(
+                "Grandfather-father-son retention, for all backups above. If enabled, the max-days values above are ignored.",
+                "Keeps the newest backup of each of the newest hours/days/weeks below (that have backups) and deletes all others.",
+                "The newest backup is always kept. Backups are tracked in the catalog.json file of each backup folder.");
+        backup_retention_gfs_hourly = put(name, "retention", "gfs", "keep-hourly").setDefValues("0");
+        backup_retention_gfs_daily = put(name, "retention", "gfs", "keep-daily").setDefValues("7");
+        backup_retention_gfs_weekly = put(name, "retention", "gfs", "keep-weekly").setDefValues("4");
+
+        put(name, "verify").setCountTopSpaces(1);
+        backup_verify = put(name, "verify", "enable").setDefValues("true").setComments(
+                "Checks in the background, that your backups are still restorable (checksum and CRC of each file).",
+                "Runs with the lowest priority and is throttled like the other background backup work.",
+                "Requires a restart of AutoPlug to take effect.");
+        backup_verify_interval = put(name, "verify", "interval").setDefValues("24").setComments(
+                "Hours after which the same backup gets verified again.");
+
         if (preset.equals(ConfigPreset.FAST)) {
             backup_server_files.setDefValues("true");
             backup_worlds.setDefValues("true");
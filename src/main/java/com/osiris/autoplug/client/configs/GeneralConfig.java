@@ -24,8 +24,11 @@ public class GeneralConfig extends DreamYaml {
     public DYModule server_jar;
     public DYModule server_flags_enabled;
     public DYModule server_flags_list;
+    public DYModule server_flags_profile;
+    public DYModule server_flags_profile_heap;
     public DYModule server_arguments_enabled;
     public DYModule server_arguments_list;
+    public DYModule server_cds;
     public DYModule server_restart_on_crash;
 
     public DYModule directory_cleaner;
@@ -98,6 +101,24 @@ public class GeneralConfig extends DreamYaml {
                 "https://forums.spongepowered.org/t/optimized-startup-flags-for-consistent-garbage-collection/13239",
                 "https://aikar.co/2018/07/02/tuning-the-jvm-g1gc-garbage-collector-flags-for-minecraft/");
         server_flags_list = put(name, "server", "flags", "list").setDefValues("Xms2G", "Xmx2G");
+        server_flags_profile = put(name, "server", "flags", "profile").setDefValues("NONE").setComments(
+                "Adds JVM flags tuned for Minecraft, computed from this machines memory and cores, before the flags from the list above.",
+                "Available profiles:",
+                "NONE: Adds nothing.",
+                "AIKAR: G1 garbage collector with Aikar's flags. Recommended for most servers.",
+                "ZGC: Low-pause garbage collector. Requires Java 15+ and lots of memory.",
+                "SHENANDOAH: Low-pause garbage collector. Requires Java 15+ and a build that includes it (Oracle's doesn't).",
+                "SMALL_HEAP: Serial garbage collector and max. 2GB heap, for small servers with few cores.",
+                "If the servers Java doesn't support the selected profile, AIKAR is used instead.",
+                "Flags from the list above are passed after the profiles flags and thus override most of them, like Xms/Xmx.",
+                "Remove Xms/Xmx from the list, if you want the computed heap size.",
+                "A garbage collector can't be overridden (the server wouldn't start), thus if the list selects one (like -XX:+UseG1GC),",
+                "the profiles collector and its tuning are left out.");
+        server_flags_profile_heap = put(name, "server", "flags", "profile-max-heap").setDefValues("auto").setComments(
+                "The profiles max. heap in megabytes.",
+                "'auto' leaves a quarter of the memory (min. 1GB) for the OS and uses the rest.",
+                "In a container the memory limit of its cgroup is used, if lower than the hosts memory.",
+                "The heap only gets committed at startup (AlwaysPreTouch) if set to a fixed size.");
 
         server_arguments_enabled = put(name, "server", "arguments", "enable").setDefValues("false").setComments(
                 "If you were using arguments, add them to the list below.\n" +
@@ -110,6 +131,13 @@ public class GeneralConfig extends DreamYaml {
                         "https://www.spigotmc.org/wiki/start-up-parameters");
         server_arguments_list = put(name, "server", "arguments", "list").setDefValues("--nogui");
 
+        server_cds = put(name, "server", "app-cds", "enable").setDefValues("false").setComments(
+                "Class-Data Sharing speeds up the servers start, by loading its classes from an archive,",
+                "instead of loading and verifying them on every start. Requires Java 13 or higher.",
+                "The archive gets created when the server stops cleanly, and is stored in ./autoplug/system/cds.",
+                "It gets re-created automatically when the server jar, plugins, Java or flags change.",
+                "Note that classes loaded by custom class-loaders (like plugins or Paperclips patched jar) may not be archived.");
+
         server_restart_on_crash = put(name, "server", "restart-on-crash").setDefValues("true");
 
         put(name, "directory-cleaner").setCountTopSpaces(1);
@@ -20,6 +20,17 @@ public class LoggerConfig extends DreamYaml {
     public DYModule autoplug_label;
     public DYModule force_ansi;
 
+    public DYModule server_output_buffer_size;
+    public DYModule server_output_terminal_overflow_policy;
+    public DYModule server_output_online_console_overflow_policy;
+    public DYModule server_output_highlight;
+    public DYModule server_output_highlight_list;
+
+    public DYModule history_max_lines;
+    public DYModule history_off_heap;
+    public DYModule history_off_heap_size;
+    public DYModule history_replay_lines;
+
     public LoggerConfig() throws IOException, DuplicateKeyException, DYReaderException, IllegalListException, DYWriterException, NotLoadedException, IllegalKeyException {
         super(System.getProperty("user.dir") + "/autoplug/logger-config.yml");
         lockFile();
@@ -48,6 +59,38 @@ public class LoggerConfig extends DreamYaml {
                 "Forces the terminal to use ANSI. Note that this may fail."
         );
 
+        put(name, "server-output").setCountTopSpaces(1);
+        server_output_buffer_size = put(name, "server-output", "buffer-size").setDefValues("10000").setComments(
+                "The servers output gets read by one thread and passed to the terminal and online console through buffers,",
+                "each with its own thread. This way a slow terminal or connection can never block the server, when it's logging.",
+                "This is the max amount of lines each buffer can hold. Changes take effect on the next server start.");
+        server_output_terminal_overflow_policy = put(name, "server-output", "terminal-overflow-policy").setDefValues("DROP_OLDEST").setComments(
+                "What happens when a buffer is full. Available policies:",
+                "DROP_OLDEST: Drops the oldest lines, so that you always see the latest output.",
+                "COALESCE: Merges repeated lines into one and drops new lines while the buffer is full. The amount of dropped lines gets shown afterwards.");
+        server_output_online_console_overflow_policy = put(name, "server-output", "online-console-overflow-policy").setDefValues("COALESCE");
+        server_output_highlight = put(name, "server-output", "highlight", "enable").setDefValues("false").setComments(
+                "Colors lines of the servers output that contain one of the keywords below (case-insensitive).",
+                "Format: '<COLOR> <keyword>'. Available colors: BLACK, RED, GREEN, YELLOW, BLUE, MAGENTA, CYAN, WHITE.",
+                "These have a higher priority than the default rules (errors red, warnings yellow, debug blue)",
+                "and rules at the top have a higher priority than the ones below them.");
+        server_output_highlight_list = put(name, "server-output", "highlight", "list").setDefValues(
+                "MAGENTA Can't keep up!",
+                "GREEN joined the game",
+                "CYAN left the game");
+
+        put(name, "history").setCountTopSpaces(1);
+        history_max_lines = put(name, "history", "max-lines").setDefValues("20000").setComments(
+                "The most recent console lines (server and AutoPlug) are kept in memory.",
+                "They get sent to the online console when you open it and can be searched with the .grep command.",
+                "This is the max amount of lines kept. Changes need a restart of AutoPlug.");
+        history_off_heap = put(name, "history", "off-heap", "enable").setDefValues("false").setComments(
+                "Stores the lines outside of the Java heap, in a fixed size buffer. Useful for big histories.");
+        history_off_heap_size = put(name, "history", "off-heap", "size").setDefValues("16").setComments(
+                "Size of that buffer in megabytes. If it's full, the oldest lines get removed, even if max-lines is not reached yet.");
+        history_replay_lines = put(name, "history", "replay-lines").setDefValues("1000").setComments(
+                "Amount of recent lines sent to the online console, when you open it.");
+
         save();
         unlockFile();
     }
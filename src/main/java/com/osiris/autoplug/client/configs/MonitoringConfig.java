@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.configs;
+
+import com.osiris.dyml.DYModule;
+import com.osiris.dyml.DreamYaml;
+import com.osiris.dyml.exceptions.*;
+
+import java.io.IOException;
+
+public class MonitoringConfig extends DreamYaml {
+
+    public DYModule process_monitor;
+    public DYModule process_monitor_interval;
+    public DYModule process_monitor_history_size;
+    public DYModule process_monitor_gc_log;
+
+    public DYModule tick_monitor;
+    public DYModule tick_monitor_interval;
+    public DYModule tick_monitor_history_size;
+    public DYModule tick_monitor_tps_command;
+    public DYModule tick_monitor_mspt_command;
+    public DYModule tick_monitor_hide_replies;
+    public DYModule tick_monitor_lag_mspt;
+
+    public DYModule diagnostics_profile_settings;
+    public DYModule diagnostics_on_lag;
+    public DYModule diagnostics_on_lag_profile_seconds;
+    public DYModule diagnostics_on_lag_cooldown;
+
+    public DYModule hang_watchdog;
+    public DYModule hang_watchdog_required_signals;
+    public DYModule hang_watchdog_silence;
+    public DYModule hang_watchdog_probe_command;
+    public DYModule hang_watchdog_ping_timeout;
+    public DYModule hang_watchdog_min_tps;
+    public DYModule hang_watchdog_stop_timeout;
+    public DYModule hang_watchdog_profile_seconds;
+    public DYModule hang_watchdog_diagnostics_timeout;
+    public DYModule hang_watchdog_max_restarts;
+
+    public DYModule metrics;
+    public DYModule metrics_bind;
+    public DYModule metrics_port;
+
+    public MonitoringConfig() throws IOException, DuplicateKeyException, DYReaderException, IllegalListException, NotLoadedException, IllegalKeyException, DYWriterException {
+        super(System.getProperty("user.dir") + "/autoplug/monitoring-config.yml");
+        lockFile();
+        load();
+        String name = getFileNameWithoutExt();
+        put(name).setComments(
+                "#######################################################################################################################\n" +
+                        "    ___       __       ___  __\n" +
+                        "   / _ |__ __/ /____  / _ \\/ /_ _____ _\n" +
+                        "  / __ / // / __/ _ \\/ ___/ / // / _ `/\n" +
+                        " /_/ |_\\_,_/\\__/\\___/_/  /_/\\_,_/\\_, /\n" +
+                        "                                /___/ Monitoring-Config\n" +
+                        "Thank you for using AutoPlug!\n" +
+                        "You can find detailed installation instructions at our Spigot post: https://www.spigotmc.org/resources/autoplug-automatic-plugin-updater.78414/\n" +
+                        "If there are any questions or you just wanna chat, join our Discord: https://discord.gg/GGNmtCC\n" +
+                        "\n" +
+                        "#######################################################################################################################");
+
+        put(name, "process-monitor").setCountTopSpaces(1);
+        process_monitor = put(name, "process-monitor", "enable").setDefValues("true").setComments(
+                "Samples the CPU usage, memory (RSS), threads and open files of the servers process,",
+                "and keeps them in memory. Enter '.server info' (.si) to see the latest values.");
+        process_monitor_interval = put(name, "process-monitor", "interval").setDefValues("5").setComments(
+                "Time in seconds between samples.");
+        process_monitor_history_size = put(name, "process-monitor", "history-size").setDefValues("720").setComments(
+                "Amount of samples to keep. With the default interval of 5 seconds, 720 samples cover the last hour.");
+        process_monitor_gc_log = put(name, "process-monitor", "gc-log").setDefValues("true").setComments(
+                "Starts the server with a GC log (./autoplug/system/gc.log) and collects the GC pauses from it.",
+                "Adds '-Xlog:gc' on Java 9+ and '-Xloggc' on Java 8, unless the server flags already contain one of them.");
+
+        put(name, "tick-monitor").setCountTopSpaces(1);
+        tick_monitor = put(name, "tick-monitor", "enable").setDefValues("true").setComments(
+                "Tracks the servers TPS (ticks per second) and MSPT (milliseconds per tick).",
+                "If the AutoPlug-Plugin is installed it pushes these values, otherwise the commands below get submitted periodically.",
+                "Servers without these commands (Vanilla, Fabric, Forge) reply with an error, after which they aren't submitted again.",
+                "Background tasks, like backups, slow down while the server lags.");
+        tick_monitor_interval = put(name, "tick-monitor", "interval").setDefValues("30").setComments(
+                "Time in seconds between submitting the commands below.");
+        tick_monitor_history_size = put(name, "tick-monitor", "history-size").setDefValues("240").setComments(
+                "Amount of samples to keep. With the default interval of 30 seconds, 240 samples cover the last 2 hours.");
+        tick_monitor_tps_command = put(name, "tick-monitor", "tps-command").setDefValues("tps").setComments(
+                "Leave empty to disable. Supported by Spigot, Paper and its forks.");
+        tick_monitor_mspt_command = put(name, "tick-monitor", "mspt-command").setDefValues("mspt").setComments(
+                "Leave empty to disable. Supported by Paper and its forks.");
+        tick_monitor_hide_replies = put(name, "tick-monitor", "hide-replies").setDefValues("true").setComments(
+                "Hides the replies to the commands above from the console and online console.");
+        tick_monitor_lag_mspt = put(name, "tick-monitor", "lag-mspt").setDefValues("50").setComments(
+                "The server is considered lagging when a tick takes longer than this (in milliseconds).",
+                "50ms is the max. a tick can take to reach 20 TPS.");
+
+        put(name, "diagnostics").setCountTopSpaces(1);
+        put(name, "diagnostics").setComments(
+                "Profiling (.profile start/stop), thread dumps (.threaddump) and heap info (.heapinfo) of the running server.",
+                "These use the 'jcmd' tool of the servers Java installation, which only JDKs (not JREs) have.",
+                "Results get saved to ./autoplug/profiles.");
+        diagnostics_profile_settings = put(name, "diagnostics", "profile-settings").setDefValues("default").setComments(
+                "Java Flight Recorder settings to profile with. Available: default (~1% overhead), profile (more details, ~2% overhead).");
+        diagnostics_on_lag = put(name, "diagnostics", "on-lag").setDefValues("thread-dump").setComments(
+                "What to do once the tick-monitor detected lag in 3 samples in a row. Available: none, thread-dump, profile.");
+        diagnostics_on_lag_profile_seconds = put(name, "diagnostics", "on-lag-profile-seconds").setDefValues("60").setComments(
+                "How long to profile for, if on-lag is 'profile'.");
+        diagnostics_on_lag_cooldown = put(name, "diagnostics", "on-lag-cooldown").setDefValues("30").setComments(
+                "Min. time in minutes between two on-lag actions.");
+
+        put(name, "hang-watchdog").setCountTopSpaces(1);
+        hang_watchdog = put(name, "hang-watchdog", "enable").setDefValues("false").setComments(
+                "Restarts the server if it's frozen (deadlock, out of memory, etc.), which restart-on-crash can't detect, since the process is still alive.",
+                "Uses these signals: no console output, no response to pings and the TPS from the tick-monitor.",
+                "Before restarting, thread dumps and a short profile get saved to ./autoplug/profiles (see diagnostics above).");
+        hang_watchdog_required_signals = put(name, "hang-watchdog", "required-signals").setDefValues("2").setComments(
+                "Amount of signals that must be active at the same time (1-3).");
+        hang_watchdog_silence = put(name, "hang-watchdog", "silence").setDefValues("15").setComments(
+                "Time in seconds without console output, after which the server is considered silent.",
+                "With the defaults a frozen server gets restarted within a minute (detection, diagnostics, stop and kill).");
+        hang_watchdog_probe_command = put(name, "hang-watchdog", "probe-command").setDefValues("list").setComments(
+                "Gets submitted after half of the time above without output, so that an idle server isn't considered silent.",
+                "Its reply is hidden from the console.",
+                "Rarely needed if the tick-monitor is enabled, since its commands produce output too.");
+        hang_watchdog_ping_timeout = put(name, "hang-watchdog", "ping-timeout").setDefValues("5").setComments(
+                "Time in seconds to wait for a ping response.");
+        hang_watchdog_min_tps = put(name, "hang-watchdog", "min-tps").setDefValues("5").setComments(
+                "The server is considered frozen below this TPS.");
+        hang_watchdog_stop_timeout = put(name, "hang-watchdog", "stop-timeout").setDefValues("10").setComments(
+                "Time in seconds to wait for the server to stop, before killing it.");
+        hang_watchdog_profile_seconds = put(name, "hang-watchdog", "profile-seconds").setDefValues("5").setComments(
+                "Length of the profile captured before restarting. 0 to disable.");
+        hang_watchdog_diagnostics_timeout = put(name, "hang-watchdog", "diagnostics-timeout").setDefValues("10").setComments(
+                "Max. time in seconds for capturing the thread dumps and the profile, since jcmd might hang too.",
+                "The server gets restarted after that in any case. The profile gets shortened to fit.");
+        hang_watchdog_max_restarts = put(name, "hang-watchdog", "max-restarts-per-hour").setDefValues("5").setComments(
+                "The time between the stop and start doubles with each restart within an hour (30s, 60s, 120s...).",
+                "Once this is reached, the server only gets stopped.");
+
+        put(name, "metrics").setCountTopSpaces(1);
+        metrics = put(name, "metrics", "enable").setDefValues("false").setComments(
+                "Serves AutoPlugs and the servers metrics at http://[bind]:[port]/metrics in the OpenMetrics/Prometheus format.",
+                "Includes task and backup durations, downloads, HTTP latency per host, console sinks, reconnects,",
+                "and the values of the process- and tick-monitor above.");
+        metrics_bind = put(name, "metrics", "bind").setDefValues("127.0.0.1").setComments(
+                "Address to listen on. The default only allows scrapers running on this machine.",
+                "Use 0.0.0.0 to allow all, but make sure the port isn't reachable from the internet then.");
+        metrics_port = put(name, "metrics", "port").setDefValues("9225");
+
+        save();
+        unlockFile();
+    }
+}
@@ -22,6 +22,10 @@ public class TasksConfig extends DreamYaml {
     public DYModule show_warnings;
     public DYModule show_detailed_warnings;
 
+    public DYModule max_network_tasks;
+    public DYModule max_disk_tasks;
+    public DYModule max_cpu_tasks;
+
     public TasksConfig() throws IOException, DuplicateKeyException, DYReaderException, IllegalListException, DYWriterException, NotLoadedException, IllegalKeyException {
         super(System.getProperty("user.dir") + "/autoplug/tasks-config.yml");
         lockFile();
@@ -59,6 +63,18 @@ public class TasksConfig extends DreamYaml {
                 "The same information is available in the log file.",
                 "Note that the 'show-warnings' option above must be enabled too.");
 
+        put(name, "scheduler").setCountTopSpaces(1);
+        put(name, "scheduler").setComments(
+                "Tasks run as soon as the tasks they depend on are finished (for example the plugins-updater after the plugins-backup),",
+                "thus network-bound tasks like the updaters overlap with disk-bound tasks like the world backups.",
+                "The options below limit how many tasks of the same kind run at the same time. 0 means no limit.");
+        max_network_tasks = put(name, "scheduler", "max-network-tasks").setDefValues("3").setComments(
+                "Updaters and other tasks, that mostly download stuff.");
+        max_disk_tasks = put(name, "scheduler", "max-disk-tasks").setDefValues("2").setComments(
+                "Backups and other tasks, that mostly read/write files.",
+                "Set this to 1 if your server runs on a hard drive, since parallel reads make it seek a lot.");
+        max_cpu_tasks = put(name, "scheduler", "max-cpu-tasks").setDefValues("0");
+
         save();
         unlockFile();
     }
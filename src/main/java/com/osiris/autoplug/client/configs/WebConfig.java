@@ -17,6 +17,9 @@ import java.io.IOException;
 public class WebConfig extends DreamYaml {
 
     public DYModule online_console;
+    public DYModule online_console_flush_interval;
+    public DYModule online_console_max_batch_size;
+    public DYModule online_console_compression;
 
     public DYModule send_plugins_updater_results;
     public DYModule send_server_updater_results;
@@ -24,6 +27,8 @@ public class WebConfig extends DreamYaml {
 
     public DYModule send_server_status;
     public DYModule file_manager;
+    public DYModule file_manager_max_upload_size;
+    public DYModule multiplexing;
 
     public WebConfig() throws NotLoadedException, DYWriterException, IOException, IllegalKeyException, DuplicateKeyException, DYReaderException, IllegalListException {
         this(ConfigPreset.DEFAULT);
@@ -53,6 +58,13 @@ public class WebConfig extends DreamYaml {
         if (preset.equals(ConfigPreset.FAST)) {
             online_console.setDefValues("true");
         }
+        online_console_flush_interval = put(name, "online-console-transport", "flush-interval").setDefValues("20").setComments(
+                "Lines for the Online-Console get collected and sent together, at most this amount of milliseconds after the first line arrived.",
+                "This keeps log bursts (like at server startup) cheap on CPU and network.");
+        online_console_max_batch_size = put(name, "online-console-transport", "max-batch-size").setDefValues("32").setComments(
+                "Lines get sent earlier, if they reach this size in kilobytes.");
+        online_console_compression = put(name, "online-console-transport", "compression").setDefValues("false").setComments(
+                "Compresses the lines (deflate), if AutoPlug-Web supports it. Falls back to uncompressed otherwise.");
 
         send_plugins_updater_results = put(name, "updater-results", "send-plugins-updaters-results").setDefValues("true")
                 .setComments("Sends the plugins-updaters results to AutoPlug-Web.",
@@ -69,6 +81,14 @@ public class WebConfig extends DreamYaml {
 
         file_manager = put(name, "file-manager").setDefValues("true").setComments("Establishes the connection, once you are logged in to AutoPlug-Web.",
                 "Enables you to manage this servers files from AutoPlugs' web panel.");
+        file_manager_max_upload_size = put(name, "file-manager-max-upload-size").setDefValues("512").setComments(
+                "Max. size in megabytes of files uploaded or saved through the file manager.",
+                "Bigger uploads get rejected before they are sent.");
+
+        multiplexing = put(name, "multiplexing").setDefValues("false").setComments(
+                "Sends all the connections above through a single connection to AutoPlug-Web, if it supports it.",
+                "Saves a handshake and authentication per connection at login, and the console stays responsive during file transfers.",
+                "Falls back to separate connections otherwise.");
 
         save();
         unlockFile();
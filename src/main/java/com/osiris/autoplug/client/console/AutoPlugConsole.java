@@ -10,18 +10,32 @@ package com.osiris.autoplug.client.console;
 
 import com.osiris.autoplug.client.Main;
 import com.osiris.autoplug.client.Server;
+import com.osiris.autoplug.client.configs.MonitoringConfig;
+import com.osiris.autoplug.client.monitoring.ProcessMonitor;
+import com.osiris.autoplug.client.monitoring.ServerDiagnostics;
+import com.osiris.autoplug.client.monitoring.ServerStatusCache;
+import com.osiris.autoplug.client.monitoring.TickMonitor;
 import com.osiris.autoplug.client.network.online.ConMain;
 import com.osiris.autoplug.client.network.online.connections.ConServerStatus;
 import com.osiris.autoplug.client.tasks.BeforeServerStartupTasks;
+import com.osiris.autoplug.client.tasks.backup.BackupCatalog;
+import com.osiris.autoplug.client.tasks.backup.BackupRestorer;
 import com.osiris.autoplug.client.tasks.updater.java.TaskJavaUpdater;
 import com.osiris.autoplug.client.tasks.updater.plugins.TaskPluginsUpdater;
 import com.osiris.autoplug.client.tasks.updater.self.TaskSelfUpdater;
 import com.osiris.autoplug.client.tasks.updater.server.TaskServerUpdater;
+import com.osiris.autoplug.client.utils.BufferedLineSink;
+import com.osiris.autoplug.client.utils.ConsoleHistory;
+import com.osiris.autoplug.client.utils.GD;
 import com.osiris.autoplug.client.utils.UtilsBetterThread;
 import com.osiris.autoplug.core.logger.AL;
 import com.osiris.betterthread.BetterThreadManager;
+import net.lingala.zip4j.model.FileHeader;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.File;
+import java.util.Date;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -61,6 +75,15 @@ public final class AutoPlugConsole {
                     AL.info(".run tasks | Runs the 'before server startup tasks' without starting the server (.rt)");
                     AL.info(".con info | Shows details about AutoPlugs network connections (.ci)");
                     AL.info(".server info | Shows details about this server (.si)");
+                    AL.info(".backups | Lists all backups, newest first (.b)");
+                    AL.info(".backup files <backup> [path] | Lists the files inside the backup, or inside the path in the backup (.bf)");
+                    AL.info(".restore <backup> <path> [target] | Restores the file/folder from the backup, to its original location or the target folder (.res)");
+                    AL.info("                                  | <backup> can be the zips name, or worlds/plugins/server for the newest backup of that set");
+                    AL.info(".profile start | Starts profiling the server with Java Flight Recorder (.ps)");
+                    AL.info(".profile stop | Stops profiling and saves the recording to ./autoplug/profiles (.pst)");
+                    AL.info(".threaddump | Saves the stack traces of all the servers threads to ./autoplug/profiles (.td)");
+                    AL.info(".heapinfo | Shows the servers heap usage (.hi)");
+                    AL.info(".grep <text> | Searches the recent console lines for the text, case-insensitive (.g)");
                     AL.info(".check | Checks for AutoPlug updates and behaves according to the selected profile (.c)");
                     AL.info(".check java | Checks for Java updates and behaves according to the selected profile (.cj)");
                     AL.info(".check server | Checks for server updates and behaves according to the selected profile (.cs)");
@@ -104,11 +127,22 @@ public final class AutoPlugConsole {
                     ConServerStatus con = ConMain.CON_SERVER_STATUS;
                     AL.info("Running: " + Server.isRunning());
                     AL.info("Port: " + Server.PORT);
+                    if (Server.ASYNC_SERVER_IN != null)
+                        for (BufferedLineSink sink :
+                                Server.ASYNC_SERVER_IN.getSinks()) {
+                            AL.info("Output sink '" + sink.getName() + "': buffered=" + sink.getSize() + "/" + sink.getCapacity()
+                                    + " delivered=" + sink.getCountDelivered() + " dropped=" + sink.getCountDropped() + " policy=" + sink.getPolicy());
+                        }
+                    ProcessMonitor.Sample sample = ProcessMonitor.SERVER.getLatest();
+                    if (sample != null)
+                        AL.info("Server process (PID " + ProcessMonitor.SERVER.getPid() + "): " + sample);
+                    if (TickMonitor.SERVER.getTps().getSize() > 0 || TickMonitor.SERVER.getMspt().getSize() > 0)
+                        AL.info("Ticks in the last 10 minutes: " + TickMonitor.SERVER.getSummary(10 * 60 * 1000));
                     if (!con.isConnected()) {
                         AL.info(con.getClass().getSimpleName() + " is not active, thus more information cannot be retrieved!");
                     } else {
                         AL.info("Details from " + con.getClass().getSimpleName() + ":");
-                        AL.info("Host: " + con.host);
+                        AL.info("Host: " + ServerStatusCache.SERVER.getHost());
                         AL.info("Port: " + Server.PORT);
                         AL.info("Running: " + con.isRunning);
                         AL.info("Motd: " + con.strippedMotd);
@@ -121,6 +155,111 @@ public final class AutoPlugConsole {
                         AL.info("MEM total in Gb: " + con.memTotal);
                     }
                     return true;
+                } else if (command.equals(".backups") || command.equals(".b")) {
+                    BackupRestorer restorer = new BackupRestorer();
+                    List<File> archives = restorer.listArchives();
+                    if (archives.isEmpty())
+                        AL.info("No backups found in " + BackupRestorer.BACKUPS_DIR);
+                    for (File archive :
+                            archives) {
+                        BackupCatalog.Entry entry = BackupCatalog.of(archive.getParentFile()).get(archive.getName());
+                        if (entry == null)
+                            AL.info(archive.getName() + " | " + (archive.length() / 1048576) + "MB | " + new Date(archive.lastModified()));
+                        else
+                            AL.info(archive.getName() + " | " + (entry.size / 1048576) + "MB | " + new Date(entry.created)
+                                    + " | files: " + (entry.fileCount < 0 ? "?" : entry.fileCount)
+                                    + " | restorable: " + (entry.isRestorable == null ? "not verified yet" : entry.isRestorable + " (" + new Date(entry.verified) + ")"));
+                    }
+                    return true;
+                } else if (command.startsWith(".backup files ") || command.startsWith(".bf ")) {
+                    String[] args = command.substring(command.startsWith(".bf ") ? 4 : 14).trim().split(" ", 2);
+                    BackupRestorer restorer = new BackupRestorer();
+                    File archive = restorer.findArchive(args[0]);
+                    List<FileHeader> entries = restorer.listEntries(archive, args.length > 1 ? args[1] : null);
+                    for (FileHeader entry :
+                            entries) {
+                        AL.info(entry.getFileName() + (entry.isDirectory() ? "" : " | " + entry.getUncompressedSize() + " bytes"));
+                    }
+                    AL.info("Found " + entries.size() + " entries in " + archive.getName() + ".");
+                    return true;
+                } else if (command.startsWith(".restore ") || command.startsWith(".res ")) {
+                    String[] args = command.substring(command.startsWith(".res ") ? 5 : 9).trim().split(" ", 3);
+                    if (args.length < 2) {
+                        AL.info("Usage: .restore <backup> <path> [target]");
+                        return true;
+                    }
+                    BackupRestorer restorer = new BackupRestorer();
+                    File archive = restorer.findArchive(args[0]);
+                    File target;
+                    if (args.length > 2)
+                        target = new File(args[2]);
+                    else {
+                        if (Server.isRunning()) {
+                            AL.warn("Cannot restore to the original location while the server is running! Stop it first, or provide a target folder.");
+                            return true;
+                        }
+                        target = restorer.getDefaultTarget(archive);
+                    }
+                    new Thread(() -> {
+                        try {
+                            long start = System.currentTimeMillis();
+                            AL.info("Restoring '" + args[1] + "' from " + archive.getName() + " to " + target.getAbsolutePath() + "...");
+                            int count = restorer.restore(archive, args[1], target);
+                            AL.info("Restored " + count + " files in " + (System.currentTimeMillis() - start) + "ms.");
+                        } catch (Exception e) {
+                            AL.warn("Failed to restore '" + args[1] + "' from " + archive.getName() + "!", e);
+                        }
+                    }, "BackupRestorer").start();
+                    return true;
+                } else if (command.equals(".profile start") || command.equals(".ps")) {
+                    new Thread(() -> {
+                        try {
+                            File file = ServerDiagnostics.startProfiling(new MonitoringConfig().diagnostics_profile_settings.asString());
+                            AL.info("Started profiling. Enter '.profile stop' to save the recording to: " + file);
+                        } catch (Exception e) {
+                            AL.warn("Failed to start profiling!", e);
+                        }
+                    }, "Diagnostics").start();
+                    return true;
+                } else if (command.equals(".profile stop") || command.equals(".pst")) {
+                    new Thread(() -> {
+                        try {
+                            AL.info("Saved recording to: " + ServerDiagnostics.stopProfiling());
+                        } catch (Exception e) {
+                            AL.warn("Failed to stop profiling!", e);
+                        }
+                    }, "Diagnostics").start();
+                    return true;
+                } else if (command.equals(".threaddump") || command.equals(".td")) {
+                    new Thread(() -> {
+                        try {
+                            AL.info("Saved thread dump to: " + ServerDiagnostics.threadDump());
+                        } catch (Exception e) {
+                            AL.warn("Failed to create thread dump!", e);
+                        }
+                    }, "Diagnostics").start();
+                    return true;
+                } else if (command.equals(".heapinfo") || command.equals(".hi")) {
+                    new Thread(() -> {
+                        try {
+                            for (String line :
+                                    ServerDiagnostics.heapInfo().split("\r?\n")) {
+                                AL.info(line);
+                            }
+                        } catch (Exception e) {
+                            AL.warn("Failed to retrieve heap info!", e);
+                        }
+                    }, "Diagnostics").start();
+                    return true;
+                } else if (command.startsWith(".grep ") || command.startsWith(".g ")) {
+                    String query = command.substring(command.indexOf(' ') + 1);
+                    List<ConsoleHistory.Line> lines = GD.CONSOLE_HISTORY.grep(query, 100);
+                    for (ConsoleHistory.Line line :
+                            lines) {
+                        AL.info("#" + line.seq + " " + line.text);
+                    }
+                    AL.info("Found " + lines.size() + " lines containing '" + query + "'" + (lines.size() == 100 ? " (limit reached)." : "."));
+                    return true;
                 } else if (command.equals(".check") || command.equals(".c")) {
                     BetterThreadManager man = new UtilsBetterThread().createManagerWithDisplayer();
                     new TaskSelfUpdater("SelfUpdater", man).start();
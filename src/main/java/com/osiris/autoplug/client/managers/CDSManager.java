@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.managers;
+
+import com.osiris.autoplug.client.utils.GD;
+import com.osiris.autoplug.client.utils.UtilsJava;
+import com.osiris.autoplug.core.logger.AL;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Manages the AppCDS (Application Class-Data Sharing) archive of the servers JVM. <br>
+ * The first start (and every start after something changed) dumps the loaded classes
+ * into an archive once the server stops cleanly ('-XX:ArchiveClassesAtExit'). Later starts
+ * map that archive ('-XX:SharedArchiveFile'), instead of loading and verifying all those classes again. <br>
+ * The archive is bound to a fingerprint of the server jar, the plugins, the JRE and the flags,
+ * thus gets re-created automatically if any of these change. <br>
+ * Requires Java 13 or higher.
+ */
+public class CDSManager {
+    public static final File DIR = new File(GD.WORKING_DIR + "/autoplug/system/cds");
+    private final String javaCommand;
+    private final File serverJar;
+    private final List<String> flags;
+    private final File archive;
+    private final File fingerprintFile;
+    private boolean isCreating;
+
+    /**
+     * @param javaCommand the java command/path, that starts the server.
+     * @param serverJar   the server jar.
+     * @param flags       the other flags, the server gets started with.
+     */
+    public CDSManager(@NotNull String javaCommand, @NotNull File serverJar, @NotNull List<String> flags) {
+        this.javaCommand = javaCommand;
+        this.serverJar = serverJar;
+        this.flags = flags;
+        String name = serverJar.getName().replaceFirst("[.][^.]+$", "");
+        this.archive = new File(DIR + "/" + name + ".jsa");
+        this.fingerprintFile = new File(DIR + "/" + name + ".fingerprint");
+    }
+
+    /**
+     * Returns the flags that either use the existing archive, or create a new one. <br>
+     * Returns an empty list if the Java version doesn't support dynamic archives.
+     */
+    @NotNull
+    public List<String> getFlags() throws Exception {
+        List<String> result = new ArrayList<>();
+        int javaVersion = new UtilsJava().getMajorVersion(javaCommand);
+        if (javaVersion < 13) {
+            AL.warn("Server AppCDS is enabled, but requires Java 13 or higher (current: " + javaVersion + "). Skipped it.");
+            return result;
+        }
+        if (!DIR.exists()) DIR.mkdirs();
+        String fingerprint = createFingerprint();
+        if (archive.exists() && fingerprintFile.exists()
+                && fingerprint.equals(new String(Files.readAllBytes(fingerprintFile.toPath()), StandardCharsets.UTF_8))) {
+            AL.debug(this.getClass(), "Using AppCDS archive: " + archive);
+            result.add("-XX:SharedArchiveFile=" + archive.getAbsolutePath());
+            result.add("-Xshare:auto"); // Start anyway if the archive can't be mapped
+        } else {
+            delete();
+            Files.write(fingerprintFile.toPath(), fingerprint.getBytes(StandardCharsets.UTF_8));
+            AL.info("Server AppCDS archive will be created when the server stops, which speeds up the next starts.");
+            result.add("-XX:ArchiveClassesAtExit=" + archive.getAbsolutePath());
+            isCreating = true;
+        }
+        return result;
+    }
+
+    /**
+     * Deletes the archive, for example because the server didn't stop cleanly,
+     * which may leave an incomplete one behind.
+     */
+    public void delete() {
+        if (archive.exists() && !archive.delete())
+            AL.warn("Failed to delete AppCDS archive: " + archive);
+        if (fingerprintFile.exists()) fingerprintFile.delete();
+    }
+
+    /**
+     * True if the flags returned by {@link #getFlags()} create a new archive.
+     */
+    public boolean isCreating() {
+        return isCreating;
+    }
+
+    @NotNull
+    public File getArchive() {
+        return archive;
+    }
+
+    /**
+     * Hash of everything, that changes the loaded classes or makes an archive unusable.
+     * Uses file sizes and modification dates instead of file contents, to keep it fast.
+     */
+    @NotNull
+    private String createFingerprint() throws Exception {
+        StringBuilder builder = new StringBuilder();
+        builder.append(new UtilsJava().getVersionOutput(javaCommand)).append('\n');
+        File javaFile = new File(javaCommand);
+        if (javaFile.exists())
+            appendFile(builder, javaFile.getCanonicalFile());
+        appendFile(builder, serverJar);
+        File[] plugins = GD.PLUGINS_DIR.listFiles((dir, name) -> name.endsWith(".jar"));
+        if (plugins != null) {
+            Arrays.sort(plugins, Comparator.comparing(File::getName));
+            for (File plugin :
+                    plugins) {
+                appendFile(builder, plugin);
+            }
+        }
+        for (String flag :
+                flags) {
+            builder.append(flag).append('\n');
+        }
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] hash = digest.digest(builder.toString().getBytes(StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder();
+        for (byte b : hash) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private void appendFile(@NotNull StringBuilder builder, @NotNull File file) {
+        builder.append(file.getAbsolutePath()).append(' ')
+                .append(file.length()).append(' ')
+                .append(file.lastModified()).append('\n');
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.monitoring;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Follows the GC log of the server and extracts the GC pause durations from it. <br>
+ * Supports the unified logging format of Java 9+ ('-Xlog:gc') and the
+ * '-XX:+PrintGCApplicationStoppedTime' lines of Java 8.
+ */
+public class GcLogReader {
+    /**
+     * Example: '[12.345s][info][gc] GC(3) Pause Young (Normal) (G1 Evacuation Pause) 24M->3M(256M) 3.456ms'
+     */
+    private static final Pattern UNIFIED_PAUSE = Pattern.compile("Pause.* (\\d+[.,]\\d+)ms\\s*$");
+    /**
+     * Example: 'Total time for which application threads were stopped: 0.0012345 seconds, Stopping threads took: ...'
+     */
+    private static final Pattern JAVA_8_PAUSE = Pattern.compile("threads were stopped: (\\d+[.,]\\d+) seconds");
+    private final File file;
+    private long position;
+    private final StringBuilder partialLine = new StringBuilder();
+
+    public GcLogReader(@NotNull File file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the JVM flags that create the GC log this reader expects.
+     *
+     * @param javaVersion major version of the servers Java.
+     */
+    @NotNull
+    public static List<String> getFlags(@NotNull String path, int javaVersion) {
+        List<String> flags = new ArrayList<>();
+        if (javaVersion >= 9) {
+            flags.add("-Xlog:gc:file=" + path + ":uptime:filecount=2,filesize=10M");
+        } else {
+            flags.add("-Xloggc:" + path);
+            flags.add("-XX:+PrintGCApplicationStoppedTime");
+        }
+        return flags;
+    }
+
+    /**
+     * Returns true if the provided JVM flags already contain a GC log ('-Xloggc' or '-Xlog:gc'). <br>
+     * Java 8 only supports a single '-Xloggc' file, thus the flags of {@link #getFlags(String, int)} would replace the users log,
+     * and Java 9+ would write the same log twice.
+     */
+    public static boolean isGcLogSet(@NotNull List<String> flags) {
+        for (String flag :
+                flags) {
+            if (flag.startsWith("-Xloggc") || flag.startsWith("-Xlog:gc")) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reads the lines written since the last call and returns the GC pauses found in them, in milliseconds.
+     */
+    @NotNull
+    public List<Double> readNewPauses() throws IOException {
+        List<Double> pauses = new ArrayList<>();
+        if (!file.exists()) return pauses;
+        long length = file.length();
+        if (length < position) { // File was rotated or re-created
+            position = 0;
+            partialLine.setLength(0);
+        }
+        if (length == position) return pauses;
+        byte[] bytes;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(position);
+            bytes = new byte[(int) Math.min(length - position, 4 * 1024 * 1024)];
+            raf.readFully(bytes);
+        }
+        position += bytes.length;
+        partialLine.append(new String(bytes, StandardCharsets.UTF_8));
+        int start = 0;
+        int end;
+        while ((end = partialLine.indexOf("\n", start)) != -1) {
+            Double pause = parsePause(partialLine.substring(start, end));
+            if (pause != null) pauses.add(pause);
+            start = end + 1;
+        }
+        partialLine.delete(0, start);
+        return pauses;
+    }
+
+    /**
+     * @return the pause duration in milliseconds, or null if the line isn't about a pause.
+     */
+    @Nullable
+    public static Double parsePause(@NotNull String line) {
+        Matcher matcher = UNIFIED_PAUSE.matcher(line);
+        if (matcher.find()) return Double.parseDouble(matcher.group(1).replace(',', '.'));
+        matcher = JAVA_8_PAUSE.matcher(line);
+        if (matcher.find()) return Double.parseDouble(matcher.group(1).replace(',', '.')) * 1000;
+        return null;
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.monitoring;
+
+import com.osiris.autoplug.client.Server;
+import com.osiris.autoplug.core.logger.AL;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Detects a frozen server (deadlock, GC thrashing), which is still alive and thus
+ * not detected by restart-on-crash. Combines these signals:
+ * <pre>
+ * - No console output, even after submitting a probe command.
+ * - The server doesn't answer pings.
+ * - The TPS is below a threshold.
+ * </pre>
+ * If enough of them are active in two checks in a row, thread dumps and a short flight recording
+ * get captured (see {@link ServerDiagnostics}) and the server gets restarted (stop, then kill if needed). <br>
+ * Capturing the diagnostics has its own deadline, since jcmd might hang too, if the server is frozen. <br>
+ * The reply to the probe command is hidden, so that an idle server doesn't fill the console with it. <br>
+ * Restarts caused by this watchdog back off exponentially, if they happen often (crash-loop).
+ */
+public class HangWatchdog {
+    public static final HangWatchdog SERVER = new HangWatchdog();
+    private static final long CHECK_INTERVAL_MS = 5000;
+    private static final long HOUR_MS = 3600000;
+    private static final long MAX_BACKOFF_MS = 15 * 60000;
+    /**
+     * Lines that follow the probes reply this fast belong to it too, like the player names of Paper's 'list'.
+     */
+    private static final long REPLY_LINES_GAP_MS = 100;
+    private final LinkedList<Long> restarts = new LinkedList<>();
+    private int requiredSignals = 2;
+    private long silenceMs = 15000;
+    private String probeCommand = "list";
+    private int pingTimeoutSeconds = 5;
+    private double minTps = 5;
+    private int stopTimeoutSeconds = 10;
+    private int profileSeconds = 5;
+    private int diagnosticsTimeoutSeconds = 10;
+    private int maxRestartsPerHour = 5;
+    private volatile long lastOutput;
+    private volatile long lastProbe;
+    private volatile long awaitingProbeReplyUntil;
+    private volatile long lastProbeReplyLine;
+    private volatile boolean isServerReady;
+    private volatile boolean isRecovering;
+    private int countTripped;
+    private Thread thread;
+
+    /**
+     * @param requiredSignals    amount of signals (silence, ping, TPS) that must be active to consider the server frozen.
+     * @param silenceSeconds     time without console output, after which the server is considered silent.
+     * @param probeCommand       command submitted when the server was silent for half of the time above, so that an idle server produces output.
+     * @param pingTimeoutSeconds timeout of the ping.
+     * @param minTps             the server is considered frozen below this TPS.
+     * @param stopTimeoutSeconds time to wait for the server to stop, before killing it.
+     * @param profileSeconds     length of the flight recording, 0 to disable.
+     * @param diagnosticsTimeoutSeconds max. time for capturing all diagnostics, the restart happens after that in any case.
+     * @param maxRestartsPerHour more restarts within an hour are not done, since something else is broken then.
+     */
+    public synchronized void start(int requiredSignals, int silenceSeconds, @NotNull String probeCommand, int pingTimeoutSeconds,
+                                   double minTps, int stopTimeoutSeconds, int profileSeconds, int diagnosticsTimeoutSeconds,
+                                   int maxRestartsPerHour) {
+        this.requiredSignals = Math.max(1, Math.min(3, requiredSignals));
+        this.silenceMs = silenceSeconds * 1000L;
+        this.probeCommand = probeCommand.trim();
+        this.pingTimeoutSeconds = pingTimeoutSeconds;
+        this.minTps = minTps;
+        this.stopTimeoutSeconds = stopTimeoutSeconds;
+        this.profileSeconds = profileSeconds;
+        this.diagnosticsTimeoutSeconds = diagnosticsTimeoutSeconds;
+        this.maxRestartsPerHour = maxRestartsPerHour;
+        if (thread == null) {
+            thread = new Thread(this::run, "Hang-Watchdog");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Must be called when a new server process starts.
+     */
+    public void onServerStart() {
+        isServerReady = false;
+        lastOutput = System.currentTimeMillis();
+        lastProbe = 0;
+        awaitingProbeReplyUntil = 0;
+        lastProbeReplyLine = 0;
+    }
+
+    /**
+     * Must be called for each command submitted to the server. <br>
+     * The next output is only considered the probes reply, if nobody else submitted a command in the meantime.
+     */
+    public void onCommandSubmitted() {
+        if (Thread.currentThread() != thread) awaitingProbeReplyUntil = 0;
+    }
+
+    /**
+     * Gets called for each line of the servers output, thus must be fast.
+     *
+     * @param isClaimed true if the line is already known to be something else, like a reply to the {@link TickMonitor}.
+     * @return true if the line is the reply to the probe command.
+     */
+    public boolean onServerOutput(@NotNull String line, boolean isClaimed) {
+        long now = System.currentTimeMillis();
+        lastOutput = now;
+        if (!isServerReady && line.contains("Done (") && line.contains("help")) isServerReady = true;
+        if (isClaimed) return false;
+        if (now < awaitingProbeReplyUntil) { // The server was silent before the probe, thus the first line is its reply
+            awaitingProbeReplyUntil = 0;
+            lastProbeReplyLine = now;
+            return true;
+        }
+        if (now - lastProbeReplyLine < REPLY_LINES_GAP_MS) {
+            lastProbeReplyLine = now;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * The reply is expected until the server would be considered silent.
+     */
+    void onProbe(long now) {
+        lastProbe = now;
+        awaitingProbeReplyUntil = now + silenceMs / 2;
+    }
+
+    private void run() {
+        while (true) {
+            try {
+                Thread.sleep(CHECK_INTERVAL_MS);
+                if (isRecovering || !isServerReady || !Server.isRunning() || Server.isStopRequested()) {
+                    countTripped = 0;
+                    continue;
+                }
+                List<String> signals = check();
+                if (signals.size() >= requiredSignals) countTripped++;
+                else countTripped = 0;
+                if (countTripped >= 2) {
+                    countTripped = 0;
+                    isRecovering = true;
+                    new Thread(() -> recover(signals), "Hang-Watchdog-Recovery").start();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                AL.warn(e);
+            }
+        }
+    }
+
+    /**
+     * Returns the active signals.
+     */
+    @NotNull
+    private List<String> check() throws IOException {
+        List<String> signals = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        long silence = now - lastOutput;
+        if (silence > silenceMs / 2 && lastProbe < lastOutput && !probeCommand.isEmpty()) {
+            onProbe(now);
+            Server.submitCommand(probeCommand);
+        }
+        // Only silent if even the probe didn't produce output in time
+        if (silence > silenceMs && (probeCommand.isEmpty() || (lastProbe > lastOutput && now - lastProbe > silenceMs / 2)))
+            signals.add("no output for " + (silence / 1000) + "s");
+
+        TimeSeries tps = TickMonitor.SERVER.getTps();
+        if (tps.getSize() > 0 && now - tps.getLatestTime() < silenceMs && tps.getLatest() < minTps)
+            signals.add("TPS " + tps.getLatest());
+
+        // Pinging is the most expensive check, thus only done if needed
+        if (signals.size() + 1 >= requiredSignals && Server.PORT > 0
+                && !ServerStatusCache.SERVER.get(CHECK_INTERVAL_MS, pingTimeoutSeconds).isServerUp())
+            signals.add("no ping response within " + pingTimeoutSeconds + "s");
+        return signals;
+    }
+
+    private void recover(@NotNull List<String> signals) {
+        try {
+            Metrics.WATCHDOG_TRIPS.get().increment();
+            AL.warn("Server seems to be frozen (" + String.join(", ", signals) + ")! Capturing diagnostics and restarting it...");
+            long deadline = System.currentTimeMillis() + diagnosticsTimeoutSeconds * 1000L;
+            if (!runWithDeadline(() -> captureDiagnostics(deadline), diagnosticsTimeoutSeconds * 1000L))
+                AL.warn("Capturing diagnostics didn't finish within " + diagnosticsTimeoutSeconds + " seconds, restarting anyway.");
+
+            long delay;
+            synchronized (restarts) {
+                long now = System.currentTimeMillis();
+                Iterator<Long> it = restarts.iterator();
+                while (it.hasNext()) {
+                    if (now - it.next() > HOUR_MS) it.remove();
+                }
+                if (restarts.size() >= maxRestartsPerHour) {
+                    AL.warn("Server froze " + restarts.size() + " times within the last hour, thus it only gets stopped and not restarted again." +
+                            " Check the thread dumps in " + ServerDiagnostics.PROFILES_DIR + " for the cause.");
+                    if (!Server.stop(stopTimeoutSeconds)) Server.kill();
+                    return;
+                }
+                // 0s, 30s, 60s, 120s... between the stop and start
+                delay = restarts.isEmpty() ? 0 : Math.min(MAX_BACKOFF_MS, 30000L << (restarts.size() - 1));
+                restarts.add(now);
+            }
+            Server.restartFrozen(stopTimeoutSeconds, delay);
+        } catch (Exception e) {
+            AL.warn("Failed to restart the frozen server!", e);
+        } finally {
+            isRecovering = false;
+        }
+    }
+
+    /**
+     * Runs the step in its own thread and waits at most the provided time for it. <br>
+     * If it takes longer, it gets interrupted (which also kills a running jcmd, see {@link ServerDiagnostics#jcmd(String...)})
+     * and left behind, so that the caller can continue in any case.
+     *
+     * @return false if the step didn't finish in time.
+     */
+    static boolean runWithDeadline(@NotNull Runnable step, long timeoutMs) throws InterruptedException {
+        Thread thread = new Thread(step, "Hang-Watchdog-Diagnostics");
+        thread.setDaemon(true);
+        thread.start();
+        thread.join(Math.max(1, timeoutMs));
+        if (!thread.isAlive()) return true;
+        thread.interrupt();
+        return false;
+    }
+
+    /**
+     * Three thread dumps a second apart (to see which threads are stuck), then a short flight recording,
+     * shortened to fit before the deadline. <br>
+     * If the first thread dump already fails, the others are skipped, since jcmd can't reach the server then.
+     */
+    private void captureDiagnostics(long deadline) {
+        try {
+            for (int i = 0; i < 3; i++) {
+                if (i > 0) Thread.sleep(1000);
+                File file = ServerDiagnostics.threadDump();
+                AL.info("Created thread dump at: " + file);
+            }
+            // The server needs a moment to write the file once the time is up
+            int seconds = (int) Math.min(profileSeconds, (deadline - System.currentTimeMillis() - 1000) / 1000);
+            if (seconds > 0) {
+                File file = ServerDiagnostics.profileFor(seconds, "default");
+                Thread.sleep(seconds * 1000L + 1000);
+                AL.info("Created flight recording at: " + file);
+            }
+        } catch (InterruptedException ignored) {
+            // Deadline reached
+        } catch (Exception e) {
+            AL.warn("Failed to capture diagnostics of the frozen server.", e);
+        }
+    }
+}
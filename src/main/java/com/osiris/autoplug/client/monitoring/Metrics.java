@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.monitoring;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Registry of counters, gauges and histograms, that can be exported in the
+ * OpenMetrics text format (see {@link MetricsServer}). <br>
+ * Recording a value never locks: counters and histogram buckets are {@link LongAdder}s
+ * and a labeled child is looked up without locking, once it was created.
+ * Callers on hot paths should keep a reference to their child, instead of calling labels() each time.
+ */
+public class Metrics {
+    public static final Metrics AUTOPLUG = new Metrics();
+    /**
+     * In seconds, from 10ms to 30min.
+     */
+    public static final double[] DURATION_BUCKETS = {0.01, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 300, 900, 1800};
+    /**
+     * In bytes, from 1mb to 50gb.
+     */
+    public static final double[] SIZE_BUCKETS = {1e6, 1e7, 1e8, 5e8, 1e9, 5e9, 1e10, 5e10};
+
+    public static final Histogram TASK_DURATION = AUTOPLUG.histogram("autoplug_task_duration_seconds",
+            "Duration of AutoPlugs tasks.", DURATION_BUCKETS, "task");
+    public static final Counter DOWNLOAD_BYTES = AUTOPLUG.counter("autoplug_download_bytes",
+            "Bytes downloaded by the updaters.");
+    public static final Histogram DOWNLOAD_DURATION = AUTOPLUG.histogram("autoplug_download_duration_seconds",
+            "Duration of downloads.", DURATION_BUCKETS);
+    public static final Gauge DOWNLOAD_THROUGHPUT = AUTOPLUG.gauge("autoplug_download_throughput_bytes_per_second",
+            "Average throughput of the last download.");
+    public static final Histogram BACKUP_DURATION = AUTOPLUG.histogram("autoplug_backup_duration_seconds",
+            "Duration of creating backup zips.", DURATION_BUCKETS, "type");
+    public static final Histogram BACKUP_SIZE = AUTOPLUG.histogram("autoplug_backup_size_bytes",
+            "Size of created backup zips.", SIZE_BUCKETS, "type");
+    public static final Histogram HTTP_DURATION = AUTOPLUG.histogram("autoplug_http_request_duration_seconds",
+            "Duration of HTTP requests, until the response headers were received.", DURATION_BUCKETS, "host");
+    public static final Counter HTTP_ERRORS = AUTOPLUG.counter("autoplug_http_request_errors",
+            "HTTP requests that failed, or returned a status code of 400 or higher.", "host");
+    public static final Counter CONSOLE_LINES = AUTOPLUG.counter("autoplug_console_lines",
+            "Server output lines offered to a console sink.", "sink");
+    public static final Counter CONSOLE_DROPPED_LINES = AUTOPLUG.counter("autoplug_console_dropped_lines",
+            "Server output lines a console sink dropped, because it couldn't keep up.", "sink");
+    public static final Counter RECONNECTS = AUTOPLUG.counter("autoplug_reconnects",
+            "Reconnects to AutoPlug-Web.", "connection");
+    public static final Counter WATCHDOG_TRIPS = AUTOPLUG.counter("autoplug_watchdog_trips",
+            "Times the hang watchdog detected a frozen server.");
+
+    static {
+        AUTOPLUG.gauge("autoplug_server_cpu_percent", "CPU usage of the servers process (100 per core).",
+                () -> latestSample() == null ? Double.NaN : latestSample().cpuPercent);
+        AUTOPLUG.gauge("autoplug_server_memory_rss_bytes", "Resident memory of the servers process.",
+                () -> latestSample() == null ? Double.NaN : latestSample().rssBytes);
+        AUTOPLUG.gauge("autoplug_server_threads", "Threads of the servers process.",
+                () -> latestSample() == null ? Double.NaN : latestSample().threads);
+        AUTOPLUG.gauge("autoplug_server_gc_pause_max_milliseconds", "Longest GC pause of the servers process in the last sample interval.",
+                () -> latestSample() == null ? Double.NaN : latestSample().gcPausesMaxMs);
+        AUTOPLUG.gauge("autoplug_server_tps", "Latest TPS sample of the server.",
+                () -> TickMonitor.SERVER.getTps().getLatest());
+        AUTOPLUG.gauge("autoplug_server_mspt", "Latest MSPT sample of the server.",
+                () -> TickMonitor.SERVER.getMspt().getLatest());
+        AUTOPLUG.gauge("autoplug_jvm_memory_used_bytes", "Heap used by AutoPlug itself.",
+                () -> Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory());
+    }
+
+    private final Map<String, Family<?>> families = new LinkedHashMap<>();
+
+    private static ProcessMonitor.Sample latestSample() {
+        return ProcessMonitor.SERVER.getLatest();
+    }
+
+    /**
+     * Records a finished download.
+     *
+     * @param startNanos {@link System#nanoTime()} from the start of the download.
+     */
+    public static void recordDownload(long bytes, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        DOWNLOAD_BYTES.get().add(bytes);
+        DOWNLOAD_DURATION.get().observe(seconds);
+        if (seconds > 0) DOWNLOAD_THROUGHPUT.get().set(bytes / seconds);
+    }
+
+    @NotNull
+    public synchronized Counter counter(@NotNull String name, @NotNull String help, @NotNull String... labelNames) {
+        return register(new Counter(name, help, labelNames));
+    }
+
+    @NotNull
+    public synchronized Gauge gauge(@NotNull String name, @NotNull String help, @NotNull String... labelNames) {
+        return register(new Gauge(name, help, labelNames));
+    }
+
+    /**
+     * Gauge whose value gets retrieved from the supplier on each export.
+     */
+    @NotNull
+    public synchronized Gauge gauge(@NotNull String name, @NotNull String help, @NotNull DoubleSupplier supplier) {
+        Gauge gauge = register(new Gauge(name, help));
+        gauge.get().supplier = supplier;
+        return gauge;
+    }
+
+    /**
+     * @param buckets upper bounds, in ascending order. The +Inf bucket is added automatically.
+     */
+    @NotNull
+    public synchronized Histogram histogram(@NotNull String name, @NotNull String help, @NotNull double[] buckets, @NotNull String... labelNames) {
+        return register(new Histogram(name, help, buckets, labelNames));
+    }
+
+    private <T extends Family<?>> T register(T family) {
+        if (families.containsKey(family.name))
+            throw new IllegalArgumentException("Metric '" + family.name + "' was already registered!");
+        families.put(family.name, family);
+        if (family.labelNames.length == 0) family.get(); // So that it gets exported before its first use
+        return family;
+    }
+
+    /**
+     * Returns all metrics in the OpenMetrics text format.
+     */
+    @NotNull
+    public String export() {
+        List<Family<?>> list;
+        synchronized (this) {
+            list = new ArrayList<>(families.values());
+        }
+        StringBuilder sb = new StringBuilder(4096);
+        for (Family<?> family :
+                list) {
+            sb.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+            sb.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            for (Map.Entry<List<String>, ?> entry :
+                    family.children.entrySet()) {
+                family.write(sb, labelsOf(family.labelNames, entry.getKey()), entry.getValue());
+            }
+        }
+        sb.append("# EOF\n");
+        return sb.toString();
+    }
+
+    /**
+     * Example: 'task="Backup",' (note the trailing comma, which gets removed later).
+     */
+    private static String labelsOf(String[] names, List<String> values) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < names.length; i++) {
+            sb.append(names[i]).append("=\"").append(values.get(i)
+                    .replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n")).append("\",");
+        }
+        return sb.toString();
+    }
+
+    private static void sample(StringBuilder sb, String name, String labels, double value) {
+        sb.append(name);
+        if (!labels.isEmpty())
+            sb.append('{').append(labels, 0, labels.length() - 1).append('}');
+        sb.append(' ').append(format(value)).append('\n');
+    }
+
+    private static String format(double value) {
+        if (Double.isNaN(value)) return "NaN";
+        if (Double.isInfinite(value)) return value > 0 ? "+Inf" : "-Inf";
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) return Long.toString((long) value);
+        return Double.toString(value);
+    }
+
+    /**
+     * Metric with its children, one per combination of label values.
+     */
+    public abstract static class Family<C> {
+        final String name;
+        final String help;
+        final String type;
+        final String[] labelNames;
+        final ConcurrentHashMap<List<String>, C> children = new ConcurrentHashMap<>();
+
+        Family(String name, String help, String type, String[] labelNames) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.labelNames = labelNames;
+        }
+
+        /**
+         * Returns the child for the provided label values, which must match the label names in amount.
+         */
+        @NotNull
+        public C labels(@NotNull String... values) {
+            if (values.length != labelNames.length)
+                throw new IllegalArgumentException("Metric '" + name + "' expects " + labelNames.length + " label values, but got " + values.length + "!");
+            List<String> key = Arrays.asList(values);
+            C child = children.get(key); // Lock-free for existing children
+            if (child == null) child = children.computeIfAbsent(key, k -> newChild());
+            return child;
+        }
+
+        /**
+         * Returns the child of a metric without labels.
+         */
+        @NotNull
+        public C get() {
+            return labels();
+        }
+
+        abstract C newChild();
+
+        abstract void write(StringBuilder sb, String labels, Object child);
+    }
+
+    public static class Counter extends Family<LongAdder> {
+        Counter(String name, String help, String[] labelNames) {
+            super(name, help, "counter", labelNames);
+        }
+
+        @Override
+        LongAdder newChild() {
+            return new LongAdder();
+        }
+
+        @Override
+        void write(StringBuilder sb, String labels, Object child) {
+            sample(sb, name + "_total", labels, ((LongAdder) child).sum());
+        }
+    }
+
+    public static class Gauge extends Family<GaugeValue> {
+        Gauge(String name, String help, String... labelNames) {
+            super(name, help, "gauge", labelNames);
+        }
+
+        @Override
+        GaugeValue newChild() {
+            return new GaugeValue();
+        }
+
+        @Override
+        void write(StringBuilder sb, String labels, Object child) {
+            GaugeValue gauge = (GaugeValue) child;
+            sample(sb, name, labels, gauge.supplier != null ? gauge.supplier.getAsDouble() : gauge.value);
+        }
+    }
+
+    public static class GaugeValue {
+        private volatile double value;
+        private volatile DoubleSupplier supplier;
+
+        public void set(double value) {
+            this.value = value;
+        }
+
+        public double getValue() {
+            return supplier != null ? supplier.getAsDouble() : value;
+        }
+    }
+
+    public static class Histogram extends Family<HistogramValue> {
+        private final double[] buckets;
+
+        Histogram(String name, String help, double[] buckets, String[] labelNames) {
+            super(name, help, "histogram", labelNames);
+            this.buckets = buckets;
+        }
+
+        @Override
+        HistogramValue newChild() {
+            return new HistogramValue(buckets);
+        }
+
+        @Override
+        void write(StringBuilder sb, String labels, Object child) {
+            HistogramValue histogram = (HistogramValue) child;
+            long cumulative = 0;
+            for (int i = 0; i <= buckets.length; i++) {
+                cumulative += histogram.counts[i].sum();
+                sample(sb, name + "_bucket", labels + "le=\"" + (i < buckets.length ? format(buckets[i]) : "+Inf") + "\",", cumulative);
+            }
+            sample(sb, name + "_count", labels, histogram.count.sum());
+            sample(sb, name + "_sum", labels, histogram.sum.sum());
+        }
+    }
+
+    public static class HistogramValue {
+        private final double[] buckets;
+        /**
+         * Non-cumulative counts, the last one being the +Inf bucket.
+         */
+        private final LongAdder[] counts;
+        private final LongAdder count = new LongAdder();
+        private final DoubleAdder sum = new DoubleAdder();
+
+        HistogramValue(double[] buckets) {
+            this.buckets = buckets;
+            this.counts = new LongAdder[buckets.length + 1];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = new LongAdder();
+            }
+        }
+
+        public void observe(double value) {
+            int i = 0;
+            while (i < buckets.length && value > buckets[i]) i++;
+            counts[i].increment();
+            count.increment();
+            sum.add(value);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public double getSum() {
+            return sum.sum();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.monitoring;
+
+import com.osiris.autoplug.core.logger.AL;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves {@link Metrics#AUTOPLUG} at '/metrics', so that it can be scraped by Prometheus. <br>
+ * Uses the HTTP server built into the JDK, with a single daemon thread.
+ */
+public class MetricsServer {
+    private final Metrics metrics;
+    private HttpServer server;
+
+    public MetricsServer(@NotNull Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param bind address to listen on, for example '127.0.0.1' to only allow local scrapers.
+     */
+    public synchronized void start(@NotNull String bind, int port) throws IOException {
+        if (server != null) return;
+        server = HttpServer.create(new InetSocketAddress(bind, port), 0);
+        server.createContext("/metrics", this::handle);
+        server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "Metrics-Server");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+        AL.debug(this.getClass(), "Serving metrics at http://" + bind + ":" + port + "/metrics");
+    }
+
+    public synchronized void stop() {
+        if (server == null) return;
+        server.stop(0);
+        server = null;
+    }
+
+    private void handle(@NotNull HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = metrics.export().getBytes(StandardCharsets.UTF_8);
+            String accept = exchange.getRequestHeaders().getFirst("Accept");
+            // Older scrapers only know the Prometheus text format, which the output is compatible with
+            exchange.getResponseHeaders().set("Content-Type",
+                    accept != null && accept.contains("application/openmetrics-text")
+                            ? "application/openmetrics-text; version=1.0.0; charset=utf-8"
+                            : "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (Exception e) {
+            AL.warn(e);
+        } finally {
+            exchange.close();
+        }
+    }
+}
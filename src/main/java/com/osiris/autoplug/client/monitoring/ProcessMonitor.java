@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.monitoring;
+
+import com.osiris.autoplug.client.utils.GD;
+import com.osiris.autoplug.core.logger.AL;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import oshi.software.os.OSProcess;
+import oshi.software.os.OperatingSystem;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Samples the resource usage of the servers process through oshi
+ * and keeps the samples in a fixed-size ring (time series). <br>
+ * The history is kept across server restarts.
+ */
+public class ProcessMonitor {
+    public static final ProcessMonitor SERVER = new ProcessMonitor();
+    private Sample[] samples = new Sample[720];
+    private int countSamples;
+    private int nextIndex;
+    private int intervalSeconds = 5;
+    @Nullable
+    private volatile Process process;
+    private volatile int pid = -1;
+    @Nullable
+    private volatile GcLogReader gcLogReader;
+    private Thread thread;
+
+    /**
+     * Returns the PID of the process. <br>
+     * Uses Process#pid() on Java 9+ and searches the children of this process through oshi on Java 8.
+     *
+     * @param commandLinePart a part of the processes command line, that identifies it among the other children.
+     * @return -1 if not found.
+     */
+    public static int findPid(@NotNull Process process, @NotNull String commandLinePart) {
+        try {
+            return ((Long) Process.class.getMethod("pid").invoke(process)).intValue();
+        } catch (Exception ignored) {
+            // Java 8
+        }
+        OperatingSystem os = GD.getSystemInfo().getOperatingSystem();
+        OSProcess youngest = null;
+        for (OSProcess child :
+                os.getChildProcesses(os.getProcessId(), p -> p.getCommandLine().contains(commandLinePart), null, 0)) {
+            if (youngest == null || child.getStartTime() > youngest.getStartTime())
+                youngest = child;
+        }
+        return youngest == null ? -1 : youngest.getProcessID();
+    }
+
+    public synchronized void setHistorySize(int size) {
+        if (size < 1 || size == samples.length) return;
+        List<Sample> old = getSamples();
+        samples = new Sample[size];
+        countSamples = 0;
+        nextIndex = 0;
+        for (int i = Math.max(0, old.size() - size); i < old.size(); i++) {
+            add(old.get(i));
+        }
+    }
+
+    public void setIntervalSeconds(int intervalSeconds) {
+        this.intervalSeconds = Math.max(1, intervalSeconds);
+    }
+
+    /**
+     * Starts monitoring the provided process, which replaces the previous one.
+     *
+     * @param gcLog the servers GC log, null if there is none.
+     */
+    public synchronized void watch(@NotNull Process process, int pid, @Nullable File gcLog) {
+        this.process = process;
+        this.pid = pid;
+        this.gcLogReader = gcLog == null ? null : new GcLogReader(gcLog);
+        if (thread == null) {
+            thread = new Thread(this::run, "Process-Monitor");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private void run() {
+        OperatingSystem os = GD.getSystemInfo().getOperatingSystem();
+        OSProcess prior = null;
+        int priorPid = -1;
+        while (true) {
+            try {
+                Thread.sleep(intervalSeconds * 1000L);
+                Process process = this.process;
+                int pid = this.pid;
+                if (process == null || !process.isAlive() || pid == -1) {
+                    prior = null;
+                    continue;
+                }
+                OSProcess current = os.getProcess(pid);
+                if (current == null) continue;
+                if (priorPid != pid) prior = null;
+                double cpuPercent = prior == null ? 0 : current.getProcessCpuLoadBetweenTicks(prior) * 100;
+                prior = current;
+                priorPid = pid;
+
+                int countPauses = 0;
+                double pausesTotalMs = 0, pausesMaxMs = 0;
+                GcLogReader reader = this.gcLogReader;
+                if (reader != null)
+                    for (double pause :
+                            reader.readNewPauses()) {
+                        countPauses++;
+                        pausesTotalMs += pause;
+                        pausesMaxMs = Math.max(pausesMaxMs, pause);
+                    }
+
+                add(new Sample(System.currentTimeMillis(), cpuPercent, current.getResidentSetSize(),
+                        current.getThreadCount(), current.getOpenFiles(), countPauses, pausesTotalMs, pausesMaxMs));
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                AL.warn(e);
+            }
+        }
+    }
+
+    private synchronized void add(@NotNull Sample sample) {
+        samples[nextIndex] = sample;
+        nextIndex = (nextIndex + 1) % samples.length;
+        if (countSamples < samples.length) countSamples++;
+    }
+
+    /**
+     * Returns all samples, oldest first.
+     */
+    @NotNull
+    public synchronized List<Sample> getSamples() {
+        List<Sample> list = new ArrayList<>(countSamples);
+        int start = (nextIndex - countSamples + samples.length) % samples.length;
+        for (int i = 0; i < countSamples; i++) {
+            list.add(samples[(start + i) % samples.length]);
+        }
+        return list;
+    }
+
+    /**
+     * Returns the newest sample, or null if there is none yet.
+     */
+    @Nullable
+    public synchronized Sample getLatest() {
+        if (countSamples == 0) return null;
+        return samples[(nextIndex - 1 + samples.length) % samples.length];
+    }
+
+    public int getPid() {
+        return pid;
+    }
+
+    public static class Sample {
+        public final long time;
+        /**
+         * 100% equals one fully used core, thus can be higher than 100% on multi-core systems.
+         */
+        public final double cpuPercent;
+        public final long rssBytes;
+        public final int threads;
+        /**
+         * -1 if not supported on this platform.
+         */
+        public final long openFiles;
+        /**
+         * GC pauses since the previous sample.
+         */
+        public final int gcPauses;
+        public final double gcPausesTotalMs;
+        public final double gcPausesMaxMs;
+
+        public Sample(long time, double cpuPercent, long rssBytes, int threads, long openFiles,
+                      int gcPauses, double gcPausesTotalMs, double gcPausesMaxMs) {
+            this.time = time;
+            this.cpuPercent = cpuPercent;
+            this.rssBytes = rssBytes;
+            this.threads = threads;
+            this.openFiles = openFiles;
+            this.gcPauses = gcPauses;
+            this.gcPausesTotalMs = gcPausesTotalMs;
+            this.gcPausesMaxMs = gcPausesMaxMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("CPU: %.1f%% RSS: %dMB Threads: %d Open files: %d GC pauses: %d (total: %.1fms, max: %.1fms)",
+                    cpuPercent, rssBytes / (1024 * 1024), threads, openFiles, gcPauses, gcPausesTotalMs, gcPausesMaxMs);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.monitoring;
+
+import com.osiris.autoplug.client.Server;
+import com.osiris.autoplug.client.utils.GD;
+import com.osiris.autoplug.core.logger.AL;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Profiling (Java Flight Recorder), thread dumps and heap info of the running server,
+ * retrieved through the 'jcmd' tool by the servers PID. <br>
+ * jcmd is searched next to the servers java binary first, since it should match the servers Java version,
+ * then in the Java AutoPlug runs on and then in the PATH. Note that JREs usually don't ship jcmd, only JDKs do.
+ * Results get stored in {@link #PROFILES_DIR}.
+ */
+public class ServerDiagnostics {
+    public static final File PROFILES_DIR = new File(GD.WORKING_DIR + "/autoplug/profiles");
+    public static final int JCMD_TIMEOUT_SECONDS = 60;
+    private static final String RECORDING_NAME = "autoplug";
+    @Nullable
+    private static volatile File recording;
+    /**
+     * PID of the server the recording runs in, since it's gone after a restart.
+     */
+    private static volatile int recordingPid;
+
+    /**
+     * Starts a flight recording, that runs until {@link #stopProfiling()} is called.
+     *
+     * @param settings JFR settings profile, 'default' (~1% overhead) or 'profile' (more details, ~2% overhead).
+     * @return the file the recording will be written to.
+     */
+    @NotNull
+    public static synchronized File startProfiling(@NotNull String settings) throws Exception {
+        if (isProfiling())
+            throw new IllegalStateException("Profiling is already running and will be written to '" + recording + "'.");
+        File file = newFile("profile", ".jfr");
+        jcmd("JFR.start", "name=" + RECORDING_NAME, "settings=" + settings);
+        recording = file;
+        recordingPid = Server.getPid();
+        return file;
+    }
+
+    /**
+     * Stops the flight recording started by {@link #startProfiling(String)} and writes it to its file.
+     */
+    @NotNull
+    public static synchronized File stopProfiling() throws Exception {
+        File file = recording;
+        if (!isProfiling()) throw new IllegalStateException("Profiling isn't running. Start it with '.profile start'.");
+        recording = null; // Also if stopping fails, since the recording is gone with the server anyway
+        jcmd("JFR.stop", "name=" + RECORDING_NAME, "filename=" + file.getAbsolutePath());
+        return file;
+    }
+
+    /**
+     * Records the provided amount of seconds in the background, independent of {@link #startProfiling(String)}.
+     * The server writes the file once the time is up.
+     */
+    @NotNull
+    public static File profileFor(int seconds, @NotNull String settings) throws Exception {
+        File file = newFile("profile", ".jfr");
+        jcmd("JFR.start", "name=" + RECORDING_NAME + "-" + file.getName(), "settings=" + settings,
+                "duration=" + seconds + "s", "filename=" + file.getAbsolutePath());
+        return file;
+    }
+
+    /**
+     * Creates the action for {@link TickMonitor#actionsOnLag}, which runs in its own thread.
+     *
+     * @param action          'thread-dump' or 'profile'.
+     * @param profileSeconds  how long to record, if the action is 'profile'.
+     * @param cooldownMinutes min. time between two executions, so that a server that lags for hours doesn't fill the disk.
+     */
+    @NotNull
+    public static Consumer<Double> createLagAction(@NotNull String action, @NotNull String settings, int profileSeconds, int cooldownMinutes) {
+        long[] lastExecution = {0};
+        return mspt -> {
+            long now = System.currentTimeMillis();
+            if (now - lastExecution[0] < TimeUnit.MINUTES.toMillis(cooldownMinutes)) return;
+            lastExecution[0] = now;
+            new Thread(() -> {
+                try {
+                    if (action.equals("profile")) {
+                        File file = profileFor(profileSeconds, settings);
+                        AL.info("Server is lagging (" + mspt + " mspt), profiling it for " + profileSeconds + " seconds to: " + file);
+                    } else {
+                        File file = threadDump();
+                        AL.info("Server is lagging (" + mspt + " mspt), created thread dump at: " + file);
+                    }
+                } catch (Exception e) {
+                    AL.warn("Failed to execute '" + action + "' for the lagging server.", e);
+                }
+            }, "Lag-Diagnostics").start();
+        };
+    }
+
+    public static boolean isProfiling() {
+        return recording != null && recordingPid == Server.getPid();
+    }
+
+    /**
+     * Writes the stack traces of all the servers threads to a file.
+     */
+    @NotNull
+    public static File threadDump() throws Exception {
+        File file = newFile("threaddump", ".txt");
+        Files.write(file.toPath(), jcmd("Thread.print", "-l").getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * Returns the servers heap usage per generation/region. Requires Java 9+ on the server.
+     */
+    @NotNull
+    public static String heapInfo() throws Exception {
+        return jcmd("GC.heap_info");
+    }
+
+    /**
+     * Runs jcmd against the servers process and returns its output. <br>
+     * The output is read in a separate thread, so that a jcmd that hangs (for example
+     * because the server is frozen) gets killed after {@link #JCMD_TIMEOUT_SECONDS},
+     * or as soon as the calling thread gets interrupted.
+     */
+    @NotNull
+    public static String jcmd(@NotNull String... args) throws Exception {
+        int pid = Server.getPid();
+        if (!Server.isRunning() || pid <= 0)
+            throw new IllegalStateException("Server is not running, or its PID couldn't be determined.");
+        List<String> commands = new ArrayList<>();
+        commands.add(findJcmd());
+        commands.add(String.valueOf(pid));
+        commands.addAll(Arrays.asList(args));
+        AL.debug(ServerDiagnostics.class, "Executing: " + commands);
+        Process process = new ProcessBuilder(commands).redirectErrorStream(true).start();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Thread reader = new Thread(() -> {
+            try {
+                copy(process.getInputStream(), bytes);
+            } catch (IOException ignored) { // Process got killed
+            }
+        }, "jcmd-Output-Reader");
+        reader.setDaemon(true);
+        reader.start();
+        boolean isFinished = false;
+        try {
+            isFinished = process.waitFor(JCMD_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } finally {
+            if (!isFinished) process.destroyForcibly();
+        }
+        if (!isFinished)
+            throw new IOException("jcmd didn't finish within " + JCMD_TIMEOUT_SECONDS + " seconds.");
+        reader.join(5000); // Usually already done, since the output ends with the process
+        String output = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        if (process.exitValue() != 0)
+            throw new IOException("jcmd failed with exit code " + process.exitValue() + ": " + output.trim());
+        return output;
+    }
+
+    @NotNull
+    private static String findJcmd() {
+        String jcmd = System.getProperty("os.name").toLowerCase().contains("win") ? "jcmd.exe" : "jcmd";
+        String javaCommand = Server.getJavaCommand();
+        File javaBin = javaCommand == null ? null : new File(javaCommand).getParentFile();
+        if (javaBin != null && new File(javaBin, jcmd).exists())
+            return new File(javaBin, jcmd).getAbsolutePath();
+        File own = new File(System.getProperty("java.home") + "/bin/" + jcmd);
+        if (own.exists()) return own.getAbsolutePath();
+        own = new File(System.getProperty("java.home") + "/../bin/" + jcmd); // Java 8 JDKs java.home points to the jre folder
+        if (own.exists()) return own.getAbsolutePath();
+        return jcmd; // Hope it's in the PATH
+    }
+
+    @NotNull
+    private static File newFile(@NotNull String prefix, @NotNull String extension) {
+        if (!PROFILES_DIR.exists()) PROFILES_DIR.mkdirs();
+        return new File(PROFILES_DIR, prefix + "-" + new SimpleDateFormat("yyyy-MM-dd-HH.mm.ss").format(new Date()) + extension);
+    }
+
+    private static void copy(@NotNull InputStream in, @NotNull ByteArrayOutputStream out) throws IOException {
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.monitoring;
+
+import com.osiris.autoplug.client.Server;
+import com.osiris.autoplug.client.utils.MineStat;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Shares the result of the last server list ping (motd, version, player counts),
+ * so that everything that needs it doesn't open its own connection to the server. <br>
+ * Only one ping runs at a time, others that need a fresh result wait for it.
+ */
+public class ServerStatusCache {
+    public static final ServerStatusCache SERVER = new ServerStatusCache("localhost");
+    private final String host;
+    @Nullable
+    private volatile MineStat latest;
+    private volatile long latestTime;
+
+    public ServerStatusCache(@NotNull String host) {
+        this.host = host;
+    }
+
+    /**
+     * Returns the cached result if it's younger than the provided age, otherwise pings the server.
+     *
+     * @param maxAgeMs       max. age of the cached result.
+     * @param timeoutSeconds timeout of the ping, if one is needed.
+     */
+    @NotNull
+    public MineStat get(long maxAgeMs, int timeoutSeconds) {
+        MineStat result = latest;
+        if (result != null && System.currentTimeMillis() - latestTime <= maxAgeMs) return result;
+        synchronized (this) {
+            result = latest; // Another thread might have pinged while this one was waiting
+            if (result != null && System.currentTimeMillis() - latestTime <= maxAgeMs) return result;
+            result = new MineStat(host, Server.PORT, timeoutSeconds);
+            latest = result;
+            latestTime = System.currentTimeMillis();
+            return result;
+        }
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * Returns the cached result without pinging, null if there is none yet.
+     */
+    @Nullable
+    public MineStat getLatest() {
+        return latest;
+    }
+
+    /**
+     * Time of the cached result in milliseconds.
+     */
+    public long getLatestTime() {
+        return latestTime;
+    }
+}
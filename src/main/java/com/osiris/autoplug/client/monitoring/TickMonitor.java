@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.monitoring;
+
+import com.osiris.autoplug.client.Server;
+import com.osiris.autoplug.client.tasks.backup.BandwidthLimiter;
+import com.osiris.autoplug.core.logger.AL;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tracks the health of the servers tick loop (TPS and MSPT). <br>
+ * Samples are either pushed by the AutoPlug-Plugin (see {@link #PLUGIN_SAMPLE_PREFIX}),
+ * or, if the plugin doesn't push any, retrieved by periodically submitting
+ * the 'tps' and 'mspt' commands and parsing their replies from the servers output. <br>
+ * Servers that don't have these commands (Vanilla, Fabric, Forge) reply with an error, after which
+ * the command isn't submitted again, until the monitor gets started with other commands.
+ */
+public class TickMonitor {
+    public static final TickMonitor SERVER = new TickMonitor();
+    /**
+     * Format of the line the AutoPlug-Plugin sends: 'autoplug:tick-sample [tps] [mspt]'
+     */
+    public static final String PLUGIN_SAMPLE_PREFIX = "autoplug:tick-sample ";
+    /**
+     * Paper/Spigot: 'TPS from last 1m, 5m, 15m: 19.98, *20.0, 20.0'
+     */
+    private static final Pattern TPS_REPLY = Pattern.compile("TPS from last 1m, 5m, 15m: \\*?(\\d+[.,]\\d+)");
+    /**
+     * Paper: 'Server tick times (avg/min/max) from last 5s, 10s, 1m:', followed by a line like '◴ 1.2/0.9/3.4, ...'
+     */
+    private static final Pattern MSPT_VALUES = Pattern.compile("(\\d+[.,]\\d+)/(\\d+[.,]\\d+)/(\\d+[.,]\\d+)");
+    /**
+     * Minecraft color codes and ANSI escape sequences.
+     */
+    private static final Pattern FORMATTING = Pattern.compile("§.|\u001B\\[[;\\d]*[A-Za-z]");
+    /**
+     * Bukkit: 'Unknown command. Type "/help" for help.'
+     */
+    private static final String UNKNOWN_COMMAND_BUKKIT = "Unknown command";
+    /**
+     * Vanilla/Fabric/Forge: 'Unknown or incomplete command, see below for error', followed by a line like 'tps<--[HERE]'
+     */
+    private static final String UNKNOWN_COMMAND_BRIGADIER = "Unknown or incomplete command";
+    private static final String UNKNOWN_COMMAND_BRIGADIER_CONTEXT = "<--[HERE]";
+    /**
+     * Amount of MSPT samples in a row, that must be above the lag threshold, to trigger {@link #actionsOnLag}.
+     */
+    private static final int LAG_SAMPLES_IN_A_ROW = 3;
+    /**
+     * Executed with the latest MSPT, once the server lagged for {@link #LAG_SAMPLES_IN_A_ROW} samples in a row.
+     * Executed again only after the server recovered in between.
+     */
+    public final List<Consumer<Double>> actionsOnLag = new CopyOnWriteArrayList<>();
+    private volatile TimeSeries tps;
+    private volatile TimeSeries mspt;
+    private int intervalSeconds = 30;
+    private String tpsCommand = "tps";
+    private String msptCommand = "mspt";
+    private double lagMspt = 50;
+    private volatile long lastPushedSample;
+    private volatile long pollStart;
+    private volatile long awaitingRepliesUntil;
+    private volatile long lastForeignCommand;
+    private volatile boolean isExpectingMsptValues;
+    private volatile boolean isExpectingErrorContext;
+    private volatile boolean isServerReady;
+    private volatile boolean isTpsCommandSupported = true;
+    private volatile boolean isMsptCommandSupported = true;
+    private int countLaggingInARow;
+    private Thread thread;
+
+    public TickMonitor() {
+        setHistorySize(240);
+    }
+
+    /**
+     * Clears the current samples, if the size changes.
+     */
+    public synchronized void setHistorySize(int size) {
+        if (tps != null && tps.getCapacity() == size) return;
+        this.tps = new TimeSeries(size);
+        this.mspt = new TimeSeries(size);
+    }
+
+    /**
+     * @param intervalSeconds time between polls, when the plugin doesn't push samples.
+     * @param tpsCommand      command that returns the TPS, empty to disable.
+     * @param msptCommand     command that returns the MSPT, empty to disable.
+     * @param lagMspt         MSPT at which the server is considered lagging. Background tasks (like backups) slow down then.
+     */
+    public synchronized void start(int intervalSeconds, @NotNull String tpsCommand, @NotNull String msptCommand, double lagMspt) {
+        this.intervalSeconds = Math.max(1, intervalSeconds);
+        this.tpsCommand = tpsCommand.trim();
+        this.msptCommand = msptCommand.trim();
+        this.lagMspt = lagMspt;
+        // Commands might have changed, thus probe them again
+        this.isTpsCommandSupported = true;
+        this.isMsptCommandSupported = true;
+        if (thread == null) {
+            thread = new Thread(this::run, "Tick-Monitor");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Must be called when a new server process starts. <br>
+     * Unsupported commands stay disabled, since a restarted server won't have them either.
+     */
+    public void onServerStart() {
+        isServerReady = false;
+        awaitingRepliesUntil = 0;
+        isExpectingMsptValues = false;
+        isExpectingErrorContext = false;
+    }
+
+    /**
+     * Must be called for each command submitted to the server. <br>
+     * Errors are only considered replies to this monitors commands, if nobody else submitted a command in the meantime.
+     */
+    public void onCommandSubmitted() {
+        if (Thread.currentThread() != thread) lastForeignCommand = System.currentTimeMillis();
+    }
+
+    /**
+     * Replies are expected for 5 seconds from now on.
+     */
+    void onPoll(long now) {
+        pollStart = now;
+        awaitingRepliesUntil = now + 5000;
+    }
+
+    private void run() {
+        while (true) {
+            try {
+                Thread.sleep(intervalSeconds * 1000L);
+                long now = System.currentTimeMillis();
+                if (!isServerReady || !Server.isRunning()
+                        || now - lastPushedSample < intervalSeconds * 2000L) // Plugin pushes samples
+                    continue;
+                onPoll(now);
+                if (isTpsCommandSupported && !tpsCommand.isEmpty()) Server.submitCommand(tpsCommand);
+                if (isMsptCommandSupported && !msptCommand.isEmpty()) Server.submitCommand(msptCommand);
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                AL.warn(e);
+            }
+        }
+    }
+
+    /**
+     * Gets called for each line of the servers output, thus must be fast.
+     *
+     * @return true if the line is a reply to a command submitted by this monitor.
+     */
+    public boolean onServerOutput(@NotNull String line) {
+        if (!isServerReady) {
+            if (line.contains("Done (") && line.contains("help")) isServerReady = true;
+            return false;
+        }
+        if (System.currentTimeMillis() > awaitingRepliesUntil) return false;
+        if (isExpectingErrorContext) {
+            isExpectingErrorContext = false;
+            if (FORMATTING.matcher(line).replaceAll("").trim().endsWith(UNKNOWN_COMMAND_BRIGADIER_CONTEXT))
+                return true;
+        }
+        if (isExpectingMsptValues) {
+            isExpectingMsptValues = false;
+            Matcher matcher = MSPT_VALUES.matcher(FORMATTING.matcher(line).replaceAll("")); // Paper colors each value
+            if (matcher.find()) {
+                addMspt(parse(matcher.group(1)));
+                return true;
+            }
+        }
+        if (line.contains("TPS from last")) {
+            Matcher matcher = TPS_REPLY.matcher(FORMATTING.matcher(line).replaceAll(""));
+            if (matcher.find()) {
+                tps.add(System.currentTimeMillis(), parse(matcher.group(1)));
+                return true;
+            }
+        }
+        if (line.contains("Server tick times")) {
+            isExpectingMsptValues = true;
+            return true;
+        }
+        boolean isBrigadierError = line.contains(UNKNOWN_COMMAND_BRIGADIER);
+        if (isBrigadierError || line.contains(UNKNOWN_COMMAND_BUKKIT)) {
+            // Could be the reply to a command submitted by someone else, thus not ours to hide or to draw conclusions from
+            if (lastForeignCommand >= pollStart - 1000) return false;
+            if (isBrigadierError) isExpectingErrorContext = true;
+            // The server doesn't have this command, thus no need to try again
+            // The tps command gets submitted first, thus if there is no tps sample yet, it's the reply to that one
+            if (isTpsCommandSupported && !tpsCommand.isEmpty() && tps.getLatestTime() < pollStart) {
+                isTpsCommandSupported = false;
+                AL.debug(this.getClass(), "Server doesn't support the '" + tpsCommand + "' command.");
+            } else if (isMsptCommandSupported && !msptCommand.isEmpty()) {
+                isMsptCommandSupported = false;
+                AL.debug(this.getClass(), "Server doesn't support the '" + msptCommand + "' command.");
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Handles a line received from the AutoPlug-Plugin, if it is a sample.
+     *
+     * @return true if the line was a sample.
+     */
+    public boolean onPluginLine(@NotNull String line) {
+        if (!line.startsWith(PLUGIN_SAMPLE_PREFIX)) return false;
+        try {
+            String[] values = line.substring(PLUGIN_SAMPLE_PREFIX.length()).trim().split(" ");
+            long now = System.currentTimeMillis();
+            tps.add(now, parse(values[0]));
+            if (values.length > 1) addMspt(parse(values[1]));
+            lastPushedSample = now;
+        } catch (Exception e) {
+            AL.warn("Received invalid tick sample from AutoPlug-Plugin: " + line, e);
+        }
+        return true;
+    }
+
+    private synchronized void addMspt(double value) {
+        mspt.add(System.currentTimeMillis(), value);
+        if (value <= lagMspt) {
+            countLaggingInARow = 0;
+            return;
+        }
+        BandwidthLimiter.BACKUPS.onServerLag();
+        if (++countLaggingInARow == LAG_SAMPLES_IN_A_ROW)
+            for (Consumer<Double> action :
+                    actionsOnLag) {
+                try {
+                    action.accept(value);
+                } catch (Exception e) {
+                    AL.warn(e);
+                }
+            }
+    }
+
+    boolean isTpsCommandSupported() {
+        return isTpsCommandSupported;
+    }
+
+    boolean isMsptCommandSupported() {
+        return isMsptCommandSupported;
+    }
+
+    private static double parse(@NotNull String number) {
+        return Double.parseDouble(number.replace(',', '.'));
+    }
+
+    @NotNull
+    public TimeSeries getTps() {
+        return tps;
+    }
+
+    @NotNull
+    public TimeSeries getMspt() {
+        return mspt;
+    }
+
+    /**
+     * False if the last MSPT sample is above the lag threshold.
+     * Also true if there are no samples.
+     */
+    public boolean isHealthy() {
+        double latest = mspt.getLatest();
+        return Double.isNaN(latest) || latest <= lagMspt;
+    }
+
+    /**
+     * Summary of the samples from the provided time span, for example:
+     * 'TPS min/p50: 18.2/19.9 MSPT p50/p95/p99: 12.1/35.0/48.3 (10 samples)'
+     */
+    @NotNull
+    public String getSummary(long sinceMs) {
+        long since = System.currentTimeMillis() - sinceMs;
+        return String.format("TPS min/p50: %.1f/%.1f MSPT p50/p95/p99: %.1f/%.1f/%.1f (%d samples)",
+                tps.getPercentile(0, since), tps.getPercentile(50, since),
+                mspt.getPercentile(50, since), mspt.getPercentile(95, since), mspt.getPercentile(99, since),
+                Math.max(tps.getValuesSince(since).length, mspt.getValuesSince(since).length));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.monitoring;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size ring of timestamped values, with percentile summaries. <br>
+ * When full, the oldest values get overwritten.
+ */
+public class TimeSeries {
+    private final long[] times;
+    private final double[] values;
+    private int count;
+    private int nextIndex;
+
+    public TimeSeries(int capacity) {
+        this.times = new long[Math.max(1, capacity)];
+        this.values = new double[times.length];
+    }
+
+    public synchronized void add(long time, double value) {
+        times[nextIndex] = time;
+        values[nextIndex] = value;
+        nextIndex = (nextIndex + 1) % times.length;
+        if (count < times.length) count++;
+    }
+
+    /**
+     * Returns the values added at or after the provided time, oldest first.
+     */
+    public synchronized double[] getValuesSince(long time) {
+        double[] result = new double[count];
+        int size = 0;
+        int start = (nextIndex - count + times.length) % times.length;
+        for (int i = 0; i < count; i++) {
+            int index = (start + i) % times.length;
+            if (times[index] >= time) result[size++] = values[index];
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Nearest-rank percentile of the values added at or after the provided time.
+     *
+     * @param percentile between 0 and 100.
+     * @return {@link Double#NaN} if there are no values.
+     */
+    public double getPercentile(double percentile, long since) {
+        double[] sorted = getValuesSince(since);
+        if (sorted.length == 0) return Double.NaN;
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.min(sorted.length - 1, Math.max(0, rank - 1))];
+    }
+
+    /**
+     * @return {@link Double#NaN} if there are no values.
+     */
+    public synchronized double getLatest() {
+        if (count == 0) return Double.NaN;
+        return values[(nextIndex - 1 + times.length) % times.length];
+    }
+
+    /**
+     * @return 0 if there are no values.
+     */
+    public synchronized long getLatestTime() {
+        if (count == 0) return 0;
+        return times[(nextIndex - 1 + times.length) % times.length];
+    }
+
+    public synchronized int getSize() {
+        return count;
+    }
+
+    public int getCapacity() {
+        return times.length;
+    }
+}
@@ -12,6 +12,7 @@ package com.osiris.autoplug.client.network.local;
 import com.osiris.autoplug.client.Server;
 import com.osiris.autoplug.client.configs.GeneralConfig;
 import com.osiris.autoplug.client.console.AutoPlugConsole;
+import com.osiris.autoplug.client.monitoring.TickMonitor;
 import com.osiris.autoplug.core.logger.AL;
 import com.osiris.dyml.exceptions.*;
 
@@ -82,7 +83,7 @@ public class ConPluginCommandReceive {
 
                                         if (sKey == null || !sKey.equals(config.server_key.asString())) {
                                             AL.warn("Received Plugin-Command without Server-Key or the Server-Keys didn't match. Command '" + command + "' was not executed!");
-                                        } else {
+                                        } else if (!TickMonitor.SERVER.onPluginLine(command)) {
                                             AL.info("Received Plugin-Command: " + command);
                                             if (!AutoPlugConsole.executeCommand(command))
                                                 Server.submitCommand(command);
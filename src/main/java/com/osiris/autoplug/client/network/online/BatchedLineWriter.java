@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.network.online;
+
+import com.osiris.autoplug.client.monitoring.Metrics;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Collects lines and writes them in batches, with a single flush per batch,
+ * instead of one write and flush (one TLS record and syscall) per line. <br>
+ * A batch gets written once the flush interval passed since its first line,
+ * or once it reaches the max batch size. <br>
+ * {@link #writeLine(String)} only appends to the current batch, so
+ * producers never wait for the network. If the connection stalls, the pending lines are limited to
+ * {@link #MAX_PENDING_BATCHES} batches, the oldest lines get dropped and counted.
+ */
+public class BatchedLineWriter implements AutoCloseable {
+    public static final int MAX_PENDING_BATCHES = 16;
+    private static final String SEPARATOR = System.lineSeparator();
+    private static final long CLOSE_TIMEOUT_MS = 3000;
+    private final Writer writer;
+    private final int flushIntervalMs;
+    private final int maxBatchChars;
+    private final int maxPendingChars;
+    private final Thread thread;
+    private final AtomicLong countDropped = new AtomicLong();
+    private final LongAdder metricDropped;
+    private StringBuilder batch = new StringBuilder();
+    private StringBuilder spare = new StringBuilder();
+    private volatile boolean isClosed;
+    private long countLines;
+    private long countFlushes;
+
+    /**
+     * @param maxBatchBytes max size of a batch, in characters (which is roughly the same as bytes for log lines).
+     * @param isDeflate if true, the stream gets compressed with deflate (sync-flushed after each batch).
+     *                  Make sure the receiving side expects that.
+     */
+    public BatchedLineWriter(@NotNull String name, @NotNull OutputStream out, int flushIntervalMs, int maxBatchBytes, boolean isDeflate) {
+        this.flushIntervalMs = Math.max(0, flushIntervalMs);
+        this.maxBatchChars = Math.max(1, maxBatchBytes);
+        this.maxPendingChars = maxBatchChars * MAX_PENDING_BATCHES;
+        this.metricDropped = Metrics.CONSOLE_DROPPED_LINES.labels(name);
+        if (isDeflate)
+            out = new DeflaterOutputStream(out, new Deflater(Deflater.BEST_SPEED), 8192, true);
+        this.writer = new BufferedWriter(new OutputStreamWriter(out), 65536);
+        this.thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Appends a line separator, if the line doesn't contain one yet.
+     */
+    public void writeLine(@NotNull String line) {
+        if (isClosed) return;
+        synchronized (this) {
+            boolean isFirstLine = batch.length() == 0;
+            if (batch.length() + line.length() > maxPendingChars)
+                dropOldest(line.length());
+            batch.append(line);
+            if (!line.contains(SEPARATOR))
+                batch.append(SEPARATOR);
+            countLines++;
+            if (isFirstLine || batch.length() >= maxBatchChars)
+                notifyAll();
+        }
+    }
+
+    /**
+     * Removes the oldest lines, so that the new line fits and some space is left,
+     * to not have to do this again for each of the following lines.
+     */
+    private void dropOldest(int newChars) {
+        int toRemove = batch.length() + newChars - (maxPendingChars / 4) * 3;
+        int end = toRemove <= 0 ? 0 : batch.indexOf(SEPARATOR, Math.max(0, toRemove - SEPARATOR.length()));
+        end = end == -1 ? batch.length() : end + SEPARATOR.length();
+        int dropped = 0;
+        for (int i = batch.indexOf(SEPARATOR); i != -1 && i < end; i = batch.indexOf(SEPARATOR, i + SEPARATOR.length())) {
+            dropped++;
+        }
+        batch.delete(0, end);
+        countDropped.addAndGet(dropped);
+        metricDropped.add(dropped);
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                StringBuilder toWrite;
+                synchronized (this) {
+                    while (batch.length() == 0 && !isClosed) wait();
+                    if (batch.length() == 0) break; // Closed and all lines written
+                    // Wait for more lines, until the interval passed or the batch is big enough
+                    long end = System.currentTimeMillis() + flushIntervalMs;
+                    long remaining;
+                    while (batch.length() < maxBatchChars && !isClosed && (remaining = end - System.currentTimeMillis()) > 0)
+                        wait(remaining);
+                    toWrite = batch;
+                    batch = spare;
+                    spare = toWrite;
+                }
+                writer.write(toWrite.toString());
+                writer.flush();
+                countFlushes++;
+                toWrite.setLength(0);
+            }
+        } catch (InterruptedException ignored) {
+        } catch (Exception e) { // Do not use AL.warn because that would cause an infinite loop
+            isClosed = true;
+        }
+    }
+
+    public boolean isClosed() {
+        return isClosed;
+    }
+
+    public long getCountLines() {
+        return countLines;
+    }
+
+    public long getCountFlushes() {
+        return countFlushes;
+    }
+
+    /**
+     * Amount of lines that were dropped, because the connection couldn't keep up.
+     */
+    public long getCountDropped() {
+        return countDropped.get();
+    }
+
+    /**
+     * Writes the pending lines and stops the writer thread.
+     * Waits at most a few seconds for that, in case the connection stalled.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            isClosed = true;
+            notifyAll();
+        }
+        try {
+            thread.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread.interrupt();
+    }
+}
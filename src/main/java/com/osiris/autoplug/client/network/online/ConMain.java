@@ -8,6 +8,7 @@
 
 package com.osiris.autoplug.client.network.online;
 
+import com.osiris.autoplug.client.monitoring.Metrics;
 import com.osiris.autoplug.client.network.online.connections.ConFileManager;
 import com.osiris.autoplug.client.network.online.connections.ConOnlineConsoleReceive;
 import com.osiris.autoplug.client.network.online.connections.ConOnlineConsoleSend;
@@ -16,6 +17,7 @@ import com.osiris.autoplug.core.logger.AL;
 
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
 
 /**
  * This is the main connection to AutoPlugs online server/website.
@@ -33,7 +35,8 @@ public class ConMain extends Thread {
     public static final ConFileManager CON_FILE_MANAGER = new ConFileManager();
     //public static PluginsUpdateResultConnection CON_PLUGINS_UPDATER;
 
-    public static boolean isDone = false; // So that the log isn't a mess because of the processes which start right after this.
+    public static volatile boolean isDone = false; // So that the log isn't a mess because of the processes which start right after this.
+    private static final CountDownLatch doneLatch = new CountDownLatch(1);
     public static boolean isUserAuthenticated = false;
 
     @Override
@@ -41,15 +44,16 @@ public class ConMain extends Thread {
         try {
             super.run();
             AL.info("Authenticating server...");
-            SecuredConnection auth = new SecuredConnection((byte) 0);
+            // Opened like the secondary connections, so that it can be multiplexed too
+            SecondaryConnection auth = new SecondaryConnection((byte) 0);
+            auth.open();
             AL.info("Authentication success!");
-            //Socket socket = auth.getSocket();
-            DataInputStream dis = new DataInputStream(auth.getInput());
+            DataInputStream dis = auth.getDataIn();
             //DataOutputStream dos = new DataOutputStream(auth.getOut());
             //CON_PLUGINS_UPDATER = new PluginsUpdateResultConnection();
             CON_SERVER_STATUS.open();
 
-            isDone = true;
+            setDone();
             boolean oldAuth = false; // Local variable that holds the auth boolean before the current one
             while (true) {
                 // It can happen that we don't get a response because the web server is offline
@@ -92,8 +96,7 @@ public class ConMain extends Thread {
 
                     // Make sure socket is really closed
                     try {
-                        if (auth.getSocket() != null && !auth.getSocket().isClosed())
-                            auth.getSocket().close();
+                        auth.close();
                     } catch (IOException ioException) {
                         AL.warn(ioException);
                     }
@@ -127,11 +130,15 @@ public class ConMain extends Thread {
                         AL.warn(e1);
                     }
 
+                    MuxConnection.closeShared(); // Reconnect from scratch
+
                     Thread.sleep(30000);
+                    Metrics.RECONNECTS.labels("main").increment();
                     try {
                         AL.info("Authenticating server...");
-                        auth = new SecuredConnection((byte) 0);
-                        dis = new DataInputStream(auth.getInput());
+                        auth = new SecondaryConnection((byte) 0);
+                        auth.open();
+                        dis = auth.getDataIn();
                         AL.info("Authentication success!");
                         CON_SERVER_STATUS.open();
                     } catch (Exception exception) {
@@ -141,7 +148,19 @@ public class ConMain extends Thread {
             }
         } catch (Exception e) {
             AL.warn(this.getClass(), e, "Connection aborted due to issues!");
-            isDone = true;
+            setDone();
         }
     }
+
+    private static void setDone() {
+        isDone = true;
+        doneLatch.countDown();
+    }
+
+    /**
+     * Blocks until the main connection was established, or failed.
+     */
+    public static void awaitDone() throws InterruptedException {
+        doneLatch.await();
+    }
 }
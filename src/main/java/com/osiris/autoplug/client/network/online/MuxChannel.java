@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.network.online;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A single connection inside a {@link MuxConnection}, with its own streams. <br>
+ * Flow control: the sender may only send as many bytes as the receiver has buffer space for (the window).
+ * Once the receiver consumed half of its window, it tells the sender, which may then send that amount more.
+ * Thus a slow reader blocks the writes of its own channel, but never the shared connection.
+ */
+public class MuxChannel implements Closeable {
+    public static final int PRIORITY_HIGH = 0;
+    public static final int PRIORITY_NORMAL = 5;
+    public static final int PRIORITY_LOW = 10;
+
+    private final MuxConnection mux;
+    private final int id;
+    private final byte conType;
+    private final int priority;
+    private final InputStream in = new ChannelInputStream();
+    private final OutputStream out = new ChannelOutputStream();
+    // Receiving
+    private final byte[] buffer;
+    private int head;
+    private int size;
+    private int consumed; // Bytes read, but not yet reported to the sender
+    private int readTimeoutMs;
+    // Sending
+    private final Object sendLock = new Object();
+    private int sendWindow;
+    private volatile boolean isRemoteClosed;
+    private volatile boolean isClosed;
+
+    MuxChannel(@NotNull MuxConnection mux, int id, byte conType, int priority, int window) {
+        this.mux = mux;
+        this.id = id;
+        this.conType = conType;
+        this.priority = priority;
+        this.buffer = new byte[window];
+        this.sendWindow = window;
+    }
+
+    synchronized void onData(@NotNull byte[] data) throws IOException {
+        if (isClosed) return;
+        if (data.length > buffer.length - size)
+            throw new IOException("Channel " + id + " received more data than its window allows.");
+        int tail = (head + size) % buffer.length;
+        int first = Math.min(data.length, buffer.length - tail);
+        System.arraycopy(data, 0, buffer, tail, first);
+        System.arraycopy(data, first, buffer, 0, data.length - first);
+        size += data.length;
+        notifyAll();
+    }
+
+    void onWindowUpdate(int bytes) {
+        synchronized (sendLock) {
+            sendWindow += bytes;
+            sendLock.notifyAll();
+        }
+    }
+
+    void onRemoteClose() {
+        isRemoteClosed = true;
+        synchronized (this) {
+            notifyAll();
+        }
+        synchronized (sendLock) {
+            sendLock.notifyAll();
+        }
+    }
+
+    private synchronized int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        long deadline = readTimeoutMs > 0 ? System.currentTimeMillis() + readTimeoutMs : Long.MAX_VALUE;
+        while (size == 0) {
+            if (isClosed) throw new IOException("Channel " + id + " is closed.");
+            if (isRemoteClosed) return -1;
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) throw new SocketTimeoutException("Read timed out after " + readTimeoutMs + "ms.");
+            try {
+                wait(Math.min(left, 60000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+        int count = Math.min(len, size);
+        int first = Math.min(count, buffer.length - head);
+        System.arraycopy(buffer, head, b, off, first);
+        System.arraycopy(buffer, 0, b, off + first, count - first);
+        head = (head + count) % buffer.length;
+        size -= count;
+        consumed += count;
+        if (consumed >= buffer.length / 2 && !isRemoteClosed) {
+            mux.send(id, MuxConnection.FRAME_WINDOW, ByteBuffer.allocate(4).putInt(consumed).array(), MuxConnection.PRIORITY_CONTROL);
+            consumed = 0;
+        }
+        return count;
+    }
+
+    private void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int count;
+            synchronized (sendLock) {
+                while (sendWindow == 0) {
+                    if (isClosed || isRemoteClosed) throw new IOException("Channel " + id + " is closed.");
+                    try {
+                        sendLock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException();
+                    }
+                }
+                if (isClosed || isRemoteClosed) throw new IOException("Channel " + id + " is closed.");
+                count = Math.min(len, Math.min(sendWindow, MuxConnection.MAX_FRAME_DATA));
+                sendWindow -= count;
+            }
+            mux.send(id, MuxConnection.FRAME_DATA, Arrays.copyOfRange(b, off, off + count), priority);
+            off += count;
+            len -= count;
+        }
+    }
+
+    /**
+     * Like {@link java.net.Socket#setSoTimeout(int)}.
+     *
+     * @param ms 0 to wait forever.
+     */
+    public synchronized void setReadTimeout(int ms) {
+        this.readTimeoutMs = ms;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public byte getConType() {
+        return conType;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public InputStream getIn() {
+        return in;
+    }
+
+    public OutputStream getOut() {
+        return out;
+    }
+
+    public boolean isOpen() {
+        return !isClosed && !isRemoteClosed && !mux.isClosed();
+    }
+
+    @Override
+    public void close() {
+        if (isClosed) return;
+        isClosed = true;
+        mux.onChannelClosed(this, !isRemoteClosed);
+        synchronized (this) {
+            notifyAll();
+        }
+        synchronized (sendLock) {
+            sendLock.notifyAll();
+        }
+    }
+
+    private class ChannelInputStream extends InputStream {
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return MuxChannel.this.read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(@NotNull byte[] b, int off, int len) throws IOException {
+            return MuxChannel.this.read(b, off, len);
+        }
+
+        @Override
+        public int available() {
+            synchronized (MuxChannel.this) {
+                return size;
+            }
+        }
+
+        @Override
+        public void close() {
+            MuxChannel.this.close();
+        }
+    }
+
+    private class ChannelOutputStream extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            MuxChannel.this.write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(@NotNull byte[] b, int off, int len) throws IOException {
+            MuxChannel.this.write(b, off, len);
+        }
+
+        @Override
+        public void close() {
+            MuxChannel.this.close();
+        }
+    }
+}
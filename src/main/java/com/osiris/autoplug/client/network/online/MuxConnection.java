@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.network.online;
+
+import com.osiris.autoplug.client.configs.WebConfig;
+import com.osiris.autoplug.core.logger.AL;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Multiplexes the connections to AutoPlug-Web over a single authenticated connection,
+ * instead of opening one socket (with its own handshake and authentication) per connection. <br>
+ * Each connection is a {@link MuxChannel}, opened with its usual connection type. Data is sent in frames:
+ * <pre>
+ * int channelId | byte frameType | int length | byte[length] payload
+ * </pre>
+ * Frames get sent by a single writer thread, highest priority first, and data frames
+ * are at most {@link #MAX_FRAME_DATA} bytes big, so that a file transfer can't delay the console by more than one frame.
+ * Each channel has its own flow control window, thus a slow reader only stalls its own channel. <br>
+ * The protocol is symmetric, so that the same class can act as the AutoPlug-Web side in tests.
+ */
+public class MuxConnection implements Closeable {
+    /**
+     * Connection type of the multiplexed connection. If AutoPlug-Web doesn't know it,
+     * separate connections are used, like before.
+     */
+    public static final byte CON_TYPE_MUX = 30;
+    public static final int MAX_FRAME_DATA = 16 * 1024;
+    public static final int DEFAULT_WINDOW = 256 * 1024;
+    /**
+     * Payload: byte conType, int priority.
+     */
+    static final byte FRAME_OPEN = 0;
+    /**
+     * Payload: byte responseCode (same codes as the authentication, see {@link SecuredConnection}), followed by details.
+     */
+    static final byte FRAME_OPEN_RESULT = 1;
+    static final byte FRAME_DATA = 2;
+    /**
+     * Payload: int amount of bytes the receiver consumed, which the sender may send additionally.
+     */
+    static final byte FRAME_WINDOW = 3;
+    static final byte FRAME_CLOSE = 4;
+    /**
+     * Priority of control frames, which always go first.
+     */
+    static final int PRIORITY_CONTROL = -1;
+    @Nullable
+    private static MuxConnection shared;
+    private static boolean isUnsupported;
+
+    private final String name;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    @Nullable
+    private final Socket socket;
+    @Nullable
+    private final Function<MuxChannel, Byte> acceptor;
+    private final int window;
+    private final Map<Integer, MuxChannel> channels = new ConcurrentHashMap<>();
+    private final Map<Integer, CompletableFuture<byte[]>> pendingOpens = new ConcurrentHashMap<>();
+    private final PriorityBlockingQueue<Frame> queue = new PriorityBlockingQueue<>();
+    private final AtomicLong frameSeq = new AtomicLong();
+    private final AtomicInteger nextChannelId;
+    private final Thread reader;
+    private final Thread writer;
+    private volatile boolean isClosed;
+
+    /**
+     * @param socket   closed together with this connection, can be null.
+     * @param acceptor only for the accepting side (AutoPlug-Web, or tests): gets called for each channel the other side opens
+     *                 and returns the response code (0 to accept). Null to reject all channels.
+     * @param isClient the client uses odd channel ids and the other side even ones, so that they never collide.
+     */
+    public MuxConnection(@NotNull String name, @NotNull InputStream in, @NotNull OutputStream out, @Nullable Socket socket,
+                         @Nullable Function<MuxChannel, Byte> acceptor, boolean isClient, int window) {
+        this.name = name;
+        this.in = new DataInputStream(new BufferedInputStream(in, 65536));
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 65536));
+        this.socket = socket;
+        this.acceptor = acceptor;
+        this.window = window;
+        this.nextChannelId = new AtomicInteger(isClient ? 1 : 2);
+        this.reader = new Thread(this::read, "Mux-" + name + "-Reader");
+        this.writer = new Thread(this::write, "Mux-" + name + "-Writer");
+        reader.setDaemon(true);
+        writer.setDaemon(true);
+        reader.start();
+        writer.start();
+    }
+
+    /**
+     * Returns the multiplexed connection to AutoPlug-Web and connects it if needed. <br>
+     * Returns null if multiplexing is disabled in the web-config, or AutoPlug-Web doesn't support it.
+     */
+    @Nullable
+    public static synchronized MuxConnection getShared() throws Exception {
+        if (isUnsupported || !new WebConfig().multiplexing.asBoolean()) return null;
+        if (shared != null && !shared.isClosed()) return shared;
+        SecuredConnection auth;
+        try {
+            auth = new SecuredConnection(CON_TYPE_MUX);
+        } catch (UnknownConnectionTypeException e) {
+            isUnsupported = true;
+            AL.debug(MuxConnection.class, "AutoPlug-Web doesn't support multiplexing. Falling back to separate connections.");
+            return null;
+        }
+        try {
+            auth.getSocket().setSoTimeout(0); // Channels have their own read timeouts
+        } catch (Exception e) {
+            auth.getSocket().close();
+            throw e;
+        }
+        shared = new MuxConnection("AutoPlug-Web", auth.getInput(), auth.getOutput(), auth.getSocket(), null, true, DEFAULT_WINDOW);
+        return shared;
+    }
+
+    /**
+     * Closes the multiplexed connection to AutoPlug-Web, with all its channels.
+     */
+    public static synchronized void closeShared() {
+        if (shared == null) return;
+        shared.close();
+        shared = null;
+    }
+
+    /**
+     * Opens a new channel and blocks until the other side accepted it.
+     *
+     * @param priority lower values get sent first, see {@link MuxChannel#PRIORITY_HIGH}.
+     * @throws UnknownConnectionTypeException if the other side doesn't know the connection type.
+     */
+    @NotNull
+    public MuxChannel openChannel(byte conType, int priority) throws Exception {
+        if (isClosed) throw new IOException("Multiplexed connection '" + name + "' is closed.");
+        int id = nextChannelId.getAndAdd(2);
+        MuxChannel channel = new MuxChannel(this, id, conType, priority, window);
+        CompletableFuture<byte[]> result = new CompletableFuture<>();
+        pendingOpens.put(id, result);
+        channels.put(id, channel);
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(5);
+        DataOutputStream dos = new DataOutputStream(payload);
+        dos.writeByte(conType);
+        dos.writeInt(priority);
+        send(id, FRAME_OPEN, payload.toByteArray(), PRIORITY_CONTROL);
+        byte[] response;
+        try {
+            response = result.get(30, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            channels.remove(id);
+            throw new IOException("Multiplexed connection '" + name + "' closed while opening a channel.", e.getCause());
+        } catch (TimeoutException e) {
+            channels.remove(id);
+            throw new IOException("No response from '" + name + "' within 30 seconds, while opening a channel.");
+        } finally {
+            pendingOpens.remove(id);
+        }
+        if (response.length == 0) throw new IOException("Empty response while opening a channel.");
+        if (response[0] != 0) {
+            channels.remove(id);
+            SecuredConnection.checkResponse(conType, response[0],
+                    new DataInputStream(new ByteArrayInputStream(response, 1, response.length - 1)));
+        }
+        return channel;
+    }
+
+    public boolean isClosed() {
+        return isClosed;
+    }
+
+    /**
+     * Amount of currently open channels.
+     */
+    public int getCountChannels() {
+        return channels.size();
+    }
+
+    @Override
+    public void close() {
+        if (isClosed) return;
+        isClosed = true;
+        reader.interrupt();
+        writer.interrupt();
+        for (CompletableFuture<byte[]> pending :
+                pendingOpens.values()) {
+            pending.completeExceptionally(new EOFException());
+        }
+        for (MuxChannel channel :
+                channels.values()) {
+            channel.onRemoteClose();
+        }
+        channels.clear();
+        try {
+            if (socket != null) socket.close();
+            else {
+                in.close();
+                out.close();
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    void send(int channelId, byte type, @NotNull byte[] payload, int priority) throws IOException {
+        if (isClosed) throw new IOException("Multiplexed connection '" + name + "' is closed.");
+        queue.add(new Frame(channelId, type, payload, priority, frameSeq.getAndIncrement()));
+    }
+
+    void onChannelClosed(@NotNull MuxChannel channel, boolean isNotifyRemote) {
+        if (channels.remove(channel.getId()) == null) return;
+        if (isNotifyRemote)
+            try {
+                send(channel.getId(), FRAME_CLOSE, new byte[0], channel.getPriority()); // Not before the channels remaining data
+            } catch (IOException ignored) {
+            }
+    }
+
+    private void read() {
+        try {
+            while (!isClosed) {
+                int channelId = in.readInt();
+                byte type = in.readByte();
+                int length = in.readInt();
+                if (length < 0 || length > MAX_FRAME_DATA + 1024)
+                    throw new IOException("Invalid frame length " + length + ".");
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                onFrame(channelId, type, payload);
+            }
+        } catch (Exception e) {
+            if (!isClosed) AL.debug(this.getClass(), "Multiplexed connection '" + name + "' closed: " + e);
+        } finally {
+            close();
+        }
+    }
+
+    private void onFrame(int channelId, byte type, @NotNull byte[] payload) throws IOException {
+        MuxChannel channel = channels.get(channelId);
+        switch (type) {
+            case FRAME_OPEN: {
+                DataInputStream dis = new DataInputStream(new ByteArrayInputStream(payload));
+                MuxChannel newChannel = new MuxChannel(this, channelId, dis.readByte(), dis.readInt(), window);
+                channels.put(channelId, newChannel);
+                byte code = 4; // Unknown connection type
+                if (acceptor != null)
+                    try {
+                        code = acceptor.apply(newChannel);
+                    } catch (Exception e) {
+                        AL.warn(e);
+                        code = 7;
+                    }
+                if (code != 0) channels.remove(channelId);
+                send(channelId, FRAME_OPEN_RESULT, new byte[]{code}, PRIORITY_CONTROL);
+                break;
+            }
+            case FRAME_OPEN_RESULT: {
+                CompletableFuture<byte[]> pending = pendingOpens.get(channelId);
+                if (pending != null) pending.complete(payload);
+                break;
+            }
+            case FRAME_DATA:
+                if (channel != null) channel.onData(payload);
+                break;
+            case FRAME_WINDOW:
+                if (channel != null) channel.onWindowUpdate(new DataInputStream(new ByteArrayInputStream(payload)).readInt());
+                break;
+            case FRAME_CLOSE:
+                if (channel != null) {
+                    channels.remove(channelId);
+                    channel.onRemoteClose();
+                }
+                break;
+            default:
+                throw new IOException("Unknown frame type " + type + ".");
+        }
+    }
+
+    private void write() {
+        try {
+            while (!isClosed) {
+                Frame frame = queue.take();
+                out.writeInt(frame.channelId);
+                out.writeByte(frame.type);
+                out.writeInt(frame.payload.length);
+                out.write(frame.payload);
+                if (queue.isEmpty()) out.flush();
+            }
+        } catch (InterruptedException ignored) {
+        } catch (Exception e) {
+            if (!isClosed) AL.debug(this.getClass(), "Multiplexed connection '" + name + "' closed: " + e);
+        } finally {
+            close();
+        }
+    }
+
+    private static class Frame implements Comparable<Frame> {
+        private final int channelId;
+        private final byte type;
+        private final byte[] payload;
+        private final int priority;
+        private final long seq;
+
+        private Frame(int channelId, byte type, byte[] payload, int priority, long seq) {
+            this.channelId = channelId;
+            this.type = type;
+            this.payload = payload;
+            this.priority = priority;
+            this.seq = seq;
+        }
+
+        @Override
+        public int compareTo(@NotNull Frame o) {
+            if (priority != o.priority) return Integer.compare(priority, o.priority);
+            return Long.compare(seq, o.seq); // Same priority: first in, first out
+        }
+    }
+}
@@ -8,19 +8,41 @@
 
 package com.osiris.autoplug.client.network.online;
 
+import com.osiris.autoplug.client.utils.UFDataOut;
+import com.osiris.autoplug.core.logger.AL;
+import org.jetbrains.annotations.Nullable;
+
 import java.io.*;
 import java.net.Socket;
+import java.net.SocketException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This class was built to be extended.
  * Can only be created if the MainConnection already was established.
  * If not the server will reject the connection.
  * Also this connection needs to be authenticated using the server key.
- * Active when the user is logged in on the website.
+ * Active when the user is logged in on the website. <br>
+ * If multiplexing is enabled (and supported by AutoPlug-Web), this connection is a channel
+ * of the shared {@link MuxConnection}, instead of a separate socket. In that case {@link #getSocket()} returns null.
  */
 public class SecondaryConnection {
+    /**
+     * Added to the connection type, to request the binary protocol of {@link UFDataOut}.
+     */
+    public static final byte CON_TYPE_BINARY_OFFSET = 64;
+    /**
+     * Connection types for which AutoPlug-Web doesn't support the binary protocol,
+     * so that the negotiation isn't repeated on each reconnect.
+     */
+    private static final Set<Byte> binaryUnsupported = ConcurrentHashMap.newKeySet();
     private final byte auth_id; // Very important to identify the connection
+    private int priority = MuxChannel.PRIORITY_NORMAL;
+    @Nullable
     private Socket socket;
+    @Nullable
+    private MuxChannel channel;
     private InputStream in;
     private OutputStream out;
     private DataInputStream dataIn;
@@ -31,7 +53,28 @@ public class SecondaryConnection {
     }
 
     public boolean open() throws Exception {
-        SecuredConnection auth = new SecuredConnection(auth_id);
+        return open(auth_id);
+    }
+
+    /**
+     * Opens this connection with another connection type, than its default one.
+     * Used to negotiate optional features with AutoPlug-Web: if it doesn't know the type,
+     * an {@link UnknownConnectionTypeException} is thrown and the default type can be used instead.
+     */
+    public boolean open(byte conType) throws Exception {
+        MuxConnection mux = MuxConnection.getShared();
+        if (mux != null) {
+            channel = mux.openChannel(conType, priority);
+            channel.setReadTimeout(30000); // Same as the sockets of separate connections
+            socket = null;
+            in = channel.getIn();
+            out = channel.getOut();
+            dataIn = new DataInputStream(in);
+            dataOut = new DataOutputStream(out);
+            return true;
+        }
+        SecuredConnection auth = new SecuredConnection(conType);
+        channel = null;
         socket = auth.getSocket();
         in = auth.getInput();
         out = auth.getOutput();
@@ -40,20 +83,78 @@ public class SecondaryConnection {
         return true;
     }
 
+    /**
+     * Opens this connection with the newest {@link UFDataOut} protocol version, that both sides support: <br>
+     * The binary connection type ({@link #CON_TYPE_BINARY_OFFSET} + default type) is tried first.
+     * If AutoPlug-Web knows it, both sides exchange their max. protocol version (int) and use the lower one.
+     * Otherwise the default type with the text protocol is used.
+     *
+     * @return the protocol version to use for {@link UFDataOut} and {@link com.osiris.autoplug.client.utils.UFDataIn}.
+     */
+    public int openNegotiated() throws Exception {
+        if (!binaryUnsupported.contains(auth_id)) {
+            try {
+                open((byte) (auth_id + CON_TYPE_BINARY_OFFSET));
+                int version;
+                try {
+                    dataOut.writeInt(UFDataOut.VERSION_BINARY);
+                    dataOut.flush();
+                    version = Math.min(UFDataOut.VERSION_BINARY, dataIn.readInt());
+                } catch (Exception e) {
+                    closeConnection(); // Not close(), since subclasses override it
+                    throw e;
+                }
+                AL.debug(this.getClass(), "[CON_TYPE: " + auth_id + "] Using protocol version " + version + ".");
+                return version;
+            } catch (UnknownConnectionTypeException e) {
+                binaryUnsupported.add(auth_id);
+                AL.debug(this.getClass(), "[CON_TYPE: " + auth_id + "] AutoPlug-Web doesn't support the binary protocol. Falling back to the text protocol.");
+            }
+        }
+        open(auth_id);
+        return UFDataOut.VERSION_TEXT;
+    }
+
     public void close() throws IOException {
+        closeConnection();
+    }
+
+    private void closeConnection() throws IOException {
+        if (channel != null) {
+            channel.close();
+            return;
+        }
         if (in != null) in.close();
         if (out != null) out.close();
         if (isConnected()) socket.close();
     }
 
     public boolean isConnected() {
+        if (channel != null) return channel.isOpen();
         return socket != null && !socket.isClosed();
     }
 
+    /**
+     * Like {@link Socket#setSoTimeout(int)}, but also works for multiplexed connections.
+     */
+    public void setSoTimeout(int ms) throws SocketException {
+        if (channel != null) channel.setReadTimeout(ms);
+        else if (socket != null) socket.setSoTimeout(ms);
+    }
+
+    /**
+     * Priority of this connections data, if multiplexed. Must be set before opening.
+     * See {@link MuxChannel#PRIORITY_HIGH}.
+     */
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
     public byte getAuthId() {
         return auth_id;
     }
 
+    @Nullable
     public Socket getSocket() {
         return socket;
     }
@@ -17,7 +17,8 @@ import com.osiris.autoplug.client.utils.GD;
 import com.osiris.autoplug.core.logger.AL;
 import org.jetbrains.annotations.NotNull;
 
-import javax.net.SocketFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
 import java.io.DataInputStream;
@@ -25,12 +26,26 @@ import java.io.DataOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Authenticates this client to the AutoPlug-Web server.
  * Must be extended by each connection.
  */
 public class SecuredConnection {
+    /**
+     * Preferred first. TLSv1.3 is only available on Java 11+ and Java 8u261+.
+     */
+    private static final String[] PROTOCOLS = {"TLSv1.3", "TLSv1.2"};
+    /**
+     * Shared by all connections, since the session cache belongs to the {@link SSLContext}.
+     * Thus reconnects resume the previous session (abbreviated handshake without certificate exchange),
+     * instead of doing a full handshake each time.
+     */
+    private static SSLSocketFactory sslFactory;
+    private static String[] sslProtocols;
     private final byte conType;
     private Socket socket;
     private InputStream input;
@@ -47,10 +62,19 @@ public class SecuredConnection {
      *                 1 = {@link ConOnlineConsoleReceive}; <br>
      *                 2 = {@link ConOnlineConsoleSend}; <br>
      *                 3 = {@link ConPluginsUpdateResult}; <br>
-     * @throws Exception if authentication fails. Details are in the message.
+     * @throws Exception if authentication fails. Details are in the message. The socket is closed in that case.
      */
     public SecuredConnection(byte con_type) throws Exception {
         this.conType = con_type;
+        try {
+            connect(con_type);
+        } catch (Exception e) {
+            closeSocket();
+            throw e;
+        }
+    }
+
+    private void connect(byte con_type) throws Exception {
         while (true) {
             SystemConfig systemConfig = new SystemConfig();
             String ip = systemConfig.autoplug_web_ip.asString();
@@ -70,6 +94,7 @@ public class SecuredConnection {
             }
 
             AL.debug(this.getClass(), "[CON_TYPE: " + con_type + "] Connection to AutoPlug-Web throttled! Retrying in " + punishment / 1000 + " second(s).");
+            closeSocket(); // A new one gets created for the retry
             Thread.sleep(punishment + 250); // + 250ms, just to be safe
         }
 
@@ -80,10 +105,19 @@ public class SecuredConnection {
         dos.writeUTF(new GeneralConfig().server_key.asString()); // Send server key
         dos.writeByte(con_type); // Send connection type
 
-        byte response = dis.readByte(); // Get response
+        checkResponse(con_type, dis.readByte(), dis);
+    }
+
+    /**
+     * Throws an exception with details, if the response code of the authentication
+     * (or of opening a {@link MuxChannel}) isn't 0.
+     *
+     * @param dis to read additional details from, for some codes.
+     */
+    public static void checkResponse(byte con_type, byte response, @NotNull DataInputStream dis) throws Exception {
         switch (response) {
             case 0:
-                AL.debug(this.getClass(), "[CON_TYPE: " + con_type + "] Authenticated server successfully!");
+                AL.debug(SecuredConnection.class, "[CON_TYPE: " + con_type + "] Authenticated server successfully!");
                 break;
             case 1:
                 throw new Exception("[CON_TYPE: " + con_type + "] Authentication failed (code:" + response + "): No matching server key found! Register your server at " + GD.OFFICIAL_WEBSITE + " and get your server-key. Restart AutoPlug when done.");
@@ -92,7 +126,7 @@ public class SecuredConnection {
             case 3:
                 throw new Exception("[CON_TYPE: " + con_type + "] Authentication failed (code:" + response + "): Make sure that the primary connection is established before all the secondary connections!");
             case 4:
-                throw new Exception("[CON_TYPE: " + con_type + "] Authentication failed (code:" + response + "): Unknown connection type! Make sure that AutoPlug is up-to-date!");
+                throw new UnknownConnectionTypeException("[CON_TYPE: " + con_type + "] Authentication failed (code:" + response + "): Unknown connection type! Make sure that AutoPlug is up-to-date!");
             case 5:
                 throw new Exception("[CON_TYPE: " + con_type + "] Authentication failed (code:" + response + "): No user account found for the provided server key!");
             case 6:
@@ -119,16 +153,14 @@ public class SecuredConnection {
      * @throws Exception
      */
     public void createSSLConnection(String host, int port) throws Exception {
-        //SSLContext ctx = SSLContext.getInstance("TLSv1.3");
-        SocketFactory factory = SSLSocketFactory.getDefault();
-        socket = factory.createSocket(host, port);
+        // Sessions are cached per host and port, thus those must be passed here for resumption to work
+        socket = getSSLFactory().createSocket(host, port);
 
         //System.setProperty("javax.net.debug", "all");
-        ((SSLSocket) socket).setEnabledProtocols(
-                new String[]{"TLSv1.2"});
+        ((SSLSocket) socket).setEnabledProtocols(sslProtocols);
         ((SSLSocket) socket).getSSLParameters().setEndpointIdentificationAlgorithm("HTTPS");
 
-        registerHandshakeCallback(socket);
+        registerHandshakeCallback(socket, System.currentTimeMillis());
 
         ((SSLSocket) socket).startHandshake();
 
@@ -148,9 +180,43 @@ public class SecuredConnection {
         dataOut = new DataOutputStream(output);
     }
 
-    private void registerHandshakeCallback(@NotNull Socket socket) {
+    private void closeSocket() {
+        if (socket == null) return;
+        try {
+            socket.close();
+        } catch (Exception ignored) {
+        }
+    }
+
+    @NotNull
+    private static synchronized SSLSocketFactory getSSLFactory() throws Exception {
+        if (sslFactory == null) {
+            SSLContext ctx = SSLContext.getInstance("TLS");
+            ctx.init(null, null, null); // Default key/trust managers, like SSLSocketFactory.getDefault()
+            SSLSessionContext sessions = ctx.getClientSessionContext();
+            sessions.setSessionCacheSize(64);
+            sessions.setSessionTimeout(24 * 3600); // Seconds. The server may still decide to expire them earlier
+            List<String> supported = Arrays.asList(ctx.getSupportedSSLParameters().getProtocols());
+            List<String> protocols = new ArrayList<>();
+            for (String protocol :
+                    PROTOCOLS) {
+                if (supported.contains(protocol)) protocols.add(protocol);
+            }
+            sslProtocols = protocols.toArray(new String[0]);
+            AL.debug(SecuredConnection.class, "Enabled TLS protocols: " + protocols);
+            sslFactory = ctx.getSocketFactory();
+        }
+        return sslFactory;
+    }
+
+    /**
+     * @param startTime used to detect if the session was resumed, since a resumed session was created before the handshake started.
+     */
+    private void registerHandshakeCallback(@NotNull Socket socket, long startTime) {
         ((SSLSocket) socket).addHandshakeCompletedListener(event -> {
-                    AL.debug(SecuredConnection.class, "[CON_TYPE: " + conType + "] Handshake finished!");
+                    AL.debug(SecuredConnection.class, "[CON_TYPE: " + conType + "] Handshake finished!"
+                            + (event.getSession().getCreationTime() < startTime ? " Resumed previous session." : ""));
+                    AL.debug(SecuredConnection.class, "[CON_TYPE: " + conType + "] Protocol:" + event.getSession().getProtocol());
                     AL.debug(SecuredConnection.class, "[CON_TYPE: " + conType + "] CipherSuite:" + event.getCipherSuite());
                     AL.debug(SecuredConnection.class, "[CON_TYPE: " + conType + "] SessionId " + event.getSession());
                     AL.debug(SecuredConnection.class, "[CON_TYPE: " + conType + "] PeerHost " + event.getSession().getPeerHost());
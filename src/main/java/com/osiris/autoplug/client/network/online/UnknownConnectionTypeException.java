@@ -0,0 +1,18 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.network.online;
+
+/**
+ * Thrown when AutoPlug-Web doesn't know the requested connection type.
+ */
+public class UnknownConnectionTypeException extends Exception {
+    public UnknownConnectionTypeException(String message) {
+        super(message);
+    }
+}
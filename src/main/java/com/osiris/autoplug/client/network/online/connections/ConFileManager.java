@@ -9,7 +9,11 @@
 package com.osiris.autoplug.client.network.online.connections;
 
 import com.osiris.autoplug.client.configs.WebConfig;
+import com.osiris.autoplug.client.network.online.MuxChannel;
 import com.osiris.autoplug.client.network.online.SecondaryConnection;
+import com.osiris.autoplug.client.utils.DirectoryListing;
+import com.osiris.autoplug.client.utils.FileTransfer;
+import com.osiris.autoplug.client.utils.FileUpload;
 import com.osiris.autoplug.client.utils.GD;
 import com.osiris.autoplug.client.utils.UFDataIn;
 import com.osiris.autoplug.client.utils.UFDataOut;
@@ -21,8 +25,13 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
 
 
 public class ConFileManager extends SecondaryConnection {
@@ -30,25 +39,33 @@ public class ConFileManager extends SecondaryConnection {
     @Nullable
     private UFDataOut dos;
     private UFDataIn dis;
+    @Nullable
+    private DirectoryListing listing;
+    private long maxUploadBytes;
     private Thread thread;
 
     public ConFileManager() {
         super((byte) 5);  // Each connection has its own auth_id.
+        setPriority(MuxChannel.PRIORITY_LOW); // File transfers shouldn't delay the console
     }
 
     @Override
     public boolean open() throws Exception {
-        if (new WebConfig().file_manager.asBoolean()) {
-            super.open();
-            getSocket().setSoTimeout(0);
-            dos = new UFDataOut(getOut());
-            dis = new UFDataIn(getDataIn());
+        WebConfig webConfig = new WebConfig();
+        if (webConfig.file_manager.asBoolean()) {
+            maxUploadBytes = webConfig.file_manager_max_upload_size.asInt() * 1024L * 1024L;
+            int version = openNegotiated();
+            setSoTimeout(0);
+            dos = new UFDataOut(getOut(), version);
+            dis = new UFDataIn(getIn(), version);
+            if (version >= UFDataOut.VERSION_BINARY && listing == null)
+                listing = new DirectoryListing(10000, 16);
 
             thread = new Thread(() -> {
                 try {
                     while (true) {
                         byte requestType = dis.readByte();
-                        getSocket().setSoTimeout(5000);
+                        setSoTimeout(5000);
                         if (requestType == 0) {
                             doProtocolForSendingFileDetails();
                         } else if (requestType == 1) {
@@ -66,7 +83,10 @@ public class ConFileManager extends SecondaryConnection {
                         } else {
                             AL.warn("Unknown file operation / Unknown request type (" + requestType + ").");
                         }
-                        getSocket().setSoTimeout(0);
+                        dos.flush(); // Sends the response as a single message
+                        if (requestType != 0 && listing != null)
+                            listing.invalidateAll(); // Don't wait for the watcher to notice our own changes
+                        setSoTimeout(0);
                     }
                 } catch (Exception e) {
                     AL.warn("File-Manager connection closed due to error.", e);
@@ -115,6 +135,10 @@ public class ConFileManager extends SecondaryConnection {
 
     private void doProtocolForReceivingUploadedFile() throws IOException {
         File file = new File(dis.readLine());
+        if (dos.getVersion() >= UFDataOut.VERSION_BINARY) {
+            receiveFileBinary(file, "Critical error while saving uploaded file! Check your servers log for further details: ");
+            return;
+        }
         if (!file.exists()) file.createNewFile();
         try (BufferedWriter fw = new BufferedWriter(new FileWriter(file))) {
             String line;
@@ -132,6 +156,10 @@ public class ConFileManager extends SecondaryConnection {
 
     private void doProtocolForSavingFile() throws IOException {
         File file = new File(dis.readLine());
+        if (dos.getVersion() >= UFDataOut.VERSION_BINARY) {
+            receiveFileBinary(file, "Critical error while saving a file! Check your servers log for further details: ");
+            return;
+        }
         try (BufferedWriter fw = new BufferedWriter(new FileWriter(file))) {
             String line;
             while ((line = dis.readLine()) != null && !line.equals("\u001a")) {
@@ -146,6 +174,51 @@ public class ConFileManager extends SecondaryConnection {
         dos.writeBoolean(true);
     }
 
+    /**
+     * Binary protocol only. Web sends: long size (uncompressed), boolean compressed. <br>
+     * Responds with: boolean accepted, followed by the reason if not (too big for example). <br>
+     * If accepted, web sends the content (see {@link FileTransfer}), which replaces the file atomically (see {@link FileUpload}). <br>
+     * Responds with: boolean success, followed by the reason if not.
+     */
+    private void receiveFileBinary(File file, String errorMessage) throws IOException {
+        long size = dis.readLong();
+        boolean isCompressed = dis.readBoolean();
+        FileUpload upload;
+        try {
+            upload = new FileUpload(file.toPath(), size, maxUploadBytes);
+        } catch (FileUpload.TooBigException e) {
+            dos.writeBoolean(false);
+            dos.writeLine(e.getMessage());
+            return;
+        } catch (Exception e) {
+            AL.warn(e);
+            dos.writeBoolean(false);
+            dos.writeLine(errorMessage + e.getMessage());
+            return;
+        }
+        dos.writeBoolean(true);
+        dos.flush(); // Web waits for this, before sending the content
+        try (FileUpload u = upload) {
+            try {
+                u.receive(dis, isCompressed); // Throws and thus closes the connection, if more than announced gets sent
+            } catch (FileTransfer.ChecksumMismatchException e) {
+                AL.warn(e);
+                dos.writeBoolean(false);
+                dos.writeLine("The received file was corrupted (" + e.getMessage() + ")! Nothing was changed, please try again.");
+                return;
+            }
+            try {
+                u.commit();
+            } catch (Exception e) {
+                AL.warn(e);
+                dos.writeBoolean(false);
+                dos.writeLine(errorMessage + e.getMessage());
+                return;
+            }
+            dos.writeBoolean(true);
+        }
+    }
+
     private void doProtocolForRenamingFile() throws IOException {
         File file = new File(dis.readLine());
         File renamedFile = new File(file.getParentFile() + "/" + dis.readLine());
@@ -162,6 +235,7 @@ public class ConFileManager extends SecondaryConnection {
             for (int i = 0; i < filesCount; i++) {
                 FileUtils.forceDelete(new File(dis.readLine()));
                 dos.writeBoolean(true);
+                dos.flush();
             }
         } catch (Exception e) {
             AL.warn(e);
@@ -208,6 +282,10 @@ public class ConFileManager extends SecondaryConnection {
         filePath = dis.readLine(); // Wait until we receive the files path
         if (filePath.isEmpty()) requestedFile = GD.WORKING_DIR;
         else requestedFile = new File(filePath);
+        if (listing != null) {
+            doProtocolForSendingFileDetailsPaged(requestedFile);
+            return;
+        }
         sendFileDetails(requestedFile);
         if (requestedFile.isDirectory()) {
             File[] files = requestedFile.listFiles();
@@ -232,11 +310,78 @@ public class ConFileManager extends SecondaryConnection {
                 }
             }
         } else { // Is not a dir
+            dos.flush(); // Web must receive the details before it can respond
+            if (dis.readBoolean()) { // Web checks the files size and responds with true if it wants its content
+                if (dos.getVersion() >= UFDataOut.VERSION_BINARY) sendFileContentBinary(requestedFile);
+                else sendFileContent(requestedFile);
+            }
+        }
+    }
+
+    /**
+     * Binary protocol only. Web sends how to sort and which page of the directory it wants: <br>
+     * int sortBy (see {@link DirectoryListing#SORT_NAME}), boolean descending, int offset, int limit. <br>
+     * Responds with the details of the requested file, then if it's a directory: <br>
+     * int total amount of entries (incl. parent dir), int amount of entries in this page, followed by their details.
+     * The parent dir is the first entry of the first page, then directories, then files.
+     */
+    private void doProtocolForSendingFileDetailsPaged(File requestedFile) throws IOException {
+        int sortBy = dis.readInt();
+        boolean isDescending = dis.readBoolean();
+        int offset = Math.max(0, dis.readInt());
+        int limit = Math.max(0, dis.readInt());
+        Path path = requestedFile.toPath().toAbsolutePath();
+        DirectoryListing.Entry requested;
+        try {
+            requested = DirectoryListing.readEntry(path);
+        } catch (IOException e) { // Doesn't exist (anymore), same details as java.io.File would return
+            requested = new DirectoryListing.Entry(path, requestedFile.getName(), false, 0, 0, false);
+        }
+        sendEntryDetails(requested, requested.name);
+        if (requested.isDirectory) {
+            List<DirectoryListing.Entry> entries;
+            try {
+                entries = listing.list(path, sortBy, isDescending);
+            } catch (IOException e) {
+                AL.warn(e);
+                entries = Collections.emptyList();
+            }
+            DirectoryListing.Entry parent = null;
+            Path parentPath = path.getParent();
+            if (parentPath != null)
+                try {
+                    parent = DirectoryListing.readEntry(parentPath);
+                } catch (IOException ignored) {
+                }
+            int parentCount = parent != null ? 1 : 0;
+            int total = entries.size() + parentCount;
+            int end = (int) Math.min(total, (long) offset + limit);
+            dos.writeInt(total);
+            dos.writeInt(Math.max(0, end - offset));
+            for (int i = offset; i < end; i++) { // Gets sent in frames while writing, thus the web can already parse the first entries
+                if (i < parentCount) sendEntryDetails(parent, "...");
+                else {
+                    DirectoryListing.Entry entry = entries.get(i - parentCount);
+                    sendEntryDetails(entry, entry.name);
+                }
+            }
+        } else { // Is not a dir
+            dos.flush(); // Web must receive the details before it can respond
             if (dis.readBoolean()) // Web checks the files size and responds with true if it wants its content
-                sendFileContent(requestedFile);
+                sendFileContentBinary(requestedFile);
         }
     }
 
+    private void sendEntryDetails(DirectoryListing.Entry entry, String name) throws IOException {
+        dos.writeLine(entry.path.toString());
+        dos.writeBoolean(entry.isDirectory);
+        dos.writeLong(entry.size);
+        dos.writeLine(formatSize(entry.size));
+        dos.writeLine(name);
+        dos.writeLong(entry.lastModified);
+        dos.writeBoolean(entry.isHidden);
+    }
+
     private void sendFileContent(File file) throws IOException {
         //System.out.println("Sending file "+file);
         dos.writeFile(file);
@@ -258,19 +403,44 @@ public class ConFileManager extends SecondaryConnection {
         //System.out.println("Sent file!");
     }
 
+    /**
+     * Web sends the range it wants (for previews and resuming) and if the content should be compressed: <br>
+     * long start, long length (-1 for the rest of the file), boolean compress. <br>
+     * Responds with: long fileSize, long start, long length, followed by the content, see {@link FileTransfer}.
+     * The actually sent length is less than the responded one, if the file shrank in the meantime.
+     */
+    private void sendFileContentBinary(File file) throws IOException {
+        long start = dis.readLong();
+        long length = dis.readLong();
+        boolean isCompress = dis.readBoolean();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            start = Math.max(0, Math.min(start, size));
+            long end = length < 0 ? size : Math.min(size, start + length);
+            dos.writeLong(size);
+            dos.writeLong(start);
+            dos.writeLong(end - start);
+            FileTransfer.send(dos, channel, start, end, isCompress);
+        }
+    }
+
+    private String formatSize(long length) {
+        if (length < 1000) // Smaller than 1kb
+            return length + "B";
+        else if (length < 1000000) // Smaller than 1mb
+            return length / 1000 + "kB";
+        else if (length < 1000000000) // Smaller than 1 gb
+            return length / 1000000 + "MB";
+        else // Bigger than 1 gb
+            return length / 1000000000 + "GB";
+    }
+
     private void sendFileDetails(File file) throws IOException {
         dos.writeLine(file.getAbsolutePath());
         dos.writeBoolean(file.isDirectory());
         long length = file.length(); // In bytes
         dos.writeLong(length);
-        if (length < 1000) // Smaller than 1kb
-            dos.writeLine(length + "B");
-        else if (length < 1000000) // Smaller than 1mb
-            dos.writeLine(length / 1000 + "kB");
-        else if (length < 1000000000) // Smaller than 1 gb
-            dos.writeLine(length / 1000000 + "MB");
-        else // Bigger than 1 gb
-            dos.writeLine(length / 1000000000 + "GB");
+        dos.writeLine(formatSize(length));
         dos.writeLine(file.getName());
         dos.writeLong(file.lastModified());
         dos.writeBoolean(file.isHidden());
@@ -281,14 +451,7 @@ public class ConFileManager extends SecondaryConnection {
         dos.writeBoolean(file.isDirectory());
         long length = file.length(); // In bytes
         dos.writeLong(length);
-        if (length < 1000) // Smaller than 1kb
-            dos.writeLine(length + "B");
-        else if (length < 1000000) // Smaller than 1mb
-            dos.writeLine(length / 1000 + "kB");
-        else if (length < 1000000000) // Smaller than 1 gb
-            dos.writeLine(length / 1000000 + "MB");
-        else // Bigger than 1 gb
-            dos.writeLine(length / 1000000000 + "GB");
+        dos.writeLine(formatSize(length));
         dos.writeLine("...");
         dos.writeLong(file.lastModified());
         dos.writeBoolean(file.isHidden());
@@ -308,8 +471,15 @@ public class ConFileManager extends SecondaryConnection {
             AL.warn("Failed to close connection.", e);
         }
 
+        try {
+            if (listing != null) listing.close();
+        } catch (Exception e) {
+            AL.warn("Failed to close directory listing.", e);
+        }
+
         thread = null;
         dos = null;
         dis = null;
+        listing = null;
     }
 }
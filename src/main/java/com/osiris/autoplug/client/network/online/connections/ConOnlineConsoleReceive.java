@@ -11,6 +11,7 @@ package com.osiris.autoplug.client.network.online.connections;
 import com.osiris.autoplug.client.Server;
 import com.osiris.autoplug.client.configs.WebConfig;
 import com.osiris.autoplug.client.console.AutoPlugConsole;
+import com.osiris.autoplug.client.network.online.MuxChannel;
 import com.osiris.autoplug.client.network.online.SecondaryConnection;
 import com.osiris.autoplug.core.logger.AL;
 import org.jetbrains.annotations.Nullable;
@@ -19,7 +20,6 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.Socket;
 
 /**
  * The user can send commands through the online console.<br>
@@ -32,6 +32,7 @@ public class ConOnlineConsoleReceive extends SecondaryConnection {
 
     public ConOnlineConsoleReceive() {
         super((byte) 1);
+        setPriority(MuxChannel.PRIORITY_HIGH);
     }
 
     @Override
@@ -41,12 +42,11 @@ public class ConOnlineConsoleReceive extends SecondaryConnection {
             if (thread == null) {
                 thread = new Thread(() -> {
                     try {
-                        Socket socket = getSocket();
-                        socket.setSoTimeout(0);
-                        InputStream in = getSocket().getInputStream();
+                        setSoTimeout(0);
+                        InputStream in = getIn();
                         try (BufferedReader reader = new BufferedReader(new InputStreamReader(in))) {
                             String line;
-                            while (!socket.isClosed() && (line = reader.readLine()) != null) {
+                            while (isConnected() && (line = reader.readLine()) != null) {
                                 AL.info("Received Web-Command: " + line);
                                 if (!AutoPlugConsole.executeCommand(line))
                                     Server.submitCommand(line);
@@ -10,7 +10,12 @@ package com.osiris.autoplug.client.network.online.connections;
 
 import com.osiris.autoplug.client.configs.LoggerConfig;
 import com.osiris.autoplug.client.configs.WebConfig;
+import com.osiris.autoplug.client.network.online.BatchedLineWriter;
+import com.osiris.autoplug.client.network.online.MuxChannel;
 import com.osiris.autoplug.client.network.online.SecondaryConnection;
+import com.osiris.autoplug.client.network.online.UnknownConnectionTypeException;
+import com.osiris.autoplug.client.utils.ConsoleHistory;
+import com.osiris.autoplug.client.utils.GD;
 import com.osiris.autoplug.core.events.MessageEvent;
 import com.osiris.autoplug.core.logger.AL;
 import com.osiris.autoplug.core.logger.Message;
@@ -18,7 +23,7 @@ import com.osiris.autoplug.core.logger.MessageFormatter;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.*;
+import java.io.IOException;
 
 
 /**
@@ -27,8 +32,16 @@ import java.io.*;
  * Note that
  */
 public class ConOnlineConsoleSend extends SecondaryConnection {
+    /**
+     * Connection type for the deflate compressed variant of this connection.
+     */
+    public static final byte CON_TYPE_DEFLATE = 20;
+    /**
+     * True if AutoPlug-Web rejected {@link #CON_TYPE_DEFLATE}, so that it isn't requested again on each reconnect.
+     */
+    private static volatile boolean isDeflateUnsupported;
     @Nullable
-    private static BufferedWriter bw;
+    private static volatile BatchedLineWriter writer;
     public static final MessageEvent<Message> actionOnAutoPlugMessageEvent = message -> {
         try {
             boolean isDebug = new LoggerConfig().debug.asBoolean();
@@ -48,56 +61,59 @@ public class ConOnlineConsoleSend extends SecondaryConnection {
 
     public ConOnlineConsoleSend() {
         super((byte) 2);  // Each connection has its own auth_id.
+        setPriority(MuxChannel.PRIORITY_HIGH);
     }
 
-    public static synchronized void send(@NotNull String message) {
-        try {
-            if (bw != null) {
-                if (!message.contains(System.lineSeparator())) {
-                    bw.write(message + System.lineSeparator());
-                } else {
-                    bw.write(message);
-                }
-                bw.flush();
-            }
-        } catch (Exception e) { // Do not use AL.warn because that would cause an infinite loop
-        }
+    /**
+     * Queues the message, which gets sent together with other messages in the next batch.
+     */
+    public static void send(@NotNull String message) {
+        BatchedLineWriter writer = ConOnlineConsoleSend.writer;
+        if (writer != null)
+            writer.writeLine(message);
     }
 
     @Override
     public boolean open() throws Exception {
-        if (new WebConfig().online_console.asBoolean()) {
-            super.open();
-            getSocket().setSoTimeout(0);
-            bw = new BufferedWriter(new OutputStreamWriter(getOut()));
-
-            if (!AL.actionsOnMessageEvent.contains(actionOnAutoPlugMessageEvent))
-                AL.actionsOnMessageEvent.add(actionOnAutoPlugMessageEvent);
+        WebConfig webConfig = new WebConfig();
+        if (webConfig.online_console.asBoolean()) {
+            boolean isDeflate = false;
+            if (webConfig.online_console_compression.asBoolean() && !isDeflateUnsupported) {
+                try {
+                    super.open(CON_TYPE_DEFLATE);
+                    isDeflate = true;
+                } catch (UnknownConnectionTypeException e) { // The rejected socket/channel was already closed
+                    isDeflateUnsupported = true;
+                    AL.debug(this.getClass(), "AutoPlug-Web doesn't support compression for the online console. Falling back to uncompressed.");
+                    super.open();
+                }
+            } else
+                super.open();
+            setSoTimeout(0);
+            BatchedLineWriter writer = new BatchedLineWriter("OnlineConsoleSend-Writer", getOut(),
+                    webConfig.online_console_flush_interval.asInt(),
+                    webConfig.online_console_max_batch_size.asInt() * 1024,
+                    isDeflate);
 
-            // Sending recent server log
+            // Sending recent console lines from memory, instead of re-reading the whole log file.
+            // They get queued before the writer is published, so that they are sent before live lines,
+            // and the history is locked meanwhile, so that each line is either replayed or sent live.
+            int replayLines = 0;
             try {
-                File latestLog = null;
-                for (File f :
-                        new File(System.getProperty("user.dir") + "/logs").listFiles()) {
-                    if (!f.isDirectory() && f.getName().contains("latest")) {
-                        latestLog = f;
-                        AL.debug(this.getClass(), "Found latest log at: " + f.getAbsolutePath());
-                        break;
-                    }
-                }
-                if (latestLog == null)
-                    AL.warn("Failed to find latest server log file. Not sending recent server log to console.");
-                else {
-                    try (BufferedReader bufferedReader = new BufferedReader(new FileReader(latestLog))) {
-                        String line;
-                        while ((line = bufferedReader.readLine()) != null) {
-                            send(line);
-                        }
-                    }
-                }
+                replayLines = new LoggerConfig().history_replay_lines.asInt();
             } catch (Exception e) {
                 AL.warn(e, "Error during recent log sending.");
             }
+            synchronized (GD.CONSOLE_HISTORY) {
+                for (ConsoleHistory.Line line :
+                        GD.CONSOLE_HISTORY.getLast(replayLines)) {
+                    writer.writeLine(line.text);
+                }
+                ConOnlineConsoleSend.writer = writer;
+            }
+
+            if (!AL.actionsOnMessageEvent.contains(actionOnAutoPlugMessageEvent))
+                AL.actionsOnMessageEvent.add(actionOnAutoPlugMessageEvent);
             AL.debug(this.getClass(), "Connection '" + this.getClass().getSimpleName() + "' connected.");
             return true;
         } else {
@@ -114,6 +130,10 @@ public class ConOnlineConsoleSend extends SecondaryConnection {
         } catch (Exception ignored) {
         }
 
+        BatchedLineWriter writer = ConOnlineConsoleSend.writer;
+        ConOnlineConsoleSend.writer = null;
+        if (writer != null) writer.close();
+
         try {
             super.close();
         } catch (Exception e) {
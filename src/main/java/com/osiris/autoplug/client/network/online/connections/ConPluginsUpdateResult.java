@@ -16,7 +16,6 @@ import com.osiris.betterthread.BetterThreadManager;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
-import java.net.Socket;
 import java.util.List;
 
 /**
@@ -44,8 +43,7 @@ public class ConPluginsUpdateResult extends SecondaryConnection {
     @Override
     public boolean open() throws Exception {
         super.open();
-        Socket socket = getSocket();
-        socket.setSoTimeout(0);
+        setSoTimeout(0);
         sendResultsOfPluginCheck();
         return true;
     }
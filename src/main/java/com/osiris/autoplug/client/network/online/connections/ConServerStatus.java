@@ -8,31 +8,38 @@
 
 package com.osiris.autoplug.client.network.online.connections;
 
-import com.osiris.autoplug.client.Server;
 import com.osiris.autoplug.client.configs.WebConfig;
+import com.osiris.autoplug.client.monitoring.ServerStatusCache;
 import com.osiris.autoplug.client.network.online.SecondaryConnection;
+import com.osiris.autoplug.client.utils.GD;
 import com.osiris.autoplug.client.utils.MineStat;
 import com.osiris.autoplug.client.utils.UFDataOut;
 import com.osiris.autoplug.core.logger.AL;
-import oshi.SystemInfo;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import oshi.hardware.CentralProcessor;
 import oshi.hardware.GlobalMemory;
 import oshi.hardware.HardwareAbstractionLayer;
 
 import java.io.IOException;
+import java.util.Objects;
 
 
 /**
- * Read the InputStreams of AutoPlug and the Minecraft server and
- * send it to the AutoPlug server when the user is online.
- * Note that
+ * Sends the status of the server (ping results and hardware info) to AutoPlug-Web, while the user is online. <br>
+ * With the text protocol all fields get sent every 5 seconds. <br>
+ * With the binary protocol (see {@link UFDataOut}) only the changed fields get sent: each message starts with
+ * a short bitmask of the contained fields (see {@link Status}), followed by those fields in their usual order.
+ * A full snapshot gets sent after connecting and every minute. While nothing changes,
+ * the sampling interval grows up to 30 seconds and drops back to 5 seconds on the first change.
  */
 public class ConServerStatus extends SecondaryConnection {
+    private static final int MIN_INTERVAL_MS = 5000;
+    private static final int MAX_INTERVAL_MS = 30000;
+    private static final long FULL_SNAPSHOT_MS = 60000;
     public float cpuSpeed;
     public float cpuMaxSpeed;
 
-    public String host = "localhost";
-
     public boolean isRunning;
     public String strippedMotd;
     public String version;
@@ -51,72 +58,44 @@ public class ConServerStatus extends SecondaryConnection {
     @Override
     public boolean open() throws Exception {
         if (new WebConfig().send_server_status.asBoolean()) {
-            super.open();
+            int version = openNegotiated();
             if (dos == null) {
-                getSocket().setSoTimeout(0);
-                dos = new UFDataOut(getOut());
-                float oneGigaByteInBytes = 1073741824.0f;
-                float oneGigaHertzInHertz = 1000000000.0f;
-                SystemInfo si = new SystemInfo();
+                setSoTimeout(0);
+                dos = new UFDataOut(getOut(), version);
+                UFDataOut out = dos;
                 thread = new Thread(() -> {
                     try {
+                        // Hardware handles are kept, since oshi creates them lazily and caches static info like the max frequency in them
+                        HardwareAbstractionLayer hal = GD.getSystemInfo().getHardware();
+                        CentralProcessor cpu = hal.getProcessor();
+                        GlobalMemory memory = hal.getMemory();
+                        boolean isDelta = out.getVersion() >= UFDataOut.VERSION_BINARY;
+                        Status sent = null;
+                        long lastFullSnapshot = 0;
+                        int interval = MIN_INTERVAL_MS;
                         while (true) {
-                            // MC server related info:
-                            MineStat mineStat = new MineStat(host, Server.PORT);
-                            isRunning = mineStat.isServerUp();
-                            strippedMotd = mineStat.getStrippedMotd();
-                            if (strippedMotd == null)
-                                strippedMotd = "-";
-                            version = mineStat.getVersion();
-                            if (version != null)
-                                version = version.replaceAll("[a-zA-Z]", "");
-                            else
-                                version = "-";
-                            currentPlayers = mineStat.getCurrentPlayers();
-                            maxPlayers = mineStat.getMaximumPlayers();
-
-                            dos.writeBoolean(isRunning);
-                            dos.writeLine(strippedMotd);
-                            dos.writeLine(version);
-                            dos.writeInt(currentPlayers);
-                            dos.writeInt(maxPlayers);
-
-                            // Hardware info:
-                            HardwareAbstractionLayer hal = si.getHardware();
-                            CentralProcessor cpu = hal.getProcessor();
-                            GlobalMemory memory = hal.getMemory();
-                            // Calc average frequency in mhz
-                            long currentFrq = 0;
-                            int i = 0;
-                            if (cpu != null) {
-                                for (long frq :
-                                        cpu.getCurrentFreq()) {
-                                    currentFrq = currentFrq + frq;
-                                    i++;
-                                }
-                                currentFrq = currentFrq / i;
-                            }
-
-                            if (cpu != null) {
-                                dos.writeFloat((cpuSpeed = (currentFrq / oneGigaHertzInHertz)));
-                                dos.writeFloat((cpu.getMaxFreq() / oneGigaHertzInHertz));
-                            } else {
-                                dos.writeFloat(0);
-                                dos.writeFloat(0);
-                            }
-
-
-                            if (memory != null) {
-                                dos.writeFloat((memAvailable = (memory.getAvailable() / oneGigaByteInBytes)));
-                                dos.writeFloat((memUsed = ((memory.getTotal() - memory.getAvailable()) / oneGigaByteInBytes)));
-                                dos.writeFloat((memTotal = (memory.getTotal() / oneGigaByteInBytes)));
+                            Status status = sample(cpu, memory);
+                            if (!isDelta) {
+                                status.write(out, Status.ALL);
+                                out.flush();
                             } else {
-                                dos.writeFloat(0);
-                                dos.writeFloat(0);
-                                dos.writeFloat(0);
+                                long now = System.currentTimeMillis();
+                                int changed = status.diff(sent);
+                                int fields = changed;
+                                if (sent == null || now - lastFullSnapshot >= FULL_SNAPSHOT_MS) {
+                                    fields = Status.ALL;
+                                    lastFullSnapshot = now;
+                                }
+                                if (fields != 0) {
+                                    out.writeShort((short) fields);
+                                    status.write(out, fields);
+                                    out.flush();
+                                    if (sent == null) sent = status;
+                                    else sent.set(status, fields);
+                                }
+                                interval = changed == 0 ? Math.min(MAX_INTERVAL_MS, interval + MIN_INTERVAL_MS) : MIN_INTERVAL_MS;
                             }
-
-                            Thread.sleep(5000);
+                            Thread.sleep(interval);
                         }
                     } catch (Exception e) {
                         AL.warn(e);
@@ -132,6 +111,146 @@ public class ConServerStatus extends SecondaryConnection {
         }
     }
 
+    @NotNull
+    private Status sample(@Nullable CentralProcessor cpu, @Nullable GlobalMemory memory) {
+        float oneGigaByteInBytes = 1073741824.0f;
+        float oneGigaHertzInHertz = 1000000000.0f;
+        Status status = new Status();
+        // MC server related info:
+        MineStat mineStat = ServerStatusCache.SERVER.get(MIN_INTERVAL_MS, 5);
+        status.isRunning = mineStat.isServerUp();
+        status.strippedMotd = mineStat.getStrippedMotd();
+        if (status.strippedMotd == null)
+            status.strippedMotd = "-";
+        status.version = mineStat.getVersion();
+        if (status.version != null)
+            status.version = status.version.replaceAll("[a-zA-Z]", "");
+        else
+            status.version = "-";
+        status.currentPlayers = mineStat.getCurrentPlayers();
+        status.maxPlayers = mineStat.getMaximumPlayers();
+
+        // Hardware info:
+        if (cpu != null) {
+            // Calc average frequency
+            long currentFrq = 0;
+            int i = 0;
+            for (long frq :
+                    cpu.getCurrentFreq()) {
+                currentFrq = currentFrq + frq;
+                i++;
+            }
+            if (i > 0) currentFrq = currentFrq / i;
+            status.cpuSpeed = currentFrq / oneGigaHertzInHertz;
+            status.cpuMaxSpeed = cpu.getMaxFreq() / oneGigaHertzInHertz;
+        }
+        if (memory != null) {
+            long available = memory.getAvailable();
+            long total = memory.getTotal();
+            status.memAvailable = available / oneGigaByteInBytes;
+            status.memUsed = (total - available) / oneGigaByteInBytes;
+            status.memTotal = total / oneGigaByteInBytes;
+        }
+
+        isRunning = status.isRunning;
+        strippedMotd = status.strippedMotd;
+        version = status.version;
+        currentPlayers = status.currentPlayers;
+        maxPlayers = status.maxPlayers;
+        cpuSpeed = status.cpuSpeed;
+        cpuMaxSpeed = status.cpuMaxSpeed;
+        memAvailable = status.memAvailable;
+        memUsed = status.memUsed;
+        memTotal = status.memTotal;
+        return status;
+    }
+
+    /**
+     * The sent fields, in their order. The bit of each field is used in the bitmask of delta messages.
+     */
+    public static class Status {
+        public static final int RUNNING = 1;
+        public static final int MOTD = 1 << 1;
+        public static final int VERSION = 1 << 2;
+        public static final int PLAYERS = 1 << 3;
+        public static final int MAX_PLAYERS = 1 << 4;
+        public static final int CPU_SPEED = 1 << 5;
+        public static final int CPU_MAX_SPEED = 1 << 6;
+        public static final int MEM_AVAILABLE = 1 << 7;
+        public static final int MEM_USED = 1 << 8;
+        public static final int MEM_TOTAL = 1 << 9;
+        public static final int ALL = (1 << 10) - 1;
+        /**
+         * Smaller float changes (GHz, GB) are not considered changes, since the web panel wouldn't show them anyway.
+         */
+        private static final float MIN_FLOAT_CHANGE = 0.01f;
+        public boolean isRunning;
+        public String strippedMotd = "-";
+        public String version = "-";
+        public int currentPlayers;
+        public int maxPlayers;
+        public float cpuSpeed;
+        public float cpuMaxSpeed;
+        public float memAvailable;
+        public float memUsed;
+        public float memTotal;
+
+        private static boolean isChanged(float a, float b) {
+            return Math.abs(a - b) >= MIN_FLOAT_CHANGE;
+        }
+
+        /**
+         * Returns the bitmask of the fields that differ from the provided status, all if it's null.
+         */
+        public int diff(@Nullable Status other) {
+            if (other == null) return ALL;
+            int fields = 0;
+            if (isRunning != other.isRunning) fields |= RUNNING;
+            if (!Objects.equals(strippedMotd, other.strippedMotd)) fields |= MOTD;
+            if (!Objects.equals(version, other.version)) fields |= VERSION;
+            if (currentPlayers != other.currentPlayers) fields |= PLAYERS;
+            if (maxPlayers != other.maxPlayers) fields |= MAX_PLAYERS;
+            if (isChanged(cpuSpeed, other.cpuSpeed)) fields |= CPU_SPEED;
+            if (isChanged(cpuMaxSpeed, other.cpuMaxSpeed)) fields |= CPU_MAX_SPEED;
+            if (isChanged(memAvailable, other.memAvailable)) fields |= MEM_AVAILABLE;
+            if (isChanged(memUsed, other.memUsed)) fields |= MEM_USED;
+            if (isChanged(memTotal, other.memTotal)) fields |= MEM_TOTAL;
+            return fields;
+        }
+
+        /**
+         * Copies the provided fields from the other status.
+         */
+        public void set(@NotNull Status other, int fields) {
+            if ((fields & RUNNING) != 0) isRunning = other.isRunning;
+            if ((fields & MOTD) != 0) strippedMotd = other.strippedMotd;
+            if ((fields & VERSION) != 0) version = other.version;
+            if ((fields & PLAYERS) != 0) currentPlayers = other.currentPlayers;
+            if ((fields & MAX_PLAYERS) != 0) maxPlayers = other.maxPlayers;
+            if ((fields & CPU_SPEED) != 0) cpuSpeed = other.cpuSpeed;
+            if ((fields & CPU_MAX_SPEED) != 0) cpuMaxSpeed = other.cpuMaxSpeed;
+            if ((fields & MEM_AVAILABLE) != 0) memAvailable = other.memAvailable;
+            if ((fields & MEM_USED) != 0) memUsed = other.memUsed;
+            if ((fields & MEM_TOTAL) != 0) memTotal = other.memTotal;
+        }
+
+        /**
+         * Writes the provided fields (without the bitmask).
+         */
+        public void write(@NotNull UFDataOut dos, int fields) throws IOException {
+            if ((fields & RUNNING) != 0) dos.writeBoolean(isRunning);
+            if ((fields & MOTD) != 0) dos.writeLine(strippedMotd);
+            if ((fields & VERSION) != 0) dos.writeLine(version);
+            if ((fields & PLAYERS) != 0) dos.writeInt(currentPlayers);
+            if ((fields & MAX_PLAYERS) != 0) dos.writeInt(maxPlayers);
+            if ((fields & CPU_SPEED) != 0) dos.writeFloat(cpuSpeed);
+            if ((fields & CPU_MAX_SPEED) != 0) dos.writeFloat(cpuMaxSpeed);
+            if ((fields & MEM_AVAILABLE) != 0) dos.writeFloat(memAvailable);
+            if ((fields & MEM_USED) != 0) dos.writeFloat(memUsed);
+            if ((fields & MEM_TOTAL) != 0) dos.writeFloat(memTotal);
+        }
+    }
+
     @Override
     public void close() throws IOException {
         try {
@@ -146,5 +265,6 @@ public class ConServerStatus extends SecondaryConnection {
             AL.warn("Failed to stop thread.", e);
         }
         thread = null;
+        dos = null; // So that the next open starts a new thread, with a full snapshot
     }
 }
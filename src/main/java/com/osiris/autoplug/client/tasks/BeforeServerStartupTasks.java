@@ -51,8 +51,7 @@ public class BeforeServerStartupTasks {
             tasksConfig = new TasksConfig();
 
             // Wait until the main connection stuff is done, so the log isn't a mess
-            while (!ConMain.isDone)
-                Thread.sleep(1000);
+            ConMain.awaitDone();
 
             // Do cool-down check stuff
             boolean isUpdaterCoolDownActive = false;
@@ -114,41 +113,31 @@ public class BeforeServerStartupTasks {
             }
 
 
-            // Start processes
-            if (!isUpdaterCoolDownActive) {
-                selfUpdater.start();
-                while (!selfUpdater.isFinished()) // Wait until the self updater finishes
-                    Thread.sleep(1000);
-            }
-
-            taskWorldsBackup.start();
-            taskPluginsBackup.start();
-            taskServerFilesBackup.start();
-
-            // Wait till backup is done
-            while (!taskWorldsBackup.isFinished() || !taskPluginsBackup.isFinished() || !taskServerFilesBackup.isFinished())
-                Thread.sleep(1000);
-
-            taskGeneral.start();
-
-            taskDailyRestarter.start();
-            taskCustomRestarter.start();
-
-            if (!isUpdaterCoolDownActive) {
-                taskJavaUpdater.start();
-                taskServerUpdater.start();
-                taskPluginsUpdater.start();
-            }
+            // Start processes, as soon as the processes they depend on are finished
+            TaskGraph graph = new TaskGraph()
+                    .setLimit(TaskGraph.Resource.NETWORK, tasksConfig.max_network_tasks.asInt())
+                    .setLimit(TaskGraph.Resource.DISK, tasksConfig.max_disk_tasks.asInt())
+                    .setLimit(TaskGraph.Resource.CPU, tasksConfig.max_cpu_tasks.asInt());
+            // The self-updater may restart AutoPlug, thus everything else waits for it
+            graph.add(selfUpdater, TaskGraph.Resource.NETWORK);
+            graph.add(taskWorldsBackup, TaskGraph.Resource.DISK, selfUpdater);
+            graph.add(taskPluginsBackup, TaskGraph.Resource.DISK, selfUpdater);
+            graph.add(taskServerFilesBackup, TaskGraph.Resource.DISK, selfUpdater);
+            // The directory-cleaner shouldn't delete files that are getting backed up
+            graph.add(taskGeneral, TaskGraph.Resource.DISK, selfUpdater, taskWorldsBackup, taskPluginsBackup, taskServerFilesBackup);
+            graph.add(taskDailyRestarter, TaskGraph.Resource.CPU, selfUpdater);
+            graph.add(taskCustomRestarter, TaskGraph.Resource.CPU, selfUpdater);
+            // Updaters only replace files after the related backup finished
+            graph.add(taskJavaUpdater, TaskGraph.Resource.NETWORK, selfUpdater, taskServerFilesBackup);
+            graph.add(taskServerUpdater, TaskGraph.Resource.NETWORK, selfUpdater, taskServerFilesBackup);
+            graph.add(taskPluginsUpdater, TaskGraph.Resource.NETWORK, selfUpdater, taskPluginsBackup);
+            graph.start().await();
 
             // Wait until the rest is finished
             if (tasksConfig.live_tasks.asBoolean()) {
                 // In this case we have to wait until the displayer thread finishes, because
                 // of some stuff related to the System.out and to avoid duplicate printing of the summary
-                while (displayer.isAlive())
-                    Thread.sleep(1000);
-            } else {
-                while (!manager.isFinished())
-                    Thread.sleep(1000);
+                displayer.join();
             }
 
             // Update the updater global cool-down with current time
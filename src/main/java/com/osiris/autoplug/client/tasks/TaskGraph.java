@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.tasks;
+
+import com.osiris.autoplug.client.monitoring.Metrics;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Runs tasks (threads) as soon as all their dependencies finished,
+ * while limiting how many tasks of the same {@link Resource} class run at the same time. <br>
+ * If more tasks are ready than a resource allows, the one with the longest chain of
+ * dependent tasks goes first, which keeps the overall duration close to the critical path. <br>
+ * Completion is detected by joining the task threads, not by polling.
+ */
+public class TaskGraph {
+    private final Map<Thread, Node> nodes = new LinkedHashMap<>();
+    private final Map<Resource, Integer> limits = new EnumMap<>(Resource.class);
+    private final Map<Resource, Integer> running = new EnumMap<>(Resource.class);
+    private final Map<Resource, PriorityQueue<Node>> ready = new EnumMap<>(Resource.class);
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    private int countFinished;
+    private boolean isStarted;
+
+    public TaskGraph() {
+        for (Resource resource :
+                Resource.values()) {
+            limits.put(resource, Integer.MAX_VALUE);
+            running.put(resource, 0);
+            ready.put(resource, new PriorityQueue<>((n1, n2) -> n2.height - n1.height));
+        }
+    }
+
+    /**
+     * Max amount of tasks of this resource class, that run at the same time.
+     * Values smaller than 1 are treated as unlimited.
+     */
+    public synchronized TaskGraph setLimit(@NotNull Resource resource, int limit) {
+        limits.put(resource, limit < 1 ? Integer.MAX_VALUE : limit);
+        return this;
+    }
+
+    /**
+     * Adds the task, which gets started once all the provided dependencies finished. <br>
+     * Null tasks and dependencies are ignored, which makes optional tasks easier to handle.
+     * Dependencies must be added before their dependents.
+     */
+    public synchronized TaskGraph add(@Nullable Thread task, @NotNull Resource resource, @Nullable Thread... dependencies) {
+        if (task == null) return this;
+        if (isStarted) throw new IllegalStateException("Can't add tasks to an already started graph!");
+        if (nodes.containsKey(task)) throw new IllegalArgumentException("Task '" + task.getName() + "' was already added!");
+        Node node = new Node(task, resource);
+        if (dependencies != null)
+            for (Thread dependency :
+                    dependencies) {
+                if (dependency == null) continue;
+                Node depNode = nodes.get(dependency);
+                if (depNode == null)
+                    throw new IllegalArgumentException("Dependency '" + dependency.getName() + "' of task '" + task.getName() + "' wasn't added yet!");
+                if (depNode.dependents.contains(node)) continue;
+                depNode.dependents.add(node);
+                node.countRemainingDeps++;
+            }
+        nodes.put(task, node);
+        return this;
+    }
+
+    /**
+     * Starts all tasks without dependencies and returns right away. <br>
+     * See {@link #await()}.
+     */
+    public synchronized TaskGraph start() {
+        if (isStarted) throw new IllegalStateException("Graph was already started!");
+        isStarted = true;
+        // Since dependencies are always added before their dependents,
+        // walking the nodes in reverse order visits all dependents first.
+        List<Node> list = new ArrayList<>(nodes.values());
+        for (int i = list.size() - 1; i >= 0; i--) {
+            Node node = list.get(i);
+            for (Node dependent :
+                    node.dependents) {
+                node.height = Math.max(node.height, dependent.height + 1);
+            }
+        }
+        for (Node node :
+                list) {
+            if (node.countRemainingDeps == 0) ready.get(node.resource).add(node);
+        }
+        if (nodes.isEmpty()) done.complete(null);
+        dispatch();
+        return this;
+    }
+
+    /**
+     * Blocks until all tasks finished.
+     */
+    public void await() throws InterruptedException, ExecutionException {
+        done.get();
+    }
+
+    /**
+     * Completed once all tasks finished.
+     */
+    @NotNull
+    public CompletableFuture<Void> getDone() {
+        return done;
+    }
+
+    private synchronized void dispatch() {
+        for (Resource resource :
+                Resource.values()) {
+            PriorityQueue<Node> queue = ready.get(resource);
+            while (!queue.isEmpty() && running.get(resource) < limits.get(resource)) {
+                Node node = queue.poll();
+                running.put(resource, running.get(resource) + 1);
+                Thread watcher = new Thread(() -> {
+                    long start = System.nanoTime();
+                    try {
+                        node.task.start();
+                        node.task.join();
+                    } catch (Exception ignored) {
+                        // The task itself is responsible for reporting its errors
+                    }
+                    Metrics.TASK_DURATION.labels(node.task.getName()).observe((System.nanoTime() - start) / 1e9);
+                    onFinished(node);
+                }, "TaskGraph-" + node.task.getName());
+                watcher.setDaemon(true);
+                watcher.start();
+            }
+        }
+    }
+
+    private synchronized void onFinished(@NotNull Node node) {
+        running.put(node.resource, running.get(node.resource) - 1);
+        for (Node dependent :
+                node.dependents) {
+            if (--dependent.countRemainingDeps == 0)
+                ready.get(dependent.resource).add(dependent);
+        }
+        countFinished++;
+        if (countFinished == nodes.size()) done.complete(null);
+        else dispatch();
+    }
+
+    /**
+     * What a task mostly waits for.
+     */
+    public enum Resource {
+        NETWORK,
+        DISK,
+        CPU
+    }
+
+    private static class Node {
+        private final Thread task;
+        private final Resource resource;
+        private final List<Node> dependents = new ArrayList<>();
+        private int countRemainingDeps;
+        /**
+         * Length of the longest chain of dependents.
+         */
+        private int height;
+
+        private Node(Thread task, Resource resource) {
+            this.task = task;
+            this.resource = resource;
+        }
+    }
+}
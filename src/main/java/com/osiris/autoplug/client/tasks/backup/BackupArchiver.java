@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.tasks.backup;
+
+import com.osiris.autoplug.core.logger.AL;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates the backup zip from a {@link Snapshot} in the background,
+ * uploads it if needed and deletes the snapshot afterwards. <br>
+ * This runs while the server is already online, thus with the lowest thread priority
+ * and throttled by {@link BandwidthLimiter#BACKUPS}.
+ */
+public class BackupArchiver extends Thread {
+    /**
+     * Snapshot directories that are currently getting archived.
+     */
+    private static final Set<File> ACTIVE_SNAPSHOTS = ConcurrentHashMap.newKeySet();
+
+    private final Snapshot snapshot;
+    private final File zipFile;
+    @Nullable
+    private Upload upload;
+    private String rsa;
+    private boolean isDeleteOnComplete;
+
+    public BackupArchiver(String name, @NotNull Snapshot snapshot, @NotNull File zipFile) {
+        super(name);
+        this.snapshot = snapshot;
+        this.zipFile = zipFile;
+        setPriority(Thread.MIN_PRIORITY);
+        ACTIVE_SNAPSHOTS.add(snapshot.getDir().getAbsoluteFile());
+    }
+
+    /**
+     * Archives snapshots inside the provided directory, that were left over
+     * because AutoPlug was stopped before their archiving finished. <br>
+     * Note that these don't get uploaded.
+     *
+     * @param snapshotsDir directory containing the snapshots.
+     * @param backupsDir   directory the zips get created in.
+     * @param zipPrefix    example: 'worlds-backup-'.
+     */
+    public static void archiveLeftovers(@NotNull File snapshotsDir, @NotNull File backupsDir, @NotNull String zipPrefix) {
+        File[] dirs = snapshotsDir.listFiles(File::isDirectory);
+        if (dirs == null) return;
+        for (File dir :
+                dirs) {
+            if (ACTIVE_SNAPSHOTS.contains(dir.getAbsoluteFile())) continue;
+            AL.info("Found left over snapshot at '" + dir + "', archiving it in the background...");
+            new BackupArchiver("BackupArchiver-" + dir.getName(), Snapshot.load(dir),
+                    new File(backupsDir + "/" + zipPrefix + dir.getName() + ".zip")).start();
+        }
+    }
+
+    public BackupArchiver setUpload(@Nullable Upload upload, String rsa, boolean isDeleteOnComplete) {
+        this.upload = upload;
+        this.rsa = rsa;
+        this.isDeleteOnComplete = isDeleteOnComplete;
+        return this;
+    }
+
+    @Override
+    public void run() {
+        try {
+            long start = System.currentTimeMillis();
+            List<File> files = snapshot.getFiles();
+            int countWarnings = 0;
+            BackupZipper zipper = new BackupZipper(zipFile, BandwidthLimiter.BACKUPS);
+            try {
+                for (File file : files) {
+                    zipper.add(file);
+                }
+                zipper.commit();
+            } finally {
+                zipper.close();
+            }
+            for (Exception e :
+                    zipper.getErrors()) {
+                countWarnings++;
+                AL.warn(e);
+            }
+            BackupCatalog.of(zipFile.getParentFile()).add(zipFile, zipper.getCountFiles(), zipper.getSha256());
+            AL.debug(this.getClass(), "Created backup from snapshot to: " + zipFile + " in " + (System.currentTimeMillis() - start) + "ms.");
+
+            if (upload != null) {
+                try {
+                    upload.setLimiter(BandwidthLimiter.BACKUPS);
+                    upload.upload(rsa);
+                    if (isDeleteOnComplete)
+                        zipFile.delete();
+                } catch (Exception e) {
+                    countWarnings++;
+                    AL.warn("Failed to upload " + zipFile.getName() + ".", e);
+                }
+            }
+
+            snapshot.delete();
+            if (countWarnings > 0)
+                AL.info("Finished background archiving of " + zipFile.getName() + " (" + countWarnings + " warnings).");
+            else
+                AL.info("Finished background archiving of " + zipFile.getName() + ".");
+        } catch (Exception e) {
+            AL.warn("Failed to archive snapshot at '" + snapshot.getDir() + "'!", e);
+        } finally {
+            ACTIVE_SNAPSHOTS.remove(snapshot.getDir().getAbsoluteFile());
+        }
+    }
+
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public File getZipFile() {
+        return zipFile;
+    }
+}
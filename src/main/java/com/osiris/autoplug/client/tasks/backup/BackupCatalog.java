@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.tasks.backup;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.osiris.autoplug.core.logger.AL;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.IsoFields;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Index of the backups inside a backup set directory (for example autoplug/backups/worlds),
+ * stored in the catalog.json file of that directory. <br>
+ * Retention and verification work with this index, instead of scanning the directory.
+ */
+public class BackupCatalog {
+    private static final Map<File, BackupCatalog> CATALOGS = new ConcurrentHashMap<>();
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private final File setDir;
+    private final File file;
+    private final List<Entry> entries = new ArrayList<>();
+
+    private BackupCatalog(@NotNull File setDir) {
+        this.setDir = setDir;
+        this.file = new File(setDir, "catalog.json");
+    }
+
+    /**
+     * Returns the catalog of the provided backup set directory.
+     * There is only one instance per directory.
+     */
+    @NotNull
+    public static BackupCatalog of(@NotNull File setDir) {
+        return CATALOGS.computeIfAbsent(setDir.getAbsoluteFile(), dir -> {
+            BackupCatalog catalog = new BackupCatalog(dir);
+            catalog.load();
+            return catalog;
+        });
+    }
+
+    private synchronized void load() {
+        entries.clear();
+        if (file.exists()) {
+            try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+                List<Entry> loaded = GSON.fromJson(reader, new TypeToken<List<Entry>>() {
+                }.getType());
+                if (loaded != null) entries.addAll(loaded);
+            } catch (Exception e) {
+                AL.warn("Failed to read backup catalog at " + file + ", it will be rebuilt.", e);
+            }
+        }
+        sync();
+    }
+
+    /**
+     * Removes entries whose zips don't exist anymore (deleted after upload, or by hand)
+     * and adds zips that are not in the catalog yet (for example ones created by older versions).
+     * Zips added this way have no checksum, which gets stored on their first verification.
+     */
+    public synchronized void sync() {
+        entries.removeIf(e -> !new File(setDir, e.archive).exists());
+        File[] zips = setDir.listFiles((dir, name) -> name.endsWith(".zip"));
+        if (zips != null) {
+            Arrays.sort(zips, Comparator.comparingLong(File::lastModified));
+            for (File zip :
+                    zips) {
+                if (get(zip.getName()) != null) continue;
+                Entry entry = new Entry();
+                entry.archive = zip.getName();
+                entry.created = zip.lastModified();
+                entry.size = zip.length();
+                entry.fileCount = -1;
+                entries.add(entry);
+            }
+        }
+        entries.sort(Comparator.comparingLong(e -> e.created));
+        save();
+    }
+
+    /**
+     * Adds the provided, just created zip. <br>
+     * The parent is the previous backup of this set. All backups are full backups for now,
+     * but the chain allows incremental backups to reference the backup they are based on.
+     */
+    public synchronized Entry add(@NotNull File zip, int fileCount, @Nullable String sha256) {
+        entries.removeIf(e -> e.archive.equals(zip.getName()));
+        Entry entry = new Entry();
+        entry.archive = zip.getName();
+        entry.created = System.currentTimeMillis();
+        entry.size = zip.length();
+        entry.fileCount = fileCount;
+        entry.sha256 = sha256;
+        Entry newest = getNewest();
+        entry.parent = newest == null ? null : newest.archive;
+        entries.add(entry);
+        save();
+        return entry;
+    }
+
+    public synchronized void remove(@NotNull Entry entry) {
+        entries.remove(entry);
+        save();
+    }
+
+    /**
+     * Deletes all backups created before the provided amount of days.
+     *
+     * @return the deleted entries.
+     */
+    @NotNull
+    public synchronized List<Entry> pruneOlderThan(int maxDays) {
+        long oldestAllowed = System.currentTimeMillis() - maxDays * 86400000L;
+        List<Entry> toDelete = new ArrayList<>();
+        for (Entry e :
+                entries) {
+            if (e.created < oldestAllowed) toDelete.add(e);
+        }
+        return delete(toDelete);
+    }
+
+    /**
+     * Grandfather-father-son retention: keeps the newest backup of each of the newest
+     * hourly hours, daily days and weekly weeks that have backups, plus the newest backup overall.
+     * Deletes everything else.
+     *
+     * @return the deleted entries.
+     */
+    @NotNull
+    public synchronized List<Entry> pruneGFS(int hourly, int daily, int weekly) {
+        List<Entry> keep = selectGFS(entries, hourly, daily, weekly, ZoneId.systemDefault());
+        List<Entry> toDelete = new ArrayList<>(entries);
+        toDelete.removeAll(keep);
+        return delete(toDelete);
+    }
+
+    /**
+     * Returns the entries that should be kept by {@link #pruneGFS(int, int, int)}.
+     */
+    @NotNull
+    static List<Entry> selectGFS(@NotNull List<Entry> entries, int hourly, int daily, int weekly, @NotNull ZoneId zone) {
+        List<Entry> newestFirst = new ArrayList<>(entries);
+        newestFirst.sort(Comparator.comparingLong((Entry e) -> e.created).reversed());
+        Set<Entry> keep = new LinkedHashSet<>();
+        if (!newestFirst.isEmpty()) keep.add(newestFirst.get(0));
+        keepNewestPerBucket(newestFirst, hourly, keep, t -> t.truncatedTo(ChronoUnit.HOURS).toString(), zone);
+        keepNewestPerBucket(newestFirst, daily, keep, t -> t.toLocalDate().toString(), zone);
+        keepNewestPerBucket(newestFirst, weekly, keep, t -> t.get(IsoFields.WEEK_BASED_YEAR) + "-" + t.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR), zone);
+        return new ArrayList<>(keep);
+    }
+
+    private static void keepNewestPerBucket(List<Entry> newestFirst, int amount, Set<Entry> keep,
+                                            Function<LocalDateTime, String> bucketOf, ZoneId zone) {
+        Set<String> buckets = new HashSet<>();
+        for (Entry e :
+                newestFirst) {
+            if (buckets.size() >= amount) return;
+            if (buckets.add(bucketOf.apply(LocalDateTime.ofInstant(Instant.ofEpochMilli(e.created), zone))))
+                keep.add(e);
+        }
+    }
+
+    private List<Entry> delete(List<Entry> toDelete) {
+        List<Entry> deleted = new ArrayList<>();
+        for (Entry e :
+                toDelete) {
+            File zip = new File(setDir, e.archive);
+            if (!zip.exists() || zip.delete()) {
+                entries.remove(e);
+                deleted.add(e);
+            } else
+                AL.warn("Failed to delete old backup " + zip);
+        }
+        if (!deleted.isEmpty()) save();
+        return deleted;
+    }
+
+    /**
+     * Saves the catalog to a temporary file first and moves it afterwards,
+     * so that the catalog doesn't get corrupted if AutoPlug stops while writing.
+     */
+    public synchronized void save() {
+        try {
+            File tmp = new File(setDir, file.getName() + ".tmp");
+            setDir.mkdirs();
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+                GSON.toJson(entries, writer);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (Exception e) {
+            AL.warn("Failed to save backup catalog at " + file, e);
+        }
+    }
+
+    @Nullable
+    public synchronized Entry get(@NotNull String archive) {
+        for (Entry e :
+                entries) {
+            if (e.archive.equals(archive)) return e;
+        }
+        return null;
+    }
+
+    @Nullable
+    public synchronized Entry getNewest() {
+        return entries.isEmpty() ? null : entries.get(entries.size() - 1);
+    }
+
+    /**
+     * Returns a copy of all entries, oldest first.
+     */
+    @NotNull
+    public synchronized List<Entry> getEntries() {
+        return new ArrayList<>(entries);
+    }
+
+    public File getSetDir() {
+        return setDir;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public static class Entry {
+        /**
+         * File name of the zip inside the set directory.
+         */
+        public String archive;
+        public long created;
+        public long size;
+        /**
+         * -1 if unknown.
+         */
+        public int fileCount;
+        /**
+         * SHA-256 of the whole zip, null if unknown.
+         */
+        @Nullable
+        public String sha256;
+        /**
+         * Archive name of the previous backup in this set, null if this is the first one.
+         */
+        @Nullable
+        public String parent;
+        /**
+         * Time of the last verification, 0 if never verified.
+         */
+        public long verified;
+        /**
+         * Result of the last verification, null if never verified.
+         */
+        @Nullable
+        public Boolean isRestorable;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.tasks.backup;
+
+import com.osiris.autoplug.client.utils.GD;
+import net.lingala.zip4j.ZipFile;
+import net.lingala.zip4j.model.FileHeader;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Restores single files or folders from backup zips. <br>
+ * Only the zips central directory gets read to find the entries,
+ * and only the requested entries get decompressed,
+ * thus restoring a single region file from a huge worlds backup takes seconds.
+ */
+public class BackupRestorer {
+    public static final File BACKUPS_DIR = new File(GD.WORKING_DIR + "/autoplug/backups");
+    /**
+     * Backup sets, that are the sub-folders of {@link #BACKUPS_DIR}.
+     */
+    public static final String[] SETS = {"worlds", "plugins", "server"};
+
+    /**
+     * Returns all backup zips, newest first.
+     */
+    @NotNull
+    public List<File> listArchives() {
+        List<File> archives = new ArrayList<>();
+        for (String set :
+                SETS) {
+            File[] zips = new File(BACKUPS_DIR, set).listFiles((dir, name) -> name.endsWith(".zip"));
+            if (zips == null) continue;
+            for (File zip :
+                    zips) {
+                archives.add(zip);
+            }
+        }
+        archives.sort(Comparator.comparingLong(File::lastModified).reversed());
+        return archives;
+    }
+
+    /**
+     * @param name the zips file name (the .zip extension is optional),
+     *             or the name of a backup set (worlds, plugins or server) for its newest zip.
+     */
+    @NotNull
+    public File findArchive(@NotNull String name) throws FileNotFoundException {
+        for (String set :
+                SETS) {
+            if (set.equalsIgnoreCase(name)) {
+                for (File archive :
+                        listArchives()) {
+                    if (archive.getParentFile().getName().equals(set)) return archive;
+                }
+                throw new FileNotFoundException("No backups found for set '" + set + "'.");
+            }
+        }
+        if (!name.endsWith(".zip")) name = name + ".zip";
+        for (String set :
+                SETS) {
+            File archive = new File(BACKUPS_DIR + "/" + set + "/" + name);
+            if (archive.exists()) return archive;
+        }
+        throw new FileNotFoundException("Couldn't find backup '" + name + "' in " + BACKUPS_DIR);
+    }
+
+    /**
+     * Returns the entries of the provided zip, read from its central directory.
+     *
+     * @param path if not null, only returns the entries that equal this path, or are inside it.
+     */
+    @NotNull
+    public List<FileHeader> listEntries(@NotNull File archive, @Nullable String path) throws IOException {
+        List<FileHeader> entries = new ArrayList<>();
+        String normalizedPath = path == null ? null : normalize(path);
+        for (FileHeader header :
+                new ZipFile(archive).getFileHeaders()) {
+            if (normalizedPath == null || matches(header.getFileName(), normalizedPath))
+                entries.add(header);
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the directory the entries of this zip originally came from.
+     */
+    @NotNull
+    public File getDefaultTarget(@NotNull File archive) {
+        if (archive.getName().startsWith("plugins-backup-"))
+            return GD.PLUGINS_DIR;
+        return GD.WORKING_DIR;
+    }
+
+    /**
+     * Extracts the provided path (a file or folder) from the zip,
+     * into the target directory. Existing files get replaced.
+     *
+     * @return the amount of restored files.
+     */
+    public int restore(@NotNull File archive, @NotNull String path, @NotNull File targetDir) throws IOException {
+        ZipFile zip = new ZipFile(archive);
+        String normalizedPath = normalize(path);
+        String targetPath = targetDir.getCanonicalPath();
+        int count = 0;
+        for (FileHeader header :
+                zip.getFileHeaders()) {
+            if (header.isDirectory() || !matches(header.getFileName(), normalizedPath)) continue;
+            File target = new File(targetDir, header.getFileName());
+            if (!target.getCanonicalPath().startsWith(targetPath + File.separator))
+                throw new IOException("Entry '" + header.getFileName() + "' would be extracted outside of " + targetPath);
+            zip.extractFile(header, targetDir.getAbsolutePath());
+            count++;
+        }
+        if (count == 0)
+            throw new FileNotFoundException("Couldn't find '" + path + "' in " + archive.getName());
+        return count;
+    }
+
+    private boolean matches(@NotNull String entryName, @NotNull String path) {
+        if (path.isEmpty()) return true;
+        return entryName.equals(path) || entryName.startsWith(path.endsWith("/") ? path : path + "/");
+    }
+
+    @NotNull
+    private String normalize(@NotNull String path) {
+        path = path.trim().replace("\\", "/");
+        while (path.startsWith("./")) path = path.substring(2);
+        while (path.startsWith("/")) path = path.substring(1);
+        return path;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.tasks.backup;
+
+import com.osiris.autoplug.core.logger.AL;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Periodically checks in the background, that the backups in the {@link BackupCatalog}s are still restorable. <br>
+ * Each zip gets streamed once (throttled by {@link BandwidthLimiter#BACKUPS}), which
+ * checks its SHA-256 against the catalog and the CRC of each entry.
+ */
+public class BackupVerifier extends Thread {
+    private final long intervalMs;
+
+    /**
+     * @param intervalHours a backup gets verified again, after this amount of hours passed since its last verification.
+     */
+    public BackupVerifier(int intervalHours) {
+        super("BackupVerifier");
+        this.intervalMs = intervalHours * 3600000L;
+        setPriority(Thread.MIN_PRIORITY);
+        setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+        try {
+            Thread.sleep(300000); // Don't compete with the server startup
+            while (true) {
+                for (String set :
+                        BackupRestorer.SETS) {
+                    File setDir = new File(BackupRestorer.BACKUPS_DIR, set);
+                    if (!setDir.exists()) continue;
+                    BackupCatalog catalog = BackupCatalog.of(setDir);
+                    catalog.sync();
+                    for (BackupCatalog.Entry entry :
+                            catalog.getEntries()) {
+                        if (System.currentTimeMillis() - entry.verified < intervalMs) continue;
+                        verify(catalog, entry);
+                    }
+                }
+                Thread.sleep(3600000);
+            }
+        } catch (InterruptedException ignored) {
+        } catch (Exception e) {
+            AL.warn(e);
+        }
+    }
+
+    /**
+     * Verifies the provided entry and stores the result in the catalog. <br>
+     * Zips without checksum in the catalog get their current checksum stored.
+     *
+     * @return true if the backup is restorable.
+     */
+    public boolean verify(@NotNull BackupCatalog catalog, @NotNull BackupCatalog.Entry entry) throws InterruptedException {
+        File zip = new File(catalog.getSetDir(), entry.archive);
+        if (!zip.exists()) return false;
+        long start = System.currentTimeMillis();
+        boolean isRestorable;
+        String sha256 = null;
+        int fileCount = 0;
+        String error = null;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[65536];
+            try (InputStream in = new DigestInputStream(
+                    BandwidthLimiter.BACKUPS.wrap(new BufferedInputStream(new FileInputStream(zip), buffer.length)), digest);
+                 ZipInputStream zin = new ZipInputStream(in)) {
+                while (zin.getNextEntry() != null) { // Throws ZipException if an entries CRC doesn't match
+                    while (zin.read(buffer) != -1) ;
+                    fileCount++;
+                }
+                while (in.read(buffer) != -1) ; // Central directory, so that the checksum covers the whole file
+            }
+            sha256 = BackupZipper.toHex(digest.digest());
+            isRestorable = entry.sha256 == null || entry.sha256.equals(sha256);
+            if (!isRestorable) error = "checksum mismatch";
+        } catch (Exception e) {
+            if (Thread.currentThread().isInterrupted()) throw new InterruptedException();
+            isRestorable = false;
+            error = e.getMessage();
+        }
+
+        synchronized (catalog) {
+            if (entry.sha256 == null) entry.sha256 = sha256;
+            if (entry.fileCount < 0 && isRestorable) entry.fileCount = fileCount;
+            entry.verified = System.currentTimeMillis();
+            entry.isRestorable = isRestorable;
+            catalog.save();
+        }
+        if (isRestorable)
+            AL.debug(this.getClass(), "Verified backup " + zip + " in " + (System.currentTimeMillis() - start) + "ms.");
+        else
+            AL.warn("Backup " + zip + " is NOT restorable (" + error + ")!");
+        return isRestorable;
+    }
+}
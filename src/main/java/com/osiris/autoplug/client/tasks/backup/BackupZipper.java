@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.tasks.backup;
+
+import com.osiris.autoplug.client.monitoring.Metrics;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes backup zips by streaming the files into them. <br>
+ * Reading the files can be throttled through a {@link BandwidthLimiter}
+ * and files get read in a sequential order (sorted by inode on unix file systems,
+ * which mostly matches their position on disk), instead of directory order. <br>
+ * Entries are named relative to the added files parent directory,
+ * just like zip4j does with addFolder/addFile. <br>
+ * The zip gets written to a temporary .tmp file and only renamed by {@link #commit()},
+ * so that half written or failed zips never appear in the backups directory.
+ * Always {@link #close()} it, which deletes the .tmp file if it wasn't committed.
+ */
+public class BackupZipper implements AutoCloseable {
+    private static final boolean IS_UNIX_FS = FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+
+    private final File zipFile;
+    private final File tmpFile;
+    @Nullable
+    private final BandwidthLimiter limiter;
+    private final MessageDigest digest;
+    private final ZipOutputStream zos;
+    private final byte[] buffer = new byte[65536];
+    private final long startNanos = System.nanoTime();
+    private final List<Exception> errors = new ArrayList<>();
+    private int countFiles;
+    private long countBytes;
+    @Nullable
+    private String sha256;
+    private boolean isClosed;
+    @Nullable
+    private IOException failure;
+
+    /**
+     * @param limiter null to not throttle.
+     */
+    public BackupZipper(@NotNull File zipFile, @Nullable BandwidthLimiter limiter) throws IOException {
+        this.zipFile = zipFile;
+        this.tmpFile = new File(zipFile.getPath() + ".tmp");
+        this.limiter = limiter;
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        // Only the reads get throttled, otherwise each byte would be charged twice
+        OutputStream out = new DigestOutputStream(new FileOutputStream(tmpFile), digest);
+        this.zos = new ZipOutputStream(new BufferedOutputStream(out, buffer.length));
+    }
+
+    /**
+     * Adds the file, or the folder with all its sub-files. <br>
+     * Files that couldn't be opened get skipped and listed in {@link #getErrors()}.
+     *
+     * @throws IOException if writing the zip failed, a file failed while being read (its entry would be truncated,
+     *                     but look valid) or the thread was interrupted, after which the zip can't be committed anymore.
+     */
+    public void add(@NotNull File file) throws IOException {
+        if (failure != null) throw failure;
+        try {
+            addFiles(file);
+        } catch (IOException e) {
+            failure = e;
+            throw e;
+        }
+    }
+
+    private void addFiles(@NotNull File file) throws IOException {
+        Path root = file.toPath();
+        Path base = root.getParent();
+        List<Path> dirs = new ArrayList<>();
+        List<FileEntry> files = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                dirs.add(dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                long inode = 0;
+                if (IS_UNIX_FS)
+                    try {
+                        inode = ((Number) Files.getAttribute(file, "unix:ino", LinkOption.NOFOLLOW_LINKS)).longValue();
+                    } catch (Exception ignored) {
+                    }
+                files.add(new FileEntry(file, inode, attrs.lastModifiedTime().toMillis()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                errors.add(new Exception("Failed to read '" + file + "'.", exc));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        for (Path dir :
+                dirs) {
+            zos.putNextEntry(new ZipEntry(toEntryName(base, dir) + "/"));
+            zos.closeEntry();
+        }
+
+        files.sort(Comparator.comparingLong(e -> e.inode));
+        for (FileEntry e :
+                files) {
+            InputStream in;
+            try {
+                in = Files.newInputStream(e.path);
+            } catch (Exception ex) {
+                errors.add(new Exception("Failed to read '" + e.path + "'.", ex));
+                continue;
+            }
+            if (limiter != null) in = limiter.wrap(in);
+            try {
+                ZipEntry entry = new ZipEntry(toEntryName(base, e.path));
+                entry.setTime(e.lastModified);
+                zos.putNextEntry(entry);
+                while (true) {
+                    int read;
+                    try {
+                        read = in.read(buffer);
+                    } catch (InterruptedIOException ex) {
+                        throw ex;
+                    } catch (IOException ex) { // The entry can't be removed anymore and would restore a truncated file
+                        throw new IOException("Failed to read '" + e.path + "' while adding it to the zip.", ex);
+                    }
+                    if (read == -1) break;
+                    zos.write(buffer, 0, read);
+                    countBytes += read;
+                }
+                zos.closeEntry();
+                countFiles++;
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    @NotNull
+    private String toEntryName(@Nullable Path base, @NotNull Path path) {
+        Path relative = base == null ? path.getFileName() : base.relativize(path);
+        return relative.toString().replace(File.separatorChar, '/');
+    }
+
+    /**
+     * Finishes the zip and renames it to its final name. Call this only once all files were added successfully.
+     */
+    public void commit() throws IOException {
+        if (isClosed) throw new IOException("Zip '" + zipFile + "' was already closed.");
+        if (failure != null) throw new IOException("Zip '" + zipFile + "' failed and can't be committed.", failure);
+        isClosed = true;
+        try {
+            zos.close();
+            sha256 = toHex(digest.digest());
+            Files.move(tmpFile.toPath(), zipFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmpFile.toPath());
+            sha256 = null;
+            throw e;
+        }
+        String type = getType(zipFile);
+        Metrics.BACKUP_DURATION.labels(type).observe((System.nanoTime() - startNanos) / 1e9);
+        Metrics.BACKUP_SIZE.labels(type).observe(zipFile.length());
+    }
+
+    /**
+     * Does nothing if already committed, otherwise discards the zip by deleting the .tmp file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (isClosed) return;
+        isClosed = true;
+        try {
+            zos.close();
+        } catch (IOException ignored) {
+            // Gets deleted anyway
+        } finally {
+            Files.deleteIfExists(tmpFile.toPath());
+        }
+    }
+
+    /**
+     * Example: 'worlds' for 'worlds-backup-2021-05-01-12.00.zip'.
+     */
+    @NotNull
+    private static String getType(@NotNull File zipFile) {
+        String name = zipFile.getName();
+        int i = name.indexOf("-backup");
+        return i > 0 ? name.substring(0, i) : "other";
+    }
+
+    public File getZipFile() {
+        return zipFile;
+    }
+
+    /**
+     * SHA-256 of the whole zip as hex string, computed while writing it.
+     * Only available after {@link #commit()}.
+     */
+    @Nullable
+    public String getSha256() {
+        return sha256;
+    }
+
+    @NotNull
+    public static String toHex(@NotNull byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    public List<Exception> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Amount of added files (folders not included).
+     */
+    public int getCountFiles() {
+        return countFiles;
+    }
+
+    /**
+     * Amount of uncompressed bytes added.
+     */
+    public long getCountBytes() {
+        return countBytes;
+    }
+
+    private static class FileEntry {
+        private final Path path;
+        private final long inode;
+        private final long lastModified;
+
+        private FileEntry(Path path, long inode, long lastModified) {
+            this.path = path;
+            this.inode = inode;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.tasks.backup;
+
+import com.osiris.autoplug.core.logger.AL;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+
+/**
+ * Token bucket on bytes, that limits the disk/network usage of
+ * backups running next to a live server. <br>
+ * If adaptive, the rate gets halved every time the server lags
+ * and slowly recovers once the server is fine again.
+ */
+public class BandwidthLimiter {
+    /**
+     * Shared by all background archivers and uploads,
+     * so that together they never exceed the limit.
+     */
+    public static final BandwidthLimiter BACKUPS = new BandwidthLimiter();
+
+    private static final double MIN_FACTOR = 0.05;
+    private static final long RECOVERY_INTERVAL_MS = 10000;
+
+    private long maxBytesPerSecond = 0; // 0 means unlimited
+    private boolean isAdaptive = true;
+    private double factor = 1.0;
+    private double tokens = 0;
+    private long lastRefillNanos = System.nanoTime();
+    private long lastLagMs = 0;
+    private long lastRecoveryMs = 0;
+
+    /**
+     * @param maxBytesPerSecond 0 or less to disable the limit.
+     */
+    public synchronized BandwidthLimiter setMaxBytesPerSecond(long maxBytesPerSecond) {
+        this.maxBytesPerSecond = Math.max(0, maxBytesPerSecond);
+        return this;
+    }
+
+    public synchronized BandwidthLimiter setAdaptive(boolean adaptive) {
+        isAdaptive = adaptive;
+        if (!adaptive) factor = 1.0;
+        return this;
+    }
+
+    /**
+     * Blocks until the provided amount of bytes may be read/written.
+     */
+    public void acquire(int bytes) throws InterruptedIOException {
+        long sleepMs;
+        synchronized (this) {
+            if (maxBytesPerSecond <= 0) return;
+            long now = System.nanoTime();
+            double rate = getCurrentBytesPerSecond();
+            // Allow a burst of at most one second
+            tokens = Math.min(rate, tokens + rate * ((now - lastRefillNanos) / 1_000_000_000.0));
+            lastRefillNanos = now;
+            tokens -= bytes; // Can go negative, which means we have to wait until that debt is paid
+            if (tokens >= 0) return;
+            sleepMs = (long) ((-tokens / rate) * 1000);
+        }
+        if (sleepMs <= 0) return;
+        try {
+            Thread.sleep(sleepMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for bandwidth.");
+        }
+    }
+
+    /**
+     * Returns the current limit, which may be lower than the configured one,
+     * if the server was lagging recently.
+     */
+    public synchronized double getCurrentBytesPerSecond() {
+        if (isAdaptive && factor < 1.0) {
+            long now = System.currentTimeMillis();
+            if (now - lastLagMs > RECOVERY_INTERVAL_MS && now - lastRecoveryMs > RECOVERY_INTERVAL_MS) {
+                factor = Math.min(1.0, factor + 0.1);
+                lastRecoveryMs = now;
+            }
+        }
+        return maxBytesPerSecond * factor;
+    }
+
+    /**
+     * Halves the current rate (if adaptive).
+     */
+    public synchronized void onServerLag() {
+        if (!isAdaptive || maxBytesPerSecond <= 0) return;
+        lastLagMs = System.currentTimeMillis();
+        if (factor > MIN_FACTOR) {
+            factor = Math.max(MIN_FACTOR, factor / 2);
+            AL.debug(this.getClass(), "Server is lagging, reduced backup bandwidth to " + (long) (maxBytesPerSecond * factor / 1000000) + "MB/s.");
+        }
+    }
+
+    /**
+     * Listener for the servers output. Minecraft logs "Can't keep up!"
+     * when a tick took way too long.
+     */
+    public void onServerOutput(String line) {
+        if (line != null && line.contains("Can't keep up!"))
+            onServerLag();
+    }
+
+    @NotNull
+    public InputStream wrap(@NotNull InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                acquire(1);
+                return super.read();
+            }
+
+            @Override
+            public int read(@NotNull byte[] b, int off, int len) throws IOException {
+                int read = super.read(b, off, len);
+                if (read > 0) acquire(read);
+                return read;
+            }
+        };
+    }
+
+    @NotNull
+    public OutputStream wrap(@NotNull OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                acquire(1);
+                out.write(b);
+            }
+
+            @Override
+            public void write(@NotNull byte[] b, int off, int len) throws IOException {
+                acquire(len);
+                out.write(b, off, len);
+            }
+        };
+    }
+}
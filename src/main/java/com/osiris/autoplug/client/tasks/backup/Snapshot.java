@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.tasks.backup;
+
+import com.osiris.autoplug.core.logger.AL;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.SystemUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A point-in-time copy of the files that should get backed up. <br>
+ * The copy is created via reflinks (copy-on-write clones on btrfs, XFS, bcachefs),
+ * hardlinks or regular copies, in this order. <br>
+ * Creating a snapshot via reflinks only takes a few milliseconds,
+ * which allows starting the server directly after and archiving the snapshot in the background. <br>
+ * Hardlinks are only used for files matching the provided glob patterns,
+ * because they are only safe for files that get replaced instead of rewritten in place.
+ */
+public class Snapshot {
+    private final File dir;
+    private final List<PathMatcher> hardlinkMatchers = new ArrayList<>();
+    private final List<File> files = new ArrayList<>();
+    private final List<Exception> errors = new ArrayList<>();
+    private boolean isReflinkSupported = SystemUtils.IS_OS_LINUX;
+    private boolean isHardlinkSupported = true;
+    private int countReflinked;
+    private int countHardlinked;
+    private int countCopied;
+
+    /**
+     * @param dir               the directory the snapshot gets created in.
+     *                          Each file/folder to back up will be placed directly inside it.
+     * @param hardlinkPatterns  glob patterns, matched against the path that starts with the backed up file/folders name
+     *                          (examples: 'world/level.dat' or '*.jar').
+     */
+    public Snapshot(@NotNull File dir, @NotNull List<String> hardlinkPatterns) {
+        this.dir = dir;
+        FileSystem fs = FileSystems.getDefault();
+        for (String pattern :
+                hardlinkPatterns) {
+            try {
+                hardlinkMatchers.add(fs.getPathMatcher("glob:" + pattern));
+            } catch (Exception e) {
+                AL.warn("Invalid hardlink pattern '" + pattern + "'!", e);
+            }
+        }
+    }
+
+    /**
+     * Loads an already existing snapshot, for example one that was left over,
+     * because AutoPlug was stopped before it could be archived.
+     */
+    @NotNull
+    public static Snapshot load(@NotNull File dir) {
+        Snapshot snapshot = new Snapshot(dir, new ArrayList<>());
+        File[] children = dir.listFiles();
+        if (children != null)
+            for (File f : children) {
+                snapshot.files.add(f);
+            }
+        return snapshot;
+    }
+
+    /**
+     * Creates the snapshot for the provided files and folders.
+     * Files that couldn't be added get listed in {@link #getErrors()}.
+     */
+    @NotNull
+    public Snapshot create(@NotNull List<File> sources) throws IOException {
+        if (dir.exists()) FileUtils.deleteDirectory(dir);
+        if (!dir.mkdirs()) throw new IOException("Failed to create snapshot directory at: " + dir.getAbsolutePath());
+        for (File source :
+                sources) {
+            if (!source.exists()) continue;
+            File target = new File(dir, source.getName());
+            for (int i = 1; target.exists(); i++) { // Same name from the include list for example
+                target = new File(dir, source.getName() + "_" + i);
+            }
+            try {
+                if (isReflinkSupported && reflink(source, target)) {
+                    countReflinked++;
+                } else {
+                    linkOrCopy(source.toPath(), target.toPath());
+                }
+                files.add(target);
+            } catch (Exception e) {
+                errors.add(new Exception("Failed to add '" + source + "' to snapshot.", e));
+            }
+        }
+        AL.debug(this.getClass(), "Created snapshot at " + dir + " with method " + getMethod()
+                + " (reflinked: " + countReflinked + " hardlinked: " + countHardlinked + " copied: " + countCopied + ").");
+        return this;
+    }
+
+    /**
+     * Clones the whole file/folder via 'cp --reflink=always'. <br>
+     * Java has no access to the FICLONE ioctl, but cp uses exactly that.
+     *
+     * @return true if successful. False if the file system doesn't support reflinks.
+     */
+    private boolean reflink(@NotNull File source, @NotNull File target) throws InterruptedException {
+        try {
+            Process p = new ProcessBuilder("cp", "--reflink=always", "-R", "--preserve=timestamps",
+                    source.getAbsolutePath(), target.getAbsolutePath())
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.appendTo(new File("/dev/null")))
+                    .start();
+            if (p.waitFor() == 0) return true;
+        } catch (IOException e) {
+            AL.debug(this.getClass(), "Failed to execute cp: " + e.getMessage());
+        }
+        // Not supported, thus remove partially created files and never try again for this snapshot
+        isReflinkSupported = false;
+        FileUtils.deleteQuietly(target);
+        AL.debug(this.getClass(), "Reflinks not supported for " + source + ". Falling back to hardlinks/copies.");
+        return false;
+    }
+
+    private void linkOrCopy(@NotNull Path sourceRoot, @NotNull Path targetRoot) throws IOException {
+        Path relativeBase = sourceRoot.getParent();
+        Files.walkFileTree(sourceRoot, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(targetRoot.resolve(sourceRoot.relativize(dir)));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                Path target = targetRoot.resolve(sourceRoot.relativize(file));
+                try {
+                    if (isHardlinkSupported && isHardlinkAllowed(relativeBase == null ? file : relativeBase.relativize(file))) {
+                        try {
+                            Files.createLink(target, file);
+                            countHardlinked++;
+                            return FileVisitResult.CONTINUE;
+                        } catch (UnsupportedOperationException | IOException e) {
+                            // For example because the snapshot is on another file system
+                            isHardlinkSupported = false;
+                            AL.debug(Snapshot.class, "Hardlinks not supported (" + e.getMessage() + "). Falling back to copies.");
+                        }
+                    }
+                    Files.copy(file, target, StandardCopyOption.COPY_ATTRIBUTES);
+                    countCopied++;
+                } catch (Exception e) {
+                    errors.add(new Exception("Failed to add '" + file + "' to snapshot.", e));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                errors.add(new Exception("Failed to add '" + file + "' to snapshot.", exc));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private boolean isHardlinkAllowed(@NotNull Path relativePath) {
+        for (PathMatcher matcher :
+                hardlinkMatchers) {
+            if (matcher.matches(relativePath)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Deletes the snapshot. Hardlinked source files are not affected by this.
+     */
+    public void delete() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    /**
+     * Returns the fastest method that was used to create this snapshot.
+     */
+    @NotNull
+    public Method getMethod() {
+        if (countReflinked > 0) return Method.REFLINK;
+        if (countHardlinked > 0) return Method.HARDLINK;
+        return Method.COPY;
+    }
+
+    public File getDir() {
+        return dir;
+    }
+
+    /**
+     * The top level files/folders inside this snapshot.
+     */
+    public List<File> getFiles() {
+        return files;
+    }
+
+    public List<Exception> getErrors() {
+        return errors;
+    }
+
+    public int getCountReflinked() {
+        return countReflinked;
+    }
+
+    public int getCountHardlinked() {
+        return countHardlinked;
+    }
+
+    public int getCountCopied() {
+        return countCopied;
+    }
+
+    public enum Method {
+        REFLINK, HARDLINK, COPY
+    }
+}
@@ -19,18 +19,12 @@ import com.osiris.autoplug.core.logger.AL;
 import com.osiris.betterthread.BetterThread;
 import com.osiris.betterthread.BetterThreadManager;
 import com.osiris.betterthread.BetterWarning;
-import net.lingala.zip4j.ZipFile;
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.filefilter.AgeFileFilter;
-import org.apache.commons.lang.time.DateUtils;
 
 import java.io.File;
 import java.text.SimpleDateFormat;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
 
 public class TaskServerFilesBackup extends BetterThread {
@@ -80,28 +74,34 @@ public class TaskServerFilesBackup extends BetterThread {
         String server_backup_dest = autoplug_backups_server.getAbsolutePath() + "/server-files-backup-" + formattedDate + ".zip";
         int max_days_server = config.backup_server_files_max_days.asInt();
 
-        //Removes files older than user defined days
-        if (max_days_server <= 0) {
+        //Removes old backups, based on the catalog
+        BackupCatalog catalog = BackupCatalog.of(autoplug_backups_server);
+        catalog.sync();
+        if (config.backup_retention_gfs.asBoolean()) {
+            setStatus("Deleting old backups (GFS retention)...");
+            int deleted_files = catalog.pruneGFS(config.backup_retention_gfs_hourly.asInt(),
+                    config.backup_retention_gfs_daily.asInt(),
+                    config.backup_retention_gfs_weekly.asInt()).size();
+            setStatus("Deleting old backups (GFS retention)... Deleted: " + deleted_files + " zips");
+        } else if (max_days_server <= 0) {
             setStatus("Skipping delete of older backups...");
         } else {
-            Date oldestAllowedFileDate = DateUtils.addDays(new Date(), -max_days_server); //minus days from current date
-            Iterator<File> filesToDelete = FileUtils.iterateFiles(autoplug_backups_server, new AgeFileFilter(oldestAllowedFileDate), null);
-            //if deleting subdirs, replace null above with TrueFileFilter.INSTANCE
-            int deleted_files = 0;
-            while (filesToDelete.hasNext()) {
-                deleted_files++;
-                FileUtils.deleteQuietly(filesToDelete.next());
-                setStatus("Deleting backups older than " + max_days_server + " days... Deleted: " + deleted_files + " zips");
-            }  //I don't want an exception if a file is not deleted. Otherwise use filesToDelete.next().delete() in a try/catch
+            int deleted_files = catalog.pruneOlderThan(max_days_server).size();
             setStatus("Deleting backups older than " + max_days_server + " days... Deleted: " + deleted_files + " zips");
         }
         Thread.sleep(1000);
 
 
+        // Limits everything that runs next to the live server (background archiving and uploads)
+        BandwidthLimiter.BACKUPS.setMaxBytesPerSecond(config.backup_throttle.asBoolean() ? config.backup_throttle_max_mb_per_second.asInt() * 1000000L : 0)
+                .setAdaptive(config.backup_throttle_adaptive.asBoolean());
+        // Archive snapshots that were left over, because AutoPlug was stopped before their archiving finished
+        BackupArchiver.archiveLeftovers(new File(autoplug_backups_server + "/.snapshots"), autoplug_backups_server, "server-files-backup-");
+
         if (config.backup_server_files.asBoolean()) {
             setStatus("Creating backup zip...");
             List<File> serverFiles = new FileManager().serverFiles();
-            ZipFile zip = new ZipFile(server_backup_dest);
+            File zip = new File(server_backup_dest);
 
             if (config.backup_server_files_exclude.asBoolean()) {
                 List<File> copyServerFiles = new ArrayList<>(serverFiles);
@@ -137,19 +137,52 @@ public class TaskServerFilesBackup extends BetterThread {
 
             setMax(serverFiles.size());
 
+            if (config.backup_snapshot.asBoolean()) {
+                setStatus("Creating snapshot...");
+                long start = System.currentTimeMillis();
+                Snapshot snapshot = new Snapshot(new File(autoplug_backups_server + "/.snapshots/" + formattedDate),
+                        config.backup_snapshot_hardlink_list.asStringList())
+                        .create(serverFiles);
+                for (Exception e :
+                        snapshot.getErrors()) {
+                    getWarnings().add(new BetterWarning(this, e));
+                }
+                BackupArchiver archiver = new BackupArchiver("ServerFilesBackup-Archiver", snapshot, new File(server_backup_dest));
+                if (config.backup_server_files_upload.asBoolean())
+                    archiver.setUpload(new Upload(config.backup_server_files_upload_host.asString(),
+                                    config.backup_server_files_upload_port.asInt(),
+                                    config.backup_server_files_upload_user.asString(),
+                                    config.backup_server_files_upload_password.asString(),
+                                    config.backup_server_files_upload_path.asString(),
+                                    archiver.getZipFile()),
+                            config.backup_server_files_upload_rsa.asString(),
+                            config.backup_server_files_upload_delete_on_complete.asBoolean());
+                archiver.start();
+                finish("Created snapshot (" + snapshot.getMethod() + ") in " + (System.currentTimeMillis() - start) + "ms, archiving in background.");
+                return;
+            }
+
             //Add each file to the zip
-            for (File file : serverFiles) {
-                setStatus("Backing up server-files... " + file.getName());
-                try {
-                    if (file.isDirectory())
-                        zip.addFolder(file);
-                    else
-                        zip.addFile(file);
-                } catch (Exception e) {
-                    getWarnings().add(new BetterWarning(this, e, "Failed to add " + file.getName() + " to zip."));
+            BackupZipper zipper = new BackupZipper(zip, null); // Not throttled, since the server is offline
+            try {
+                for (File file : serverFiles) {
+                    setStatus("Backing up server-files... " + file.getName());
+                    try {
+                        zipper.add(file);
+                    } catch (Exception e) {
+                        getWarnings().add(new BetterWarning(this, e, "Failed to add " + file.getName() + " to zip."));
+                    }
+                    step();
                 }
-                step();
+                zipper.commit();
+            } finally {
+                zipper.close();
+            }
+            for (Exception e :
+                    zipper.getErrors()) {
+                getWarnings().add(new BetterWarning(this, e));
             }
+            catalog.add(zip, zipper.getCountFiles(), zipper.getSha256());
 
             //Upload
             if (config.backup_server_files_upload.asBoolean()) {
@@ -161,15 +194,14 @@ public class TaskServerFilesBackup extends BetterThread {
                         config.backup_server_files_upload_user.asString(),
                         config.backup_server_files_upload_password.asString(),
                         config.backup_server_files_upload_path.asString(),
-                        zip.getFile());
+                        zip);
 
                 String rsa = config.backup_server_files_upload_rsa.asString();
                 try {
-                    if (rsa == null || rsa.trim().isEmpty()) upload.ftps();
-                    else upload.sftp(rsa.trim());
+                    upload.upload(rsa);
 
                     if (config.backup_server_files_upload_delete_on_complete.asBoolean())
-                        zip.getFile().delete();
+                        zip.delete();
                 } catch (Exception e) {
                     getWarnings().add(new BetterWarning(this, e, "Failed to upload server-files backup."));
                 }
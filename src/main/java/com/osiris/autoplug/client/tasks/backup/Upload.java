@@ -14,8 +14,11 @@ import org.apache.commons.net.ftp.FTP;
 import org.apache.commons.net.ftp.FTPReply;
 import org.apache.commons.net.ftp.FTPSClient;
 
+import org.jetbrains.annotations.Nullable;
+
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.InputStream;
 import java.io.PrintWriter;
 import java.util.Base64;
 
@@ -26,6 +29,8 @@ public class Upload {
     private final String host, user, password, path;
     private final int port;
     private final File zipFile;
+    @Nullable
+    private BandwidthLimiter limiter;
 
     public Upload(String host, int port, String user, String password, String path, File zipFile) {
         this.host = host;
@@ -37,7 +42,29 @@ public class Upload {
         this.zipFile = zipFile;
     }
 
-    public void sftp(String rsa) throws JSchException, SftpException {
+    /**
+     * Throttles the upload, null to not throttle.
+     */
+    public Upload setLimiter(@Nullable BandwidthLimiter limiter) {
+        this.limiter = limiter;
+        return this;
+    }
+
+    private InputStream openZipFileStream() throws Exception {
+        InputStream in = new FileInputStream(zipFile);
+        if (limiter != null) in = limiter.wrap(in);
+        return in;
+    }
+
+    /**
+     * Uploads via SFTP if a rsa key is provided, otherwise via FTPS.
+     */
+    public void upload(String rsa) throws Exception {
+        if (rsa == null || rsa.trim().isEmpty()) ftps();
+        else sftp(rsa.trim());
+    }
+
+    public void sftp(String rsa) throws Exception {
         JSch jSch = new JSch();
 
         //HostKey verification
@@ -53,7 +80,9 @@ public class Upload {
         channel.connect();
 
         //Upload
-        channel.put(zipFile.getPath(), path + this.zipFile.getName());
+        try (InputStream zipFileStream = openZipFileStream()) {
+            channel.put(zipFileStream, path + this.zipFile.getName());
+        }
 
         //Disconnect
         channel.exit();
@@ -62,8 +91,6 @@ public class Upload {
 
     public void ftps() throws Exception {
 
-        FileInputStream zipFileStream = new FileInputStream(zipFile);
-
         FTPSClient ftps = new FTPSClient();
         ftps.setConnectTimeout(5000);
 
@@ -82,8 +109,10 @@ public class Upload {
         ftps.enterLocalPassiveMode();
 
         //Upload
-        if (!ftps.storeFile(path + zipFile.getName(), zipFileStream))
-            throw new Exception("Exception in uploading to FTPS Server.");
+        try (InputStream zipFileStream = openZipFileStream()) {
+            if (!ftps.storeFile(path + zipFile.getName(), zipFileStream))
+                throw new Exception("Exception in uploading to FTPS Server.");
+        }
         ftps.logout();
         ftps.disconnect();
     }
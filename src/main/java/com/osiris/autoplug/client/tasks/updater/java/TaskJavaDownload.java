@@ -8,11 +8,12 @@
 
 package com.osiris.autoplug.client.tasks.updater.java;
 
+import com.osiris.autoplug.client.monitoring.Metrics;
+import com.osiris.autoplug.client.utils.GD;
 import com.osiris.autoplug.core.logger.AL;
 import com.osiris.betterthread.BetterThread;
 import com.osiris.betterthread.BetterThreadManager;
 import com.osiris.betterthread.BetterWarning;
-import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
@@ -65,7 +66,8 @@ public class TaskJavaDownload extends BetterThread {
         Request request = new Request.Builder().url(url)
                 .header("User-Agent", "AutoPlug Client/" + new Random().nextInt() + " - https://autoplug.one")
                 .build();
-        Response response = new OkHttpClient().newCall(request).execute();
+        long startNanos = System.nanoTime();
+        Response response = GD.getHttpClient().newCall(request).execute();
         ResponseBody body = null;
         try {
             if (response.code() != 200)
@@ -141,6 +143,7 @@ public class TaskJavaDownload extends BetterThread {
                 bout.write(data, 0, x);
             }
 
+            Metrics.recordDownload(downloadedFileSize, startNanos);
             setStatus("Downloaded " + fileName + " (" + downloadedFileSize / (1024 * 1024) + "mb/" + completeFileSize / (1024 * 1024) + "mb)");
             bout.close();
             in.close();
@@ -8,12 +8,12 @@
 
 package com.osiris.autoplug.client.tasks.updater.plugins;
 
+import com.osiris.autoplug.client.monitoring.Metrics;
 import com.osiris.autoplug.client.tasks.updater.plugins.search.SearchResult;
 import com.osiris.autoplug.client.utils.GD;
 import com.osiris.autoplug.core.logger.AL;
 import com.osiris.betterthread.BetterThread;
 import com.osiris.betterthread.BetterThreadManager;
-import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
@@ -132,7 +132,8 @@ public class TaskPluginDownload extends BetterThread {
                 .header("User-Agent", "AutoPlug Client/" + new Random().nextInt() + " - https://autoplug.one")
                 .build();
 
-        Response response = new OkHttpClient().newCall(request).execute();
+        long startNanos = System.nanoTime();
+        Response response = GD.getHttpClient().newCall(request).execute();
         ResponseBody body = null;
         try {
             if (response.code() != 200)
@@ -170,6 +171,7 @@ public class TaskPluginDownload extends BetterThread {
                 bout.write(data, 0, x);
             }
 
+            Metrics.recordDownload(downloadedFileSize, startNanos);
             setStatus("Downloaded " + fileName + " (" + downloadedFileSize / 1024 + "kb/" + completeFileSize / 1024 + "kb)");
             bout.close();
             in.close();
@@ -19,7 +19,12 @@ import java.util.function.Consumer;
 public class AsyncInputStream {
     private final InputStream inputStream;
     private final Thread thread;
+    /**
+     * Listeners get executed directly by the reading thread, thus they must be fast and never block.
+     * Use {@link #addSink(String, int, BufferedLineSink.OverflowPolicy, Consumer)} for slow consumers.
+     */
     public List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+    private final List<BufferedLineSink> sinks = new CopyOnWriteArrayList<>();
 
     public AsyncInputStream(InputStream inputStream) {
         this.inputStream = inputStream;
@@ -38,7 +43,26 @@ public class AsyncInputStream {
                 System.err.println("Error in thread for object '" + o + "' Details:");
                 e.printStackTrace();
             }
-        });
+            for (BufferedLineSink sink :
+                    sinks) {
+                // Give the sink max. 5 seconds to deliver the remaining lines before stopping it
+                for (int i = 0; i < 50 && sink.getSize() > 0; i++) {
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException ex) {
+                        break;
+                    }
+                }
+                sink.close();
+            }
+        }, "Server-Output-Reader");
+    }
+
+    /**
+     * Starts reading the stream. <br>
+     * Add the listeners and sinks before, since lines read without them are lost.
+     */
+    public void start() {
         thread.start();
     }
 
@@ -50,6 +74,29 @@ public class AsyncInputStream {
         return thread;
     }
 
+    /**
+     * Adds a consumer that runs in its own thread, with a bounded buffer between it and the reading thread.
+     * Thus a slow consumer can never block the reading of the stream.
+     */
+    public BufferedLineSink addSink(String name, int capacity, BufferedLineSink.OverflowPolicy policy, Consumer<String> consumer) {
+        BufferedLineSink sink = registerSink(new BufferedLineSink(name, capacity, policy, consumer));
+        listeners.add(sink::offer);
+        return sink;
+    }
+
+    /**
+     * Registers a sink that gets fed by a listener (for example with modified lines),
+     * so that it gets closed together with this stream and is listed in {@link #getSinks()}.
+     */
+    public BufferedLineSink registerSink(BufferedLineSink sink) {
+        sinks.add(sink);
+        return sink;
+    }
+
+    public List<BufferedLineSink> getSinks() {
+        return sinks;
+    }
+
     /**
      * Returns the list of listeners. <br>
      * Each listener listens for write line events. <br>
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.utils;
+
+import com.osiris.autoplug.client.monitoring.Metrics;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Bounded ring buffer of lines, with its own consumer thread. <br>
+ * {@link #offer(String)} never blocks, thus a slow consumer (terminal, network)
+ * can never block the thread that produces the lines. If the buffer is full,
+ * lines get dropped according to the {@link OverflowPolicy} and counted.
+ */
+public class BufferedLineSink {
+    private final String name;
+    private final OverflowPolicy policy;
+    private final Consumer<String> consumer;
+    private final String[] lines;
+    private final int[] repeats;
+    private final AtomicLong countDropped = new AtomicLong();
+    private final AtomicLong countDelivered = new AtomicLong();
+    private final LongAdder metricLines;
+    private final LongAdder metricDropped;
+    private final Thread thread;
+    private int head; // Index of the oldest line
+    private int size;
+    private long skipped; // Lines not yet reported to the consumer (COALESCE only)
+
+    /**
+     * @param capacity max amount of lines in the buffer.
+     * @param consumer gets called for each line, from this sinks own thread.
+     */
+    public BufferedLineSink(@NotNull String name, int capacity, @NotNull OverflowPolicy policy, @NotNull Consumer<String> consumer) {
+        this.name = name;
+        this.policy = policy;
+        this.consumer = consumer;
+        this.lines = new String[Math.max(1, capacity)];
+        this.repeats = new int[lines.length];
+        this.metricLines = Metrics.CONSOLE_LINES.labels(name);
+        this.metricDropped = Metrics.CONSOLE_DROPPED_LINES.labels(name);
+        this.thread = new Thread(this::consume, "Sink-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Adds the line to the buffer. Never blocks.
+     */
+    public synchronized void offer(@NotNull String line) {
+        metricLines.increment();
+        if (policy == OverflowPolicy.COALESCE && size > 0) {
+            int newest = (head + size - 1) % lines.length;
+            if (line.equals(lines[newest])) {
+                repeats[newest]++;
+                return;
+            }
+        }
+        if (size == lines.length) {
+            countDropped.incrementAndGet();
+            metricDropped.increment();
+            if (policy == OverflowPolicy.DROP_OLDEST) {
+                lines[head] = null;
+                head = (head + 1) % lines.length;
+                size--;
+            } else { // COALESCE: Keep what we have and report the amount of skipped lines later
+                skipped++;
+                return;
+            }
+        }
+        int tail = (head + size) % lines.length;
+        lines[tail] = line;
+        repeats[tail] = 1;
+        size++;
+        notifyAll();
+    }
+
+    private void consume() {
+        while (true) {
+            String line;
+            int repeat;
+            long skippedLines = 0;
+            synchronized (this) {
+                while (size == 0) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                line = lines[head];
+                repeat = repeats[head];
+                lines[head] = null;
+                head = (head + 1) % lines.length;
+                size--;
+                if (size == 0 && skipped > 0) {
+                    skippedLines = skipped;
+                    skipped = 0;
+                }
+            }
+            try {
+                consumer.accept(repeat > 1 ? line + " [x" + repeat + "]" : line);
+                countDelivered.incrementAndGet();
+                if (skippedLines > 0)
+                    consumer.accept("[AutoPlug] Skipped " + skippedLines + " lines, because '" + name + "' couldn't keep up.");
+            } catch (Exception e) {
+                System.err.println("Error in sink '" + name + "' Details:");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Amount of lines that were dropped because the buffer was full.
+     */
+    public long getCountDropped() {
+        return countDropped.get();
+    }
+
+    public long getCountDelivered() {
+        return countDelivered.get();
+    }
+
+    public synchronized int getSize() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return lines.length;
+    }
+
+    /**
+     * Stops the consumer thread. Lines that are still in the buffer are lost.
+     */
+    public void close() {
+        thread.interrupt();
+    }
+
+    public enum OverflowPolicy {
+        /**
+         * Drops the oldest lines, so that the consumer always gets the latest output.
+         */
+        DROP_OLDEST,
+        /**
+         * Merges consecutive identical lines into one (with a repeat count)
+         * and if the buffer is still full, keeps the buffered lines and reports the amount of skipped lines, once the buffer was emptied.
+         */
+        COALESCE
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Bounded ring of the most recent console lines, each with its own sequence number. <br>
+ * Lines are either stored as Strings on the heap, or UTF-8 encoded in a direct (off-heap) {@link ByteBuffer},
+ * which keeps large histories out of the garbage collectors way. <br>
+ * When full, the oldest lines get overwritten. <br>
+ * All methods synchronize on the instance, thus locking it blocks adding lines.
+ */
+public class ConsoleHistory {
+    private final int maxLines;
+    private final String[] heapLines; // null if off-heap
+    private final ByteBuffer buffer; // null if on heap
+    private final int[] offsets;
+    private final int[] lengths;
+    private long firstSeq = 0; // Sequence number of the oldest line
+    private long nextSeq = 0; // Sequence number of the next added line
+    private int writePos = 0; // Off-heap only
+
+    /**
+     * @param maxLines      max amount of lines.
+     * @param offHeapBytes  if bigger than 0, lines get stored in a direct buffer of this size,
+     *                      otherwise on the heap.
+     */
+    public ConsoleHistory(int maxLines, int offHeapBytes) {
+        this.maxLines = Math.max(1, maxLines);
+        if (offHeapBytes > 0) {
+            this.heapLines = null;
+            this.buffer = ByteBuffer.allocateDirect(offHeapBytes);
+            this.offsets = new int[this.maxLines];
+            this.lengths = new int[this.maxLines];
+        } else {
+            this.heapLines = new String[this.maxLines];
+            this.buffer = null;
+            this.offsets = null;
+            this.lengths = null;
+        }
+    }
+
+    /**
+     * Adds the line and returns its sequence number.
+     */
+    public synchronized long add(@NotNull String line) {
+        if (nextSeq - firstSeq == maxLines) firstSeq++;
+        int index = (int) (nextSeq % maxLines);
+        if (heapLines != null) {
+            heapLines[index] = line;
+        } else {
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            int length = Math.min(bytes.length, buffer.capacity());
+            if (writePos + length > buffer.capacity()) { // Wrap around, the rest at the end stays unused
+                // Lines behind the current write position are from the previous round and thus the oldest.
+                // They must be removed first, otherwise the overlap check below would stop at them,
+                // while younger lines at the start of the buffer get overwritten.
+                while (firstSeq < nextSeq && offsets[(int) (firstSeq % maxLines)] >= writePos) {
+                    firstSeq++;
+                }
+                writePos = 0;
+            }
+            // Remove the oldest lines, that would get overwritten
+            while (firstSeq < nextSeq) {
+                int oldest = (int) (firstSeq % maxLines);
+                int oldestStart = offsets[oldest];
+                if (oldestStart >= writePos + length || oldestStart + lengths[oldest] <= writePos) break;
+                firstSeq++;
+            }
+            offsets[index] = writePos;
+            lengths[index] = length;
+            ByteBuffer dup = buffer.duplicate();
+            ((Buffer) dup).position(writePos); // Cast, since Java 9+ would compile the covariant method, which doesn't exist in Java 8
+            dup.put(bytes, 0, length);
+            writePos += length;
+        }
+        return nextSeq++;
+    }
+
+    private String get(long seq) {
+        int index = (int) (seq % maxLines);
+        if (heapLines != null) return heapLines[index];
+        byte[] bytes = new byte[lengths[index]];
+        ByteBuffer dup = buffer.duplicate();
+        ((Buffer) dup).position(offsets[index]);
+        dup.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the last lines, oldest first.
+     */
+    @NotNull
+    public synchronized List<Line> getLast(int amount) {
+        return getAfter(Math.max(firstSeq, nextSeq - amount) - 1, amount);
+    }
+
+    /**
+     * Returns max. amount lines, that were added after the provided sequence number, oldest first. <br>
+     * If lines after that sequence number were already overwritten, starts with the oldest line.
+     */
+    @NotNull
+    public synchronized List<Line> getAfter(long seq, int amount) {
+        List<Line> lines = new ArrayList<>();
+        for (long s = Math.max(seq + 1, firstSeq); s < nextSeq && lines.size() < amount; s++) {
+            lines.add(new Line(s, get(s)));
+        }
+        return lines;
+    }
+
+    /**
+     * Case-insensitive substring search, starting at the newest line.
+     *
+     * @return max. amount of matching lines, oldest first.
+     */
+    @NotNull
+    public synchronized List<Line> grep(@NotNull String query, int amount) {
+        List<Line> lines = new ArrayList<>();
+        if (heapLines != null) {
+            for (long s = nextSeq - 1; s >= firstSeq && lines.size() < amount; s--) {
+                String line = heapLines[(int) (s % maxLines)];
+                if (containsIgnoreCase(line, query)) lines.add(new Line(s, line));
+            }
+        } else {
+            // Search the bytes directly, so only matching lines get decoded
+            byte[] q = query.toLowerCase().getBytes(StandardCharsets.UTF_8);
+            for (long s = nextSeq - 1; s >= firstSeq && lines.size() < amount; s--) {
+                int index = (int) (s % maxLines);
+                if (containsIgnoreCase(buffer, offsets[index], lengths[index], q)) lines.add(new Line(s, get(s)));
+            }
+        }
+        Collections.reverse(lines);
+        return lines;
+    }
+
+    private static boolean containsIgnoreCase(String s, String query) {
+        int max = s.length() - query.length();
+        for (int i = 0; i <= max; i++) {
+            if (s.regionMatches(true, i, query, 0, query.length())) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Only folds ASCII, other bytes must match exactly.
+     */
+    private static boolean containsIgnoreCase(ByteBuffer buffer, int offset, int length, byte[] lowerQuery) {
+        int max = offset + length - lowerQuery.length;
+        outer:
+        for (int i = offset; i <= max; i++) {
+            for (int j = 0; j < lowerQuery.length; j++) {
+                byte b = buffer.get(i + j);
+                if (b >= 'A' && b <= 'Z') b += 32;
+                if (b != lowerQuery[j]) continue outer;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sequence number of the next added line.
+     */
+    public synchronized long getNextSeq() {
+        return nextSeq;
+    }
+
+    public synchronized int getSize() {
+        return (int) (nextSeq - firstSeq);
+    }
+
+    public boolean isOffHeap() {
+        return buffer != null;
+    }
+
+    public static class Line {
+        public final long seq;
+        public final String text;
+
+        public Line(long seq, String text) {
+            this.seq = seq;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.utils;
+
+import com.osiris.autoplug.core.logger.AL;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.util.*;
+
+/**
+ * Lists directories with a single stat per entry (instead of one per attribute like {@link java.io.File} does)
+ * and caches the listings for a short time. <br>
+ * Cached directories are registered at a {@link WatchService}, so that their listing gets dropped
+ * as soon as something inside them changes. The max. age only matters, if that isn't supported (or slow, like on macOS).
+ */
+public class DirectoryListing implements Closeable {
+    public static final int SORT_NAME = 0;
+    public static final int SORT_SIZE = 1;
+    public static final int SORT_LAST_MODIFIED = 2;
+    private static final boolean IS_WINDOWS = System.getProperty("os.name").toLowerCase().contains("win");
+    private final long maxAgeMs;
+    private final Map<Path, Listing> cache;
+    @Nullable
+    private final WatchService watchService;
+
+    /**
+     * @param maxAgeMs max. age of cached listings.
+     * @param maxDirs  max. amount of cached directories, the least recently used one gets dropped first.
+     */
+    public DirectoryListing(long maxAgeMs, int maxDirs) {
+        this.maxAgeMs = maxAgeMs;
+        this.cache = new LinkedHashMap<Path, Listing>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, Listing> eldest) {
+                if (size() <= maxDirs) return false;
+                eldest.getValue().cancelWatch();
+                return true;
+            }
+        };
+        WatchService watchService = null;
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+        } catch (Exception e) {
+            AL.debug(this.getClass(), "Directory changes can't be watched, thus listings are cached for " + maxAgeMs + "ms only: " + e);
+        }
+        this.watchService = watchService;
+        if (watchService != null) {
+            Thread thread = new Thread(this::watch, "Directory-Listing-Watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Returns all entries of the directory, directories first, then files, each sorted as provided.
+     * Entries that can't be read (deleted in the meantime, no permission) are skipped.
+     *
+     * @param sortBy see {@link #SORT_NAME} for example.
+     */
+    @NotNull
+    public List<Entry> list(@NotNull Path dir, int sortBy, boolean isDescending) throws IOException {
+        dir = dir.toAbsolutePath().normalize();
+        Listing listing;
+        synchronized (cache) {
+            listing = cache.get(dir);
+            if (listing != null && System.currentTimeMillis() - listing.time > maxAgeMs) {
+                listing.cancelWatch();
+                cache.remove(dir);
+                listing = null;
+            }
+        }
+        if (listing == null) {
+            listing = new Listing(read(dir));
+            synchronized (cache) { // Registering in here, so that the watcher can't cancel the key in between
+                if (watchService != null)
+                    try {
+                        listing.watchKey = dir.register(watchService,
+                                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                    } catch (Exception ignored) {
+                        // Max. age only
+                    }
+                Listing old = cache.put(dir, listing);
+                if (old != null && old.watchKey != listing.watchKey) old.cancelWatch();
+            }
+        }
+        return listing.getSorted(sortBy, isDescending);
+    }
+
+    /**
+     * Drops all cached listings, for example after this client modified files itself,
+     * since the {@link WatchService} might report it a bit later.
+     */
+    public void invalidateAll() {
+        synchronized (cache) {
+            for (Listing listing :
+                    cache.values()) {
+                listing.cancelWatch();
+            }
+            cache.clear();
+        }
+    }
+
+    /**
+     * Reads the attributes of a single file with one stat.
+     */
+    @NotNull
+    public static Entry readEntry(@NotNull Path path) throws IOException {
+        Path fileName = path.getFileName();
+        String name = fileName == null ? path.toString() : fileName.toString();
+        if (IS_WINDOWS) { // Hidden is an attribute on Windows
+            DosFileAttributes attrs = Files.readAttributes(path, DosFileAttributes.class);
+            return new Entry(path, name, attrs.isDirectory(), attrs.size(), attrs.lastModifiedTime().toMillis(), attrs.isHidden());
+        }
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        return new Entry(path, name, attrs.isDirectory(), attrs.size(), attrs.lastModifiedTime().toMillis(), name.startsWith("."));
+    }
+
+    @NotNull
+    private static List<Entry> read(@NotNull Path dir) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path :
+                    stream) {
+                try {
+                    entries.add(readEntry(path));
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        return entries;
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                key.pollEvents();
+                synchronized (cache) {
+                    Listing listing = cache.get((Path) key.watchable());
+                    if (listing != null && listing.watchKey == key) cache.remove((Path) key.watchable());
+                    key.cancel(); // Registered again on the next listing
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        invalidateAll();
+        if (watchService != null) watchService.close();
+    }
+
+    public static class Entry {
+        public final Path path;
+        public final String name;
+        public final boolean isDirectory;
+        public final long size;
+        public final long lastModified;
+        public final boolean isHidden;
+
+        public Entry(@NotNull Path path, @NotNull String name, boolean isDirectory, long size, long lastModified, boolean isHidden) {
+            this.path = path;
+            this.name = name;
+            this.isDirectory = isDirectory;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.isHidden = isHidden;
+        }
+    }
+
+    private static class Listing {
+        private final long time = System.currentTimeMillis();
+        private final Entry[] entries;
+        private int sortBy = -1;
+        private boolean isDescending;
+        @Nullable
+        private volatile WatchKey watchKey;
+
+        private Listing(@NotNull List<Entry> entries) {
+            this.entries = entries.toArray(new Entry[0]);
+        }
+
+        /**
+         * Sorts in place, since the same order usually gets requested again for the next pages.
+         */
+        @NotNull
+        private synchronized List<Entry> getSorted(int sortBy, boolean isDescending) {
+            if (this.sortBy != sortBy || this.isDescending != isDescending) {
+                Comparator<Entry> comparator;
+                if (sortBy == SORT_SIZE) comparator = Comparator.comparingLong(e -> e.size);
+                else if (sortBy == SORT_LAST_MODIFIED) comparator = Comparator.comparingLong(e -> e.lastModified);
+                else comparator = (e1, e2) -> e1.name.compareToIgnoreCase(e2.name);
+                if (isDescending) comparator = comparator.reversed();
+                Comparator<Entry> dirsFirst = (e1, e2) -> Boolean.compare(e2.isDirectory, e1.isDirectory);
+                Arrays.sort(entries, dirsFirst.thenComparing(comparator));
+                this.sortBy = sortBy;
+                this.isDescending = isDescending;
+            }
+            return Collections.unmodifiableList(Arrays.asList(entries.clone()));
+        }
+
+        private void cancelWatch() {
+            WatchKey key = watchKey;
+            if (key != null) key.cancel();
+        }
+    }
+}
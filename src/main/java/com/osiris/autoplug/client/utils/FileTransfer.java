@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.*;
+
+/**
+ * Binary file content transfer over the binary protocol of {@link UFDataOut}/{@link UFDataIn}: <br>
+ * <pre>
+ * (int length | byte[length] data)... | int 0 | long crc32
+ * </pre>
+ * If compressed, the chunks contain a deflate stream, and the checksum is still of the uncompressed content.
+ * Data written before (like a header) gets flushed first, so that the chunks start at a frame boundary.
+ * Then each full chunk (int length + data) fills exactly one frame and gets sent with a single write to the connection.
+ */
+public class FileTransfer {
+    public static final int CHUNK_SIZE = UFDataOut.MAX_FRAME - 4;
+
+    /**
+     * Sends the provided range of the file.
+     *
+     * @param start    first byte to send.
+     * @param end      exclusive, the end of the file if bigger.
+     * @param compress compress the content with deflate, worth it for text files, but not for already compressed files like jars.
+     * @return the amount of (uncompressed) bytes sent, which is less than requested if the file shrank in the meantime.
+     */
+    public static long send(@NotNull UFDataOut out, @NotNull FileChannel file, long start, long end, boolean compress) throws IOException {
+        out.flush(); // Align the chunks with the frames
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+        ChunkOutputStream chunks = new ChunkOutputStream(out);
+        Deflater def = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+        DeflaterOutputStream deflater = compress ? new DeflaterOutputStream(chunks, def, CHUNK_SIZE) : null;
+        long position = start;
+        try {
+            while (position < end) {
+                // Casts, since Java 9+ would compile the covariant methods, which don't exist in Java 8
+                ((Buffer) buffer).clear();
+                ((Buffer) buffer).limit((int) Math.min(CHUNK_SIZE, end - position));
+                int count = file.read(buffer, position);
+                if (count < 0) break;
+                crc.update(buffer.array(), 0, count);
+                if (deflater != null) deflater.write(buffer.array(), 0, count);
+                else chunks.write(buffer.array(), 0, count);
+                position += count;
+            }
+            if (deflater != null) deflater.finish();
+        } finally {
+            if (def != null) def.end();
+        }
+        chunks.finish();
+        out.writeLong(crc.getValue());
+        out.flush();
+        return position - start;
+    }
+
+    /**
+     * Receives content sent by {@link #send(UFDataOut, FileChannel, long, long, boolean)}
+     * and verifies its checksum.
+     *
+     * @param maxBytes max. amount of (uncompressed) bytes to accept.
+     * @return the amount of (uncompressed) bytes received.
+     * @throws ChecksumMismatchException if the checksum doesn't match. The connection can still be used,
+     *                                   since the content was read completely.
+     * @throws IOException               if the content is bigger than allowed.
+     *                                   The connection can't be used anymore after that, since the rest of the content wasn't read.
+     */
+    public static long receive(@NotNull UFDataIn in, @NotNull OutputStream target, boolean compressed, long maxBytes) throws IOException {
+        CRC32 crc = new CRC32();
+        ChunkInputStream chunks = new ChunkInputStream(in);
+        Inflater inflater = compressed ? new Inflater() : null;
+        InputStream source = compressed ? new InflaterInputStream(chunks, inflater, CHUNK_SIZE) : chunks;
+        byte[] buffer = new byte[CHUNK_SIZE];
+        long total = 0;
+        try {
+            int count;
+            while ((count = source.read(buffer)) != -1) {
+                total += count;
+                if (total > maxBytes)
+                    throw new IOException("Content is bigger than the allowed " + maxBytes + " bytes.");
+                crc.update(buffer, 0, count);
+                target.write(buffer, 0, count);
+            }
+            chunks.skipRemaining(); // The inflater might stop before the end marker
+        } finally {
+            if (inflater != null) inflater.end();
+        }
+        long expected = in.readLong();
+        if (expected != crc.getValue())
+            throw new ChecksumMismatchException("Checksum mismatch, expected " + Long.toHexString(expected) + " but got " + Long.toHexString(crc.getValue()) + ".");
+        return total;
+    }
+
+    public static class ChecksumMismatchException extends IOException {
+        public ChecksumMismatchException(String message) {
+            super(message);
+        }
+    }
+
+    private static class ChunkOutputStream extends OutputStream {
+        private final UFDataOut out;
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+        private int size;
+
+        private ChunkOutputStream(@NotNull UFDataOut out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (size == buffer.length) writeChunk();
+            buffer[size++] = (byte) b;
+        }
+
+        @Override
+        public void write(@NotNull byte[] b, int off, int len) throws IOException {
+            if (size == 0 && len == buffer.length) { // Full chunk, no need to copy it
+                out.writeInt(len);
+                out.writeBytes(b, off, len);
+                return;
+            }
+            while (len > 0) {
+                if (size == buffer.length) writeChunk();
+                int count = Math.min(len, buffer.length - size);
+                System.arraycopy(b, off, buffer, size, count);
+                size += count;
+                off += count;
+                len -= count;
+            }
+        }
+
+        private void writeChunk() throws IOException {
+            out.writeInt(size);
+            out.writeBytes(buffer, 0, size);
+            size = 0;
+        }
+
+        /**
+         * Sends the remaining data and the end marker.
+         */
+        private void finish() throws IOException {
+            if (size > 0) writeChunk();
+            out.writeInt(0);
+        }
+    }
+
+    private static class ChunkInputStream extends InputStream {
+        private final UFDataIn in;
+        private int remaining;
+        private boolean isEnd;
+
+        private ChunkInputStream(@NotNull UFDataIn in) {
+            this.in = in;
+        }
+
+        /**
+         * Returns false at the end marker.
+         */
+        private boolean nextChunk() throws IOException {
+            while (remaining == 0 && !isEnd) {
+                remaining = in.readInt();
+                if (remaining < 0 || remaining > CHUNK_SIZE)
+                    throw new IOException("Invalid chunk length " + remaining + ".");
+                if (remaining == 0) isEnd = true;
+            }
+            return !isEnd || remaining > 0;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(@NotNull byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (!nextChunk()) return -1;
+            int count = Math.min(len, remaining);
+            in.readFully(b, off, count);
+            remaining -= count;
+            return count;
+        }
+
+        private void skipRemaining() throws IOException {
+            byte[] buffer = new byte[8192];
+            while (read(buffer, 0, buffer.length) != -1) {
+                // Skip
+            }
+        }
+    }
+}
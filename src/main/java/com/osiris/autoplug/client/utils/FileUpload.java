@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+
+/**
+ * Replaces a file atomically with content received through {@link FileTransfer}: <br>
+ * The content gets written to a temporary file next to the target, synced to disk and then renamed to the target.
+ * Thus the target is either completely replaced or unchanged, also if the connection drops in between. <br>
+ * Symlinks get resolved, so that the file they point to gets replaced and not the link itself.
+ * The permissions (and owner, if allowed) of an existing target are kept.
+ * Always {@link #close()} it, which deletes the temporary file if it wasn't committed.
+ */
+public class FileUpload implements Closeable {
+    private final Path target;
+    private final Path temp;
+    private final long size;
+    private boolean isCommitted;
+
+    /**
+     * Creates the temporary file.
+     *
+     * @param size     announced size of the content.
+     * @param maxBytes max. allowed size.
+     * @throws TooBigException if the announced size is bigger than allowed. Nothing was created in that case.
+     */
+    public FileUpload(@NotNull Path file, long size, long maxBytes) throws IOException {
+        if (size < 0 || size > maxBytes)
+            throw new TooBigException("File is too big (" + size + " bytes)! Max. allowed are " + maxBytes + " bytes, which can be changed in the web-config.");
+        this.size = size;
+        Path target = file.toAbsolutePath();
+        if (Files.exists(target)) {
+            target = target.toRealPath(); // Follows symlinks
+        } else {
+            Files.createDirectories(target.getParent());
+            target = target.getParent().toRealPath().resolve(target.getFileName());
+        }
+        this.target = target;
+        // Not Files.createTempFile(), since the file would only be readable by this user after the rename
+        this.temp = Files.createFile(target.resolveSibling("." + target.getFileName() + "." + Long.toHexString(System.nanoTime()) + ".upload"));
+        try {
+            copyAttributes(target, temp);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    private static void copyAttributes(@NotNull Path from, @NotNull Path to) throws IOException {
+        if (!Files.exists(from)) return;
+        PosixFileAttributeView fromView = Files.getFileAttributeView(from, PosixFileAttributeView.class);
+        PosixFileAttributeView toView = Files.getFileAttributeView(to, PosixFileAttributeView.class);
+        if (fromView == null || toView == null) return; // Windows, new files inherit the ACLs of the directory there
+        PosixFileAttributes attrs = fromView.readAttributes();
+        toView.setPermissions(attrs.permissions());
+        try { // Only allowed as root, or for groups this user is in
+            toView.setGroup(attrs.group());
+            toView.setOwner(attrs.owner());
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Writes the content to the temporary file and syncs it to disk.
+     *
+     * @throws FileTransfer.ChecksumMismatchException if the content was corrupted. The connection can still be used.
+     * @throws IOException                            if more content than announced was sent, see {@link FileTransfer#receive(UFDataIn, java.io.OutputStream, boolean, long)}.
+     */
+    public void receive(@NotNull UFDataIn in, boolean isCompressed) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(temp.toFile())) {
+            FileTransfer.receive(in, out, isCompressed, size);
+            out.getFD().sync();
+        }
+    }
+
+    /**
+     * Renames the temporary file to the target and syncs the directory, so that the rename survives a crash too.
+     */
+    public void commit() throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        isCommitted = true;
+        try (FileChannel dir = FileChannel.open(target.getParent(), StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException ignored) { // Directories can't be opened on Windows, where this isn't needed
+        }
+    }
+
+    /**
+     * The file that gets replaced, with symlinks resolved.
+     */
+    @NotNull
+    public Path getTarget() {
+        return target;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!isCommitted) Files.deleteIfExists(temp);
+    }
+
+    public static class TooBigException extends IOException {
+        public TooBigException(String message) {
+            super(message);
+        }
+    }
+}
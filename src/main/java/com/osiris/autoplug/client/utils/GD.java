@@ -8,10 +8,15 @@
 
 package com.osiris.autoplug.client.utils;
 
+import com.osiris.autoplug.client.monitoring.Metrics;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import oshi.SystemInfo;
 
 import java.io.File;
+import java.io.IOException;
 
 /**
  * GlobalData, which is always static and used frequently in this project
@@ -26,6 +31,8 @@ public class GD {
     @Nullable
     public static File SERVER_JAR = null; // Gets set in UpdaterConfig
     public static File AUTOPLUG_JAR = null; // Gets set in Main
+    @NotNull
+    public static ConsoleHistory CONSOLE_HISTORY = new ConsoleHistory(20000, 0); // Gets replaced in Main with the configured one
 
     static {
         WORKING_DIR = new File(System.getProperty("user.dir"));
@@ -37,4 +44,43 @@ public class GD {
         }
     }
 
+    /**
+     * Shared client, so that all downloads use the same connection-pool and threads. <br>
+     * Created on first use, to keep it out of AutoPlugs startup.
+     */
+    @NotNull
+    public static OkHttpClient getHttpClient() {
+        return HttpClientHolder.INSTANCE;
+    }
+
+    /**
+     * Shared oshi instance, created on first use, since its hardware detection is slow.
+     */
+    @NotNull
+    public static SystemInfo getSystemInfo() {
+        return SystemInfoHolder.INSTANCE;
+    }
+
+    private static class HttpClientHolder {
+        private static final OkHttpClient INSTANCE = new OkHttpClient.Builder().followRedirects(true)
+                .addNetworkInterceptor(chain -> { // Network interceptor, to measure each redirect separately
+                    String host = chain.request().url().host();
+                    long start = System.nanoTime();
+                    try {
+                        Response response = chain.proceed(chain.request());
+                        Metrics.HTTP_DURATION.labels(host).observe((System.nanoTime() - start) / 1e9);
+                        if (response.code() >= 400) Metrics.HTTP_ERRORS.labels(host).increment();
+                        return response;
+                    } catch (IOException e) {
+                        Metrics.HTTP_ERRORS.labels(host).increment();
+                        throw e;
+                    }
+                })
+                .build();
+    }
+
+    private static class SystemInfoHolder {
+        private static final SystemInfo INSTANCE = new SystemInfo();
+    }
+
 }
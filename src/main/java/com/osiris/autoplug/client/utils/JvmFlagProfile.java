@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.utils;
+
+import com.osiris.autoplug.core.logger.AL;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import oshi.hardware.HardwareAbstractionLayer;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * JVM tuning profiles for the server process. <br>
+ * The heap size and GC thread counts get computed from the hardware AutoPlug runs on
+ * (or the memory limit of its container/cgroup, if lower),
+ * and each profile is only used if the servers Java version supports it.
+ */
+public enum JvmFlagProfile {
+    /**
+     * No flags are added.
+     */
+    NONE(0, null),
+    /**
+     * G1 tuned for Minecraft, based on Aikar's flags: https://aikar.co/2018/07/02/tuning-the-jvm-g1gc-garbage-collector-flags-for-minecraft/
+     */
+    AIKAR(8, "-XX:+UseG1GC"),
+    /**
+     * Low-pause ZGC. Production ready since Java 15.
+     */
+    ZGC(15, "-XX:+UseZGC"),
+    /**
+     * Low-pause Shenandoah. Production ready since Java 15, but not included in all builds (for example Oracle's).
+     */
+    SHENANDOAH(15, "-XX:+UseShenandoahGC"),
+    /**
+     * For servers with little memory and few cores. Uses the serial GC and a max. heap of 2GB.
+     */
+    SMALL_HEAP(8, "-XX:+UseSerialGC");
+
+    private static final File CGROUP_V2_MEMORY_MAX = new File("/sys/fs/cgroup/memory.max");
+    private static final File CGROUP_V1_MEMORY_LIMIT = new File("/sys/fs/cgroup/memory/memory.limit_in_bytes");
+    private static final Pattern GC_FLAG = Pattern.compile("-XX:\\+Use(?!\\w*SystemGC)\\w*GC"); // Not the ...OnSystemGC/...WithSystemGC flags
+    private final int minJavaVersion;
+    private final String gcFlag;
+
+    JvmFlagProfile(int minJavaVersion, @Nullable String gcFlag) {
+        this.minJavaVersion = minJavaVersion;
+        this.gcFlag = gcFlag;
+    }
+
+    /**
+     * Case-insensitive. Returns {@link #NONE} for unknown profiles.
+     */
+    @NotNull
+    public static JvmFlagProfile parse(@Nullable String name) {
+        if (name != null)
+            try {
+                return valueOf(name.trim().toUpperCase().replace("-", "_"));
+            } catch (Exception ignored) {
+            }
+        AL.warn("Unknown JVM flags profile '" + name + "'. Available: NONE, AIKAR, ZGC, SHENANDOAH, SMALL_HEAP");
+        return NONE;
+    }
+
+    /**
+     * Heap AutoPlug would use for this profile, on a machine with the provided total memory.
+     * Leaves a quarter of the memory (at least 1GB) to the OS, AutoPlug and the JVMs own memory.
+     */
+    public long computeHeapMb(long totalMemoryBytes) {
+        long totalMb = totalMemoryBytes / (1024 * 1024);
+        long heapMb = totalMb - Math.max(1024, totalMb / 4);
+        if (this == SMALL_HEAP) heapMb = Math.min(2048, totalMb / 2);
+        return Math.max(512, heapMb);
+    }
+
+    /**
+     * Returns the memory available to AutoPlug and the server: the lower one of the
+     * hosts total memory and the memory limit of the cgroup (container) it runs in.
+     */
+    public static long getAvailableMemory(long hostTotalBytes) {
+        return getAvailableMemory(hostTotalBytes, CGROUP_V2_MEMORY_MAX, CGROUP_V1_MEMORY_LIMIT);
+    }
+
+    static long getAvailableMemory(long hostTotalBytes, @NotNull File cgroupV2, @NotNull File cgroupV1) {
+        long limit = readCgroupLimit(cgroupV2);
+        if (limit <= 0) limit = readCgroupLimit(cgroupV1);
+        return limit > 0 && limit < hostTotalBytes ? limit : hostTotalBytes;
+    }
+
+    private static long readCgroupLimit(@NotNull File file) {
+        if (!file.exists()) return -1;
+        try {
+            return parseCgroupLimit(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns -1 if unlimited ('max' in cgroup v2, a value close to Long.MAX_VALUE in cgroup v1) or invalid.
+     */
+    static long parseCgroupLimit(@NotNull String content) {
+        content = content.trim();
+        if (content.isEmpty() || content.equals("max")) return -1;
+        try {
+            long limit = Long.parseLong(content);
+            return limit <= 0 || limit >= Long.MAX_VALUE / 2 ? -1 : limit;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Same formula the JVM uses by default: all cores up to 8, and 5/8 of the remaining cores.
+     */
+    public static int computeParallelGCThreads(int logicalCores) {
+        if (logicalCores <= 8) return Math.max(1, logicalCores);
+        return 8 + (logicalCores - 8) * 5 / 8;
+    }
+
+    /**
+     * @param javaVersion    major version of the servers Java.
+     * @param heapMb         max heap size in megabytes.
+     * @param logicalCores   amount of logical cores.
+     * @param isHugePages    true if transparent huge pages can be used.
+     * @param isPreTouch     true to commit the whole heap at startup. Only safe if the heap size was set by the user,
+     *                       since an overestimated heap would get the server killed right at startup, instead of never being used.
+     * @param isWithGc       false to leave out the garbage collector and its tuning, because the user selected another one.
+     */
+    @NotNull
+    public List<String> getFlags(int javaVersion, long heapMb, int logicalCores, boolean isHugePages, boolean isPreTouch, boolean isWithGc) {
+        List<String> flags = new ArrayList<>();
+        if (this == NONE) return flags;
+        int parallelThreads = computeParallelGCThreads(logicalCores);
+        int concThreads = Math.max(1, (parallelThreads + 2) / 4);
+        if (this == SMALL_HEAP) {
+            flags.add("-Xms" + Math.min(512, heapMb) + "M");
+            flags.add("-Xmx" + heapMb + "M");
+            if (isWithGc) flags.add(gcFlag);
+            flags.add("-XX:+DisableExplicitGC");
+            flags.add("-XX:+PerfDisableSharedMem");
+            return flags;
+        }
+        flags.add("-Xms" + heapMb + "M");
+        flags.add("-Xmx" + heapMb + "M");
+        if (isWithGc) {
+            flags.add(gcFlag);
+            if (this == ZGC && javaVersion >= 21 && javaVersion < 23) flags.add("-XX:+ZGenerational");
+            if (this == AIKAR) {
+                boolean isBigHeap = heapMb >= 12 * 1024;
+                flags.add("-XX:+ParallelRefProcEnabled");
+                flags.add("-XX:MaxGCPauseMillis=200");
+                flags.add("-XX:+UnlockExperimentalVMOptions");
+                flags.add("-XX:G1NewSizePercent=" + (isBigHeap ? 40 : 30));
+                flags.add("-XX:G1MaxNewSizePercent=" + (isBigHeap ? 50 : 40));
+                flags.add("-XX:G1HeapRegionSize=" + (isBigHeap ? 16 : 8) + "M");
+                flags.add("-XX:G1ReservePercent=" + (isBigHeap ? 15 : 20));
+                flags.add("-XX:G1HeapWastePercent=5");
+                flags.add("-XX:G1MixedGCCountTarget=4");
+                flags.add("-XX:InitiatingHeapOccupancyPercent=" + (isBigHeap ? 20 : 15));
+                flags.add("-XX:G1MixedGCLiveThresholdPercent=90");
+                flags.add("-XX:G1RSetUpdatingPauseTimePercent=5");
+                flags.add("-XX:SurvivorRatio=32");
+                flags.add("-XX:MaxTenuringThreshold=1");
+                flags.add("-XX:ParallelGCThreads=" + parallelThreads);
+            }
+            flags.add("-XX:ConcGCThreads=" + concThreads);
+        }
+        flags.add("-XX:+DisableExplicitGC");
+        if (isPreTouch) flags.add("-XX:+AlwaysPreTouch");
+        flags.add("-XX:+PerfDisableSharedMem");
+        if (isHugePages) flags.add("-XX:+UseTransparentHugePages");
+        return flags;
+    }
+
+    /**
+     * Computes the flags for the current hardware and the provided java command. <br>
+     * Falls back to {@link #AIKAR}, if the servers Java doesn't support this profile.
+     * If the users flags already select a garbage collector, the profiles collector and its tuning are left out,
+     * since the JVM refuses to start with multiple collectors.
+     *
+     * @param heapSetting 'auto' or the max heap in megabytes.
+     * @param userFlags   the flags the user passes to the server, like '-Xmx4G'.
+     */
+    @NotNull
+    public List<String> createFlags(@NotNull String javaCommand, @NotNull String heapSetting, @NotNull List<String> userFlags) throws Exception {
+        if (this == NONE) return new ArrayList<>();
+        UtilsJava utilsJava = new UtilsJava();
+        int javaVersion = utilsJava.getMajorVersion(javaCommand);
+        JvmFlagProfile profile = this;
+        boolean isLowPause = this == ZGC || this == SHENANDOAH; // Not included in every build
+        String userGcFlag = findGcFlag(userFlags);
+        if (userGcFlag != null) {
+            AL.warn("The server flags already select a garbage collector (" + userGcFlag + "), thus the collector of profile "
+                    + this + " and its tuning are left out. Remove " + userGcFlag + " from the flags list to use them.");
+        } else if (javaVersion < minJavaVersion || (isLowPause && !utilsJava.isFlagSupported(javaCommand, gcFlag))) {
+            AL.warn("JVM flags profile " + this + " is not supported by the servers Java " + javaVersion
+                    + " (requires Java " + minJavaVersion + "+ with " + gcFlag + "). Using " + AIKAR + " instead.");
+            profile = AIKAR;
+        }
+        HardwareAbstractionLayer hal = GD.getSystemInfo().getHardware();
+        boolean isAutoHeap = heapSetting.trim().equalsIgnoreCase("auto");
+        long heapMb = isAutoHeap ?
+                profile.computeHeapMb(getAvailableMemory(hal.getMemory().getTotal()))
+                : Long.parseLong(heapSetting.trim());
+        List<String> flags = profile.getFlags(javaVersion, heapMb, hal.getProcessor().getLogicalProcessorCount(),
+                isTransparentHugePagesEnabled(), !isAutoHeap, userGcFlag == null);
+        AL.debug(JvmFlagProfile.class, "Flags of profile " + profile + ": " + flags);
+        return flags;
+    }
+
+    /**
+     * Returns the first flag that selects a garbage collector, like '-XX:+UseG1GC', or null if there is none.
+     */
+    @Nullable
+    public static String findGcFlag(@NotNull List<String> flags) {
+        for (String flag :
+                flags) {
+            if (GC_FLAG.matcher(flag.trim()).matches()) return flag.trim();
+        }
+        return null;
+    }
+
+    /**
+     * Linux only. True if transparent huge pages are set to 'always' or 'madvise'.
+     */
+    private static boolean isTransparentHugePagesEnabled() {
+        File file = new File("/sys/kernel/mm/transparent_hugepage/enabled");
+        if (!file.exists()) return false;
+        try {
+            String mode = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            return mode.contains("[always]") || mode.contains("[madvise]");
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Case-insensitive multi-keyword matcher (Aho-Corasick automaton). <br>
+ * Finds all keywords in a single pass over the line, no matter how many keywords there are. <br>
+ * Each keyword has a value, and {@link #classify(CharSequence)} returns the value of the matching keyword
+ * that was added first, thus keywords added first have a higher priority. <br>
+ * Add all keywords first and call {@link #build()} afterwards. Once built, this is thread-safe.
+ */
+public class KeywordClassifier<T> {
+    private static final int ASCII = 128;
+    private static final int NONE = Integer.MAX_VALUE;
+
+    private final List<T> values = new ArrayList<>();
+    // Trie, state 0 is the root
+    private final List<int[]> asciiNext = new ArrayList<>();
+    private final List<Map<Character, Integer>> otherNext = new ArrayList<>();
+    private final List<Integer> fail = new ArrayList<>();
+    private final List<Integer> output = new ArrayList<>(); // Lowest index of the values that match in this state, NONE if none
+    private boolean isBuilt;
+
+    // Arrays created by build() for faster matching
+    private int[][] asciiTable;
+    private int[] failTable;
+    private int[] outputTable;
+
+    public KeywordClassifier() {
+        newState();
+    }
+
+    private int newState() {
+        int[] next = new int[ASCII];
+        Arrays.fill(next, -1);
+        asciiNext.add(next);
+        otherNext.add(new HashMap<>());
+        fail.add(0);
+        output.add(NONE);
+        return asciiNext.size() - 1;
+    }
+
+    private static char fold(char c) {
+        if (c < ASCII) return (c >= 'A' && c <= 'Z') ? (char) (c + 32) : c;
+        return Character.toLowerCase(c);
+    }
+
+    /**
+     * Adds a keyword. If the line contains multiple keywords,
+     * the value of the one that was added first gets returned by {@link #classify(CharSequence)}.
+     */
+    public KeywordClassifier<T> add(@NotNull String keyword, @NotNull T value) {
+        if (isBuilt) throw new IllegalStateException("Already built!");
+        if (keyword.isEmpty()) throw new IllegalArgumentException("Keyword cannot be empty!");
+        values.add(value);
+        int state = 0;
+        for (int i = 0; i < keyword.length(); i++) {
+            char c = fold(keyword.charAt(i));
+            int next = c < ASCII ? asciiNext.get(state)[c] : otherNext.get(state).getOrDefault(c, -1);
+            if (next == -1) {
+                next = newState();
+                if (c < ASCII) asciiNext.get(state)[c] = next;
+                else otherNext.get(state).put(c, next);
+            }
+            state = next;
+        }
+        output.set(state, Math.min(output.get(state), values.size() - 1));
+        return this;
+    }
+
+    /**
+     * Computes the failure links and turns the ASCII part of the trie into a complete
+     * transition table, so that matching only needs one array lookup per character.
+     */
+    public KeywordClassifier<T> build() {
+        if (isBuilt) return this;
+        int count = asciiNext.size();
+        Deque<Integer> queue = new ArrayDeque<>();
+        int[] root = asciiNext.get(0);
+        for (int c = 0; c < ASCII; c++) {
+            if (root[c] == -1) root[c] = 0;
+            else {
+                fail.set(root[c], 0);
+                queue.add(root[c]);
+            }
+        }
+        for (int child : otherNext.get(0).values()) {
+            fail.set(child, 0);
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int failState = fail.get(state);
+            // Also match the keywords that are suffixes of the current path
+            output.set(state, Math.min(output.get(state), output.get(failState)));
+            int[] next = asciiNext.get(state);
+            for (int c = 0; c < ASCII; c++) {
+                if (next[c] == -1) {
+                    next[c] = asciiNext.get(failState)[c];
+                } else {
+                    fail.set(next[c], asciiNext.get(failState)[c]);
+                    queue.add(next[c]);
+                }
+            }
+            for (Map.Entry<Character, Integer> e : otherNext.get(state).entrySet()) {
+                fail.set(e.getValue(), nextOther(failState, e.getKey()));
+                queue.add(e.getValue());
+            }
+        }
+        asciiTable = asciiNext.toArray(new int[count][]);
+        failTable = new int[count];
+        outputTable = new int[count];
+        for (int i = 0; i < count; i++) {
+            failTable[i] = fail.get(i);
+            outputTable[i] = output.get(i);
+        }
+        isBuilt = true;
+        return this;
+    }
+
+    private int nextOther(int state, char c) {
+        while (true) {
+            Integer next = otherNext.get(state).get(c);
+            if (next != null) return next;
+            if (state == 0) return 0;
+            state = fail.get(state);
+        }
+    }
+
+    /**
+     * Returns the value of the highest priority keyword inside the line, or null if it contains none.
+     */
+    @Nullable
+    public T classify(@NotNull CharSequence line) {
+        if (!isBuilt) throw new IllegalStateException("Call build() first!");
+        int state = 0;
+        int best = NONE;
+        for (int i = 0, len = line.length(); i < len; i++) {
+            char c = line.charAt(i);
+            if (c < ASCII) {
+                if (c >= 'A' && c <= 'Z') c += 32;
+                state = asciiTable[state][c];
+            } else {
+                c = Character.toLowerCase(c);
+                int s = state;
+                while (true) {
+                    Integer next = otherNext.get(s).get(c);
+                    if (next != null) {
+                        state = next;
+                        break;
+                    }
+                    if (s == 0) {
+                        state = 0;
+                        break;
+                    }
+                    s = failTable[s];
+                }
+            }
+            int out = outputTable[state];
+            if (out < best) {
+                best = out;
+                if (best == 0) break; // Can't get any better
+            }
+        }
+        return best == NONE ? null : values.get(best);
+    }
+
+    public int getCountKeywords() {
+        return values.size();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Measures how long each phase of AutoPlugs startup took,
+ * so that slow phases and regressions are easy to spot in the log.
+ */
+public class StartupTimer {
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    private final long jvmMs;
+    private long lastNanos;
+
+    /**
+     * Create this as early as possible.
+     * The time the JVM needed until then, is reported as 'jvm'.
+     */
+    public StartupTimer() {
+        this.jvmMs = ManagementFactory.getRuntimeMXBean().getUptime();
+        this.lastNanos = System.nanoTime();
+    }
+
+    /**
+     * Ends the current phase, which started at the end of the previous phase.
+     */
+    public void phase(@NotNull String name) {
+        long now = System.nanoTime();
+        phases.merge(name, (now - lastNanos) / 1000000, Long::sum);
+        lastNanos = now;
+    }
+
+    public long getTotalMs() {
+        long total = jvmMs;
+        for (long ms :
+                phases.values()) {
+            total += ms;
+        }
+        return total;
+    }
+
+    /**
+     * Example: '1234ms (jvm: 300ms, checks: 400ms, configs: 534ms)'
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(getTotalMs()).append("ms (jvm: ").append(jvmMs).append("ms");
+        for (Map.Entry<String, Long> phase :
+                phases.entrySet()) {
+            builder.append(", ").append(phase.getKey()).append(": ").append(phase.getValue()).append("ms");
+        }
+        return builder.append(")").toString();
+    }
+
+    /**
+     * True if this JVM was started with a class-data sharing archive for the application.
+     */
+    public static boolean isUsingAppCDS() {
+        for (String arg :
+                ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (arg.startsWith("-XX:SharedArchiveFile") || arg.equals("-XX:+AutoCreateSharedArchive")) return true;
+        }
+        return false;
+    }
+}
@@ -8,32 +8,64 @@
 
 package com.osiris.autoplug.client.utils;
 
+import org.jetbrains.annotations.NotNull;
+
 import javax.naming.LimitExceededException;
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
- * TODO
- * ULTRA FAST DATA INPUTSTREAM!
+ * ULTRA FAST DATA INPUTSTREAM! <br>
+ * Reads what {@link UFDataOut} writes, see there for the protocol versions.
+ * In the binary protocol, frame boundaries are transparent to the reader.
  */
 public class UFDataIn {
     private final InputStream inputStream;
+    private final int version;
     private final BufferedReader reader;
+    private final DataInputStream data;
 
     public UFDataIn(InputStream inputStream) {
+        this(inputStream, UFDataOut.VERSION_TEXT);
+    }
+
+    public UFDataIn(InputStream inputStream, int version) {
         this.inputStream = inputStream;
-        this.reader = new BufferedReader(new InputStreamReader(inputStream));
+        this.version = version;
+        if (version == UFDataOut.VERSION_BINARY) {
+            this.reader = null;
+            this.data = new DataInputStream(new FrameInputStream(inputStream));
+        } else {
+            this.reader = new BufferedReader(new InputStreamReader(inputStream));
+            this.data = null;
+        }
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns null at the end of the stream.
+     */
     public String readLine() throws IOException {
-        return reader.readLine();
+        if (data == null) return reader.readLine();
+        int length;
+        try {
+            length = data.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length < 0) throw new IOException("Invalid string length " + length + ".");
+        byte[] bytes = new byte[length];
+        data.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
     }
 
     public boolean readBoolean() throws IOException {
+        if (data != null) return data.readBoolean();
         return reader.read() != 0;
     }
 
@@ -43,7 +75,7 @@ public class UFDataIn {
     public List<String> readFile() throws IOException {
         List<String> lines = new ArrayList<>();
         String line;
-        while ((line = reader.readLine()) != null && !line.equals("\u001a")) { // Stop at 10 mb
+        while ((line = readLine()) != null && !line.equals("\u001a")) { // Stop at 10 mb
             lines.add(line + "\n");
         }
         return lines;
@@ -59,7 +91,7 @@ public class UFDataIn {
         List<String> lines = new ArrayList<>();
         long bytesRead = 0;
         String line;
-        while ((line = reader.readLine()) != null && !line.equals("\u001a")) { // Stop at 10 mb
+        while ((line = readLine()) != null && !line.equals("\u001a")) { // Stop at 10 mb
             lines.add(line + "\n");
             bytesRead = bytesRead + line.getBytes().length;
             if (bytesRead > maxBytes) {
@@ -75,7 +107,7 @@ public class UFDataIn {
     public List<String> readStream() throws IOException {
         List<String> lines = new ArrayList<>();
         String line;
-        while ((line = reader.readLine()) != null && !line.equals("\u001a")) {
+        while ((line = readLine()) != null && !line.equals("\u001a")) {
             lines.add(line + "\n");
         }
         return lines;
@@ -91,7 +123,7 @@ public class UFDataIn {
         List<String> lines = new ArrayList<>();
         long bytesRead = 0;
         String line;
-        while ((line = reader.readLine()) != null && !line.equals("\u001a")) { // Stop at 10 mb
+        while ((line = readLine()) != null && !line.equals("\u001a")) { // Stop at 10 mb
             lines.add(line + "\n");
             bytesRead = bytesRead + line.getBytes().length;
             if (bytesRead > maxBytes) {
@@ -101,24 +133,96 @@ public class UFDataIn {
         return lines;
     }
 
+    /**
+     * Raw bytes, only supported by {@link UFDataOut#VERSION_BINARY}.
+     */
+    public void readFully(byte[] b, int off, int len) throws IOException {
+        if (data == null) throw new UnsupportedOperationException("Raw bytes can't be read in the text protocol.");
+        data.readFully(b, off, len);
+    }
+
     public byte readByte() throws IOException {
+        if (data != null) return data.readByte();
         return Byte.parseByte(readLine());
     }
 
     public short readShort() throws IOException {
+        if (data != null) return data.readShort();
         return Short.parseShort(readLine());
     }
 
     public int readInt() throws IOException {
+        if (data != null) return data.readInt();
         return Integer.parseInt(readLine());
     }
 
     public long readLong() throws IOException {
+        if (data != null) return data.readLong();
         return Long.parseLong(readLine());
     }
 
     public float readFloat() throws IOException {
+        if (data != null) return data.readFloat();
         return Float.parseFloat(readLine());
     }
 
+    /**
+     * Reads whole frames into a reused buffer and returns their payloads as one continuous stream.
+     */
+    private static class FrameInputStream extends InputStream {
+        private final DataInputStream in;
+        private final byte[] buffer = new byte[UFDataOut.MAX_FRAME];
+        private int position;
+        private int size;
+
+        private FrameInputStream(@NotNull InputStream in) {
+            this.in = new DataInputStream(in);
+        }
+
+        /**
+         * Returns false at the end of the stream.
+         */
+        private boolean nextFrame() throws IOException {
+            while (position == size) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return false;
+                }
+                if (length < 0 || length > buffer.length)
+                    throw new IOException("Invalid frame length " + length + ".");
+                in.readFully(buffer, 0, length);
+                position = 0;
+                size = length;
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!nextFrame()) return -1;
+            return buffer[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(@NotNull byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (!nextFrame()) return -1;
+            int count = Math.min(len, size - position);
+            System.arraycopy(buffer, position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return size - position;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
 }
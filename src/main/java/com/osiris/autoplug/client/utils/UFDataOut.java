@@ -8,37 +8,87 @@
 
 package com.osiris.autoplug.client.utils;
 
+import org.jetbrains.annotations.NotNull;
+
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 
 /**
- * TODO
- * ULTRA FAST DATA OUTPUTSTREAM!
+ * ULTRA FAST DATA OUTPUTSTREAM! <br>
+ * Supports two protocol versions, which one gets used is negotiated when opening the connection
+ * (see {@link com.osiris.autoplug.client.network.online.SecondaryConnection#openNegotiated()}): <br>
+ * {@link #VERSION_TEXT}: each value is a line of text (the original protocol). <br>
+ * {@link #VERSION_BINARY}: values are binary (big-endian, strings as int length + UTF-8 bytes)
+ * and sent in frames: <pre>int length | byte[length] payload</pre>
+ * Frames are at most {@link #MAX_FRAME} bytes big. <br>
+ * In both versions nothing gets sent before {@link #flush()}, which ends the current message,
+ * thus it must be called before waiting for a response.
  */
 public class UFDataOut {
+    public static final int VERSION_TEXT = 0;
+    public static final int VERSION_BINARY = 1;
+    public static final int MAX_FRAME = 64 * 1024;
     private final OutputStream outputStream;
+    private final int version;
     private final BufferedWriter writer;
+    private final DataOutputStream data;
 
     public UFDataOut(OutputStream outputStream) {
+        this(outputStream, VERSION_TEXT);
+    }
+
+    public UFDataOut(OutputStream outputStream, int version) {
         this.outputStream = outputStream;
-        this.writer = new BufferedWriter(new OutputStreamWriter(outputStream));
+        this.version = version;
+        if (version == VERSION_BINARY) {
+            this.writer = null;
+            this.data = new DataOutputStream(new FrameOutputStream(outputStream));
+        } else {
+            this.writer = new BufferedWriter(new OutputStreamWriter(outputStream));
+            this.data = null;
+        }
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Ends the current message and sends it.
+     */
+    public void flush() throws IOException {
+        if (data != null) data.flush();
+        else writer.flush();
+    }
+
+    /**
+     * Raw text, only supported by {@link #VERSION_TEXT}.
+     */
     public void write(String val) throws IOException {
+        if (data != null) throw new UnsupportedOperationException("Raw text can't be written in the binary protocol.");
         writer.write(val);
-        writer.flush();
     }
 
     public void writeLine(String val) throws IOException {
-        write(val + "\n");
+        if (data != null) {
+            byte[] bytes = val.getBytes(StandardCharsets.UTF_8);
+            data.writeInt(bytes.length);
+            data.write(bytes);
+        } else
+            write(val + "\n");
     }
 
+    /**
+     * Writes a single char, only supported by {@link #VERSION_TEXT}.
+     */
     public void write(int val) throws IOException {
+        if (data != null) throw new UnsupportedOperationException("Raw chars can't be written in the binary protocol.");
         writer.write(val);
-        writer.flush();
     }
 
     public void writeBoolean(boolean val) throws IOException {
-        write(val ? 1 : 0);
+        if (data != null) data.writeBoolean(val);
+        else write(val ? 1 : 0);
     }
 
     public void writeFile(File file) throws IOException {
@@ -47,27 +97,94 @@ public class UFDataOut {
             while ((line = br.readLine()) != null) {
                 writeLine(line);
             }
-            write("\u001a\n"); // EOF
+            writeLine("\u001a"); // EOF
         }
     }
 
+    /**
+     * Raw bytes, only supported by {@link #VERSION_BINARY}.
+     */
+    public void writeBytes(byte[] b, int off, int len) throws IOException {
+        if (data == null) throw new UnsupportedOperationException("Raw bytes can't be written in the text protocol.");
+        data.write(b, off, len);
+    }
+
     public void writeByte(byte val) throws IOException {
-        writeLine("" + val);
+        if (data != null) data.writeByte(val);
+        else writeLine("" + val);
     }
 
     public void writeShort(short val) throws IOException {
-        writeLine("" + val);
+        if (data != null) data.writeShort(val);
+        else writeLine("" + val);
     }
 
     public void writeInt(int val) throws IOException {
-        writeLine("" + val);
+        if (data != null) data.writeInt(val);
+        else writeLine("" + val);
     }
 
     public void writeLong(long val) throws IOException {
-        writeLine("" + val);
+        if (data != null) data.writeLong(val);
+        else writeLine("" + val);
     }
 
     public void writeFloat(float val) throws IOException {
-        writeLine("" + val);
+        if (data != null) data.writeFloat(val);
+        else writeLine("" + val);
+    }
+
+    /**
+     * Collects the written bytes in a reused buffer and sends them as a frame on {@link #flush()},
+     * or earlier without flushing the underlying stream, if the buffer is full.
+     */
+    private static class FrameOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[4 + MAX_FRAME]; // Header + payload, so that each frame is a single write
+        private int size = 4;
+
+        private FrameOutputStream(@NotNull OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (size == buffer.length) writeFrame();
+            buffer[size++] = (byte) b;
+        }
+
+        @Override
+        public void write(@NotNull byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (size == buffer.length) writeFrame();
+                int count = Math.min(len, buffer.length - size);
+                System.arraycopy(b, off, buffer, size, count);
+                size += count;
+                off += count;
+                len -= count;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (size > 4) writeFrame();
+            out.flush();
+        }
+
+        private void writeFrame() throws IOException {
+            int length = size - 4;
+            buffer[0] = (byte) (length >>> 24);
+            buffer[1] = (byte) (length >>> 16);
+            buffer[2] = (byte) (length >>> 8);
+            buffer[3] = (byte) length;
+            out.write(buffer, 0, size);
+            size = 4;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+            out.close();
+        }
     }
 }
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+public class UtilsJava {
+    public static final int TIMEOUT_SECONDS = 30;
+    private static final Map<String, String> versionOutputs = new ConcurrentHashMap<>();
+    private static final Map<String, Boolean> supportedFlags = new ConcurrentHashMap<>();
+
+    /**
+     * Runs '[javaCommand] -version' and returns its version line,
+     * for example: 'openjdk version "17.0.1" 2021-10-19'. <br>
+     * Lines before it, like 'Picked up JAVA_TOOL_OPTIONS: ...', are skipped. <br>
+     * The result gets cached per command.
+     */
+    @NotNull
+    public String getVersionOutput(@NotNull String javaCommand) throws IOException, InterruptedException {
+        String cached = versionOutputs.get(javaCommand);
+        if (cached != null) return cached;
+        Output output = run(javaCommand, "-version");
+        String versionLine = findVersionLine(output.text);
+        if (versionLine == null)
+            throw new IOException("'" + javaCommand + " -version' returned no version: " + output.text.trim());
+        versionOutputs.put(javaCommand, versionLine);
+        return versionLine;
+    }
+
+    /**
+     * Returns the first line containing 'version "', or null if there is none.
+     */
+    @Nullable
+    public String findVersionLine(@NotNull String versionOutput) {
+        for (String line :
+                versionOutput.split("\\r?\\n")) {
+            if (line.contains("version \"")) return line.trim();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the major version of the provided java command, for example 8 for Java 1.8 or 17 for Java 17.
+     */
+    public int getMajorVersion(@NotNull String javaCommand) throws IOException, InterruptedException {
+        String output = getVersionOutput(javaCommand);
+        Integer major = parseMajorVersion(output);
+        if (major == null)
+            throw new IOException("Failed to determine Java version from: " + output);
+        return major;
+    }
+
+    /**
+     * Runs '[javaCommand] [flag] -version' and returns true if the JVM started successfully with that flag. <br>
+     * The result gets cached per command and flag.
+     */
+    public boolean isFlagSupported(@NotNull String javaCommand, @NotNull String flag) throws IOException, InterruptedException {
+        String key = javaCommand + " " + flag;
+        Boolean cached = supportedFlags.get(key);
+        if (cached != null) return cached;
+        boolean isSupported = run(javaCommand, flag, "-version").exitCode == 0;
+        supportedFlags.put(key, isSupported);
+        return isSupported;
+    }
+
+    /**
+     * Runs the command and returns its output. <br>
+     * The output is read in a separate thread, so that a JVM that hangs gets killed after {@link #TIMEOUT_SECONDS},
+     * or as soon as the calling thread gets interrupted.
+     */
+    @NotNull
+    private static Output run(@NotNull String... command) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .start();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Thread reader = new Thread(() -> {
+            try (InputStream in = process.getInputStream()) {
+                byte[] buffer = new byte[8192];
+                int count;
+                while ((count = in.read(buffer)) != -1) {
+                    bytes.write(buffer, 0, count);
+                }
+            } catch (IOException ignored) { // Process got killed
+            }
+        }, "Java-Output-Reader");
+        reader.setDaemon(true);
+        reader.start();
+        boolean isFinished = false;
+        try {
+            isFinished = process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } finally {
+            if (!isFinished) process.destroyForcibly();
+        }
+        if (!isFinished)
+            throw new IOException("'" + String.join(" ", command) + "' didn't finish within " + TIMEOUT_SECONDS + " seconds!");
+        reader.join(5000); // Usually already done, since the output ends with the process
+        return new Output(process.exitValue(), new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses the major version from the version line of 'java -version', see {@link #getVersionOutput(String)}.
+     * Handles the old '1.8.0_301' and the new '17.0.1' or '17-ea' formats.
+     *
+     * @return null if the line doesn't contain a version.
+     */
+    @Nullable
+    public Integer parseMajorVersion(@NotNull String versionOutput) {
+        int start = versionOutput.indexOf('"');
+        int end = versionOutput.indexOf('"', start + 1);
+        if (start == -1 || end == -1) return null;
+        String version = versionOutput.substring(start + 1, end);
+        if (version.startsWith("1.")) version = version.substring(2);
+        int i = 0;
+        while (i < version.length() && Character.isDigit(version.charAt(i))) i++;
+        if (i == 0) return null;
+        return Integer.parseInt(version.substring(0, i));
+    }
+
+    private static class Output {
+        private final int exitCode;
+        private final String text;
+
+        private Output(int exitCode, @NotNull String text) {
+            this.exitCode = exitCode;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.monitoring;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GcLogReaderTest {
+
+    @Test
+    void isGcLogSet() {
+        assertFalse(GcLogReader.isGcLogSet(Arrays.asList("java", "-Xmx4G", "-XX:+UseG1GC")));
+        assertTrue(GcLogReader.isGcLogSet(Arrays.asList("java", "-Xloggc:gc.log")));
+        assertTrue(GcLogReader.isGcLogSet(Arrays.asList("java", "-Xlog:gc*:file=logs/gc.log")));
+        assertTrue(GcLogReader.isGcLogSet(GcLogReader.getFlags("gc.log", 17)));
+        assertTrue(GcLogReader.isGcLogSet(GcLogReader.getFlags("gc.log", 8)));
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.monitoring;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HangWatchdogTest {
+
+    @Test
+    void diagnosticsNeverReturn() throws InterruptedException {
+        long start = System.currentTimeMillis();
+        // Like a jcmd that hangs and ignores interrupts
+        assertFalse(HangWatchdog.runWithDeadline(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ignored) {
+                }
+            }
+        }, 500));
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    @Test
+    void diagnosticsFinish() throws InterruptedException {
+        assertTrue(HangWatchdog.runWithDeadline(() -> {
+        }, 5000));
+    }
+
+    @Test
+    void probeReplyHidden() throws InterruptedException {
+        HangWatchdog watchdog = new HangWatchdog();
+        watchdog.onServerStart();
+        assertFalse(watchdog.onServerOutput("[12:00:00 INFO]: Done (3.2s)! For help, type \"help\"", false));
+        assertFalse(watchdog.onServerOutput("[12:00:05 INFO]: Player joined", false));
+
+        watchdog.onProbe(System.currentTimeMillis());
+        assertTrue(watchdog.onServerOutput("[12:00:10 INFO]: There are 1 out of maximum 20 players online.", false));
+        assertTrue(watchdog.onServerOutput("[12:00:10 INFO]: default: Steve", false));
+        Thread.sleep(200);
+        assertFalse(watchdog.onServerOutput("[12:00:11 INFO]: Saving chunks", false));
+
+        // Reply to someone else's command
+        watchdog.onProbe(System.currentTimeMillis());
+        watchdog.onCommandSubmitted();
+        assertFalse(watchdog.onServerOutput("[12:00:20 INFO]: Teleported Steve", false));
+        Thread.sleep(200);
+
+        // Tick monitor replies aren't the probes reply
+        watchdog.onProbe(System.currentTimeMillis());
+        assertFalse(watchdog.onServerOutput("[12:00:30 INFO]: TPS from last 1m, 5m, 15m: 20.0, 20.0, 20.0", true));
+        assertTrue(watchdog.onServerOutput("[12:00:30 INFO]: There are 0 out of maximum 20 players online.", false));
+    }
+}
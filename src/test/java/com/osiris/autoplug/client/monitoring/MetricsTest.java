@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.monitoring;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsTest {
+
+    @Test
+    void export() {
+        Metrics metrics = new Metrics();
+        Metrics.Counter counter = metrics.counter("test_lines", "Lines.", "sink");
+        Metrics.Histogram histogram = metrics.histogram("test_duration_seconds", "Duration.", new double[]{0.1, 1});
+        metrics.gauge("test_value", "Value.", () -> 2.5);
+
+        counter.labels("Terminal").add(3);
+        counter.labels("Terminal").increment();
+        histogram.get().observe(0.05);
+        histogram.get().observe(0.5);
+        histogram.get().observe(5);
+
+        String export = metrics.export();
+        assertTrue(export.contains("# TYPE test_lines counter\n"));
+        assertTrue(export.contains("test_lines_total{sink=\"Terminal\"} 4\n"));
+        assertTrue(export.contains("test_duration_seconds_bucket{le=\"0.1\"} 1\n"));
+        assertTrue(export.contains("test_duration_seconds_bucket{le=\"1\"} 2\n"));
+        assertTrue(export.contains("test_duration_seconds_bucket{le=\"+Inf\"} 3\n"));
+        assertTrue(export.contains("test_duration_seconds_count 3\n"));
+        assertTrue(export.contains("test_duration_seconds_sum 5.55\n"));
+        assertTrue(export.contains("test_value 2.5\n"));
+        assertTrue(export.endsWith("# EOF\n"));
+        assertEquals(4, counter.labels("Terminal").sum());
+    }
+}
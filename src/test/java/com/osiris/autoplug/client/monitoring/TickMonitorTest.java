@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.monitoring;
+
+import com.osiris.autoplug.core.logger.AL;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TickMonitorTest {
+
+    @BeforeAll
+    static void beforeAll() {
+        new AL().start();
+    }
+
+    @Test
+    void paperReplies() {
+        TickMonitor monitor = readyMonitor();
+        monitor.onPoll(System.currentTimeMillis());
+        assertTrue(monitor.onServerOutput("[12:00:00 INFO]: §6TPS from last 1m, 5m, 15m: §a*20.0, §a19.98, §a20.0"));
+        assertTrue(monitor.onServerOutput("[12:00:00 INFO]: Server tick times (avg/min/max) from last 5s, 10s, 1m:"));
+        assertTrue(monitor.onServerOutput("[12:00:00 INFO]: ◴ 12.5/3.1/40.2, 12.0/3.0/41.0, 11.9/2.9/45.3"));
+        assertEquals(20.0, monitor.getTps().getLatest());
+        assertEquals(12.5, monitor.getMspt().getLatest());
+
+        // Colored values, with color codes or as ANSI escape sequences
+        monitor.onPoll(System.currentTimeMillis());
+        assertTrue(monitor.onServerOutput("[12:00:30 INFO]: §6Server tick times §e(§7avg§e/§7min§e/§7max§e)§6 from last 5s§6,§6 10s§6,§6 1m§6:"));
+        assertTrue(monitor.onServerOutput("[12:00:30 INFO]: §6◴ §a13.5§7/§a3.1§7/§a40.2§6, §a12.0§7/§a3.0§7/§a41.0§6, §a11.9§7/§a2.9§7/§a45.3"));
+        assertEquals(13.5, monitor.getMspt().getLatest());
+        monitor.onPoll(System.currentTimeMillis());
+        assertTrue(monitor.onServerOutput("[12:01:00 INFO]: Server tick times (avg/min/max) from last 5s, 10s, 1m:"));
+        assertTrue(monitor.onServerOutput("[12:01:00 INFO]: \u001B[0;33;22m◴ \u001B[0;32;1m14.5\u001B[0;37;22m/\u001B[0;32;1m3.1\u001B[0;37;22m/\u001B[0;32;1m40.2\u001B[m"));
+        assertEquals(14.5, monitor.getMspt().getLatest());
+    }
+
+    @Test
+    void vanillaUnknownCommands() {
+        TickMonitor monitor = readyMonitor();
+        monitor.onPoll(System.currentTimeMillis());
+        assertTrue(monitor.onServerOutput("[12:00:00] [Server thread/INFO]: Unknown or incomplete command, see below for error"));
+        assertTrue(monitor.onServerOutput("[12:00:00] [Server thread/INFO]: tps<--[HERE]"));
+        assertFalse(monitor.isTpsCommandSupported());
+        assertTrue(monitor.onServerOutput("[12:00:00] [Server thread/INFO]: Unknown or incomplete command, see below for error"));
+        assertTrue(monitor.onServerOutput("[12:00:00] [Server thread/INFO]: mspt<--[HERE]"));
+        assertFalse(monitor.isMsptCommandSupported());
+        assertFalse(monitor.onServerOutput("[12:00:00] [Server thread/INFO]: There are 0 of a max of 20 players online:"));
+
+        // Stays disabled after a restart
+        monitor.onServerStart();
+        assertFalse(monitor.isTpsCommandSupported());
+    }
+
+    @Test
+    void foreignUnknownCommand() {
+        TickMonitor monitor = readyMonitor();
+        monitor.onPoll(System.currentTimeMillis());
+        monitor.onCommandSubmitted(); // For example a user typing an unknown command
+        assertFalse(monitor.onServerOutput("[12:00:00 INFO]: Unknown command. Type \"/help\" for help."));
+        assertFalse(monitor.onServerOutput("[12:00:00] [Server thread/INFO]: Unknown or incomplete command, see below for error"));
+        assertFalse(monitor.onServerOutput("[12:00:00] [Server thread/INFO]: foo<--[HERE]"));
+        assertTrue(monitor.isTpsCommandSupported());
+        assertTrue(monitor.isMsptCommandSupported());
+    }
+
+    private TickMonitor readyMonitor() {
+        TickMonitor monitor = new TickMonitor();
+        monitor.onServerOutput("[12:00:00 INFO]: Done (5.123s)! For help, type \"help\"");
+        return monitor;
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.monitoring;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeSeriesTest {
+
+    @Test
+    void percentiles() {
+        TimeSeries series = new TimeSeries(100);
+        assertTrue(Double.isNaN(series.getPercentile(50, 0)));
+        for (int i = 1; i <= 150; i++) {
+            series.add(i, i);
+        }
+        // Only the last 100 values (51-150) are kept
+        assertEquals(100, series.getSize());
+        assertEquals(150, series.getLatest());
+        assertEquals(51, series.getPercentile(0, 0));
+        assertEquals(100, series.getPercentile(50, 0));
+        assertEquals(145, series.getPercentile(95, 0));
+        assertEquals(150, series.getPercentile(100, 0));
+        // Only values added at or after time 141
+        assertEquals(10, series.getValuesSince(141).length);
+        assertEquals(145, series.getPercentile(50, 141));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.network.online;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchedLineWriterTest {
+
+    @Test
+    void closeWritesPendingLines() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BatchedLineWriter writer = new BatchedLineWriter("test", out, 60000, 1024 * 1024, false);
+        for (int i = 0; i < 100; i++) {
+            writer.writeLine("line " + i);
+        }
+        writer.close();
+        String[] lines = out.toString().split(System.lineSeparator());
+        assertEquals(100, lines.length);
+        assertEquals("line 99", lines[99]);
+    }
+
+    @Test
+    void stalledConnection() throws InterruptedException {
+        CountDownLatch stall = new CountDownLatch(1);
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        OutputStream out = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                try {
+                    stall.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                synchronized (received) {
+                    received.write(b, off, len);
+                }
+            }
+        };
+        int maxBatch = 1000;
+        BatchedLineWriter writer = new BatchedLineWriter("test", out, 0, maxBatch, false);
+        int count = 10000;
+        for (int i = 0; i < count; i++) {
+            writer.writeLine(String.format("line %05d", i));
+        }
+        assertTrue(writer.getCountDropped() > 0);
+        // The batch stuck in the writer thread and the pending lines are both limited
+        int lineChars = 10 + System.lineSeparator().length();
+        assertTrue((count - writer.getCountDropped()) * lineChars <= 2L * maxBatch * BatchedLineWriter.MAX_PENDING_BATCHES);
+
+        stall.countDown();
+        writer.close();
+        String[] lines;
+        synchronized (received) {
+            lines = received.toString().split(System.lineSeparator());
+        }
+        assertEquals(count - writer.getCountDropped(), lines.length);
+        assertEquals(String.format("line %05d", count - 1), lines[lines.length - 1]);
+    }
+}
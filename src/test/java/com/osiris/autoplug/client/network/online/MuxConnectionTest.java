@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.network.online;
+
+import com.osiris.autoplug.core.logger.AL;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Uses a local stand-in for AutoPlug-Web, which accepts echo channels (type 1) and rejects all other types.
+ */
+class MuxConnectionTest {
+    private static final int WINDOW = 32 * 1024;
+    private ServerSocket serverSocket;
+    private MuxConnection web;
+    private MuxConnection client;
+
+    @BeforeAll
+    static void beforeAll() {
+        new AL().start();
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        Socket clientSocket = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+        Socket webSocket = serverSocket.accept();
+        web = new MuxConnection("Web", webSocket.getInputStream(), webSocket.getOutputStream(), webSocket,
+                channel -> {
+                    if (channel.getConType() != 1) return (byte) 4;
+                    Thread echo = new Thread(() -> {
+                        byte[] buffer = new byte[8192];
+                        int count;
+                        try (InputStream in = channel.getIn(); OutputStream out = channel.getOut()) {
+                            while ((count = in.read(buffer)) != -1) {
+                                out.write(buffer, 0, count);
+                            }
+                        } catch (IOException ignored) {
+                        }
+                    });
+                    echo.start();
+                    return (byte) 0;
+                }, false, WINDOW);
+        client = new MuxConnection("Client", clientSocket.getInputStream(), clientSocket.getOutputStream(), clientSocket,
+                null, true, WINDOW);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        client.close();
+        web.close();
+        serverSocket.close();
+    }
+
+    @Test
+    void echoMoreThanTheWindow() throws Exception {
+        MuxChannel low = client.openChannel((byte) 1, MuxChannel.PRIORITY_LOW);
+        MuxChannel high = client.openChannel((byte) 1, MuxChannel.PRIORITY_HIGH);
+        byte[] bulk = new byte[1024 * 1024];
+        new Random(1).nextBytes(bulk);
+        // The echo blocks once the windows are full, thus writing and reading must happen at the same time
+        Thread writer = new Thread(() -> {
+            try {
+                low.getOut().write(bulk);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        writer.start();
+
+        // The high priority channel isn't blocked by the bulk transfer
+        high.setReadTimeout(5000);
+        high.getOut().write("ping".getBytes());
+        byte[] pong = new byte[4];
+        new DataInputStream(high.getIn()).readFully(pong);
+        assertEquals("ping", new String(pong));
+
+        byte[] received = new byte[bulk.length];
+        low.setReadTimeout(10000);
+        new DataInputStream(low.getIn()).readFully(received);
+        writer.join();
+        assertArrayEquals(bulk, received);
+
+        low.close();
+        high.close();
+        assertFalse(low.isOpen());
+    }
+
+    @Test
+    void unknownConnectionType() {
+        assertThrows(UnknownConnectionTypeException.class, () -> client.openChannel((byte) 99, MuxChannel.PRIORITY_NORMAL));
+        assertEquals(0, client.getCountChannels());
+    }
+
+    @Test
+    void remoteClose() throws Exception {
+        MuxChannel channel = client.openChannel((byte) 1, MuxChannel.PRIORITY_NORMAL);
+        channel.setReadTimeout(5000);
+        web.close();
+        assertEquals(-1, channel.getIn().read());
+        assertFalse(channel.isOpen());
+    }
+}
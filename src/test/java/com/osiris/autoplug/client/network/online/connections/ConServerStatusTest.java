@@ -8,11 +8,18 @@
 
 package com.osiris.autoplug.client.network.online.connections;
 
+import com.osiris.autoplug.client.utils.UFDataIn;
+import com.osiris.autoplug.client.utils.UFDataOut;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 class ConServerStatusTest {
 
     @Test
@@ -27,4 +34,31 @@ class ConServerStatusTest {
         System.out.println(df.format(f));
         Float.parseFloat(df.format(f));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testDelta() throws IOException {
+        ConServerStatus.Status sent = new ConServerStatus.Status();
+        assertEquals(ConServerStatus.Status.ALL, sent.diff(null));
+
+        ConServerStatus.Status status = new ConServerStatus.Status();
+        status.currentPlayers = 3;
+        status.memUsed = 0.005f; // Too small to be a change
+        assertEquals(ConServerStatus.Status.PLAYERS, status.diff(sent));
+
+        status.memUsed = 2.5f;
+        int fields = status.diff(sent);
+        assertEquals(ConServerStatus.Status.PLAYERS | ConServerStatus.Status.MEM_USED, fields);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        UFDataOut out = new UFDataOut(bytes, UFDataOut.VERSION_BINARY);
+        out.writeShort((short) fields);
+        status.write(out, fields);
+        out.flush();
+        UFDataIn in = new UFDataIn(new ByteArrayInputStream(bytes.toByteArray()), UFDataOut.VERSION_BINARY);
+        assertEquals(fields, in.readShort());
+        assertEquals(3, in.readInt());
+        assertEquals(2.5f, in.readFloat());
+
+        sent.set(status, fields);
+        assertEquals(0, status.diff(sent));
+    }
+}
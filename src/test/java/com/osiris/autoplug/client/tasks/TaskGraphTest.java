@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.tasks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TaskGraphTest {
+
+    @Test
+    void dependenciesAndLimits() throws Exception {
+        List<String> finished = new CopyOnWriteArrayList<>();
+        AtomicInteger runningDisk = new AtomicInteger();
+        AtomicInteger maxRunningDisk = new AtomicInteger();
+
+        Thread self = task("self", finished, null, null);
+        Thread backup1 = task("backup1", finished, runningDisk, maxRunningDisk);
+        Thread backup2 = task("backup2", finished, runningDisk, maxRunningDisk);
+        Thread backup3 = task("backup3", finished, runningDisk, maxRunningDisk);
+        Thread updater = task("updater", finished, null, null);
+
+        new TaskGraph()
+                .setLimit(TaskGraph.Resource.DISK, 1)
+                .add(self, TaskGraph.Resource.NETWORK)
+                .add(backup1, TaskGraph.Resource.DISK, self)
+                .add(backup2, TaskGraph.Resource.DISK, self)
+                .add(backup3, TaskGraph.Resource.DISK, self)
+                .add(null, TaskGraph.Resource.CPU, self) // Ignored
+                .add(updater, TaskGraph.Resource.NETWORK, self, backup2, null)
+                .start().await();
+
+        assertEquals(5, finished.size());
+        assertEquals("self", finished.get(0));
+        assertTrue(finished.indexOf("updater") > finished.indexOf("backup2"));
+        assertEquals(1, maxRunningDisk.get());
+        // backup2 has a dependent, thus it goes first
+        assertEquals("backup2", finished.get(1));
+    }
+
+    private Thread task(String name, List<String> finished, AtomicInteger running, AtomicInteger maxRunning) {
+        return new Thread(() -> {
+            if (running != null) maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+            }
+            if (running != null) running.decrementAndGet();
+            finished.add(name);
+        }, name);
+    }
+}
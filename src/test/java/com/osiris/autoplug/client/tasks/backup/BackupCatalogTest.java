@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.tasks.backup;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BackupCatalogTest {
+
+    @Test
+    void selectGFS() {
+        // One backup every 6 hours, for 30 days
+        List<BackupCatalog.Entry> entries = new ArrayList<>();
+        LocalDateTime start = LocalDateTime.of(2021, 1, 1, 0, 0);
+        for (int i = 0; i < 30 * 4; i++) {
+            BackupCatalog.Entry e = new BackupCatalog.Entry();
+            e.archive = "backup-" + i + ".zip";
+            e.created = start.plusHours(i * 6L).toInstant(ZoneOffset.UTC).toEpochMilli();
+            entries.add(e);
+        }
+        BackupCatalog.Entry newest = entries.get(entries.size() - 1);
+
+        List<BackupCatalog.Entry> keep = BackupCatalog.selectGFS(entries, 0, 7, 0, ZoneOffset.UTC);
+        assertEquals(7, keep.size());
+        assertTrue(keep.contains(newest));
+
+        // The newest backups of the last 4 hours with backups are the 4 newest backups,
+        // which are part of the last 7 days too
+        keep = BackupCatalog.selectGFS(entries, 4, 7, 0, ZoneOffset.UTC);
+        assertEquals(4 + 6, keep.size());
+
+        keep = BackupCatalog.selectGFS(entries, 0, 0, 0, ZoneOffset.UTC);
+        assertEquals(1, keep.size());
+        assertEquals(newest, keep.get(0));
+    }
+}
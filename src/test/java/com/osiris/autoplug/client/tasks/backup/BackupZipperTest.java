@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.tasks.backup;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BackupZipperTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void commit() throws IOException {
+        File source = createSource();
+        File zip = dir.resolve("worlds-backup-test.zip").toFile();
+        try (BackupZipper zipper = new BackupZipper(zip, null)) {
+            zipper.add(source);
+            zipper.commit();
+            assertNotNull(zipper.getSha256());
+            assertEquals(2, zipper.getCountFiles());
+        }
+        assertTrue(zip.exists());
+        assertFalse(new File(zip.getPath() + ".tmp").exists());
+        try (ZipFile zipFile = new ZipFile(zip)) {
+            assertNotNull(zipFile.getEntry("source/big.bin"));
+        }
+    }
+
+    @Test
+    void failedMidZip() throws IOException {
+        File source = createSource();
+        File zip = dir.resolve("worlds-backup-test.zip").toFile();
+        // Limited to 1kb/s, thus sleeps while reading the first file, which fails since the thread is interrupted
+        BandwidthLimiter limiter = new BandwidthLimiter().setMaxBytesPerSecond(1024).setAdaptive(false);
+        try (BackupZipper zipper = new BackupZipper(zip, limiter)) {
+            Thread.currentThread().interrupt();
+            try {
+                assertThrows(InterruptedIOException.class, () -> zipper.add(source));
+            } finally {
+                Thread.interrupted();
+            }
+            assertTrue(new File(zip.getPath() + ".tmp").exists());
+            // Like the backup tasks, which continue with the next file after a failed one
+            assertThrows(IOException.class, zipper::commit);
+        }
+        assertFalse(zip.exists());
+        assertFalse(new File(zip.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    void readErrorAbortsZip() throws IOException {
+        File source = createSource();
+        File zip = dir.resolve("worlds-backup-test.zip").toFile();
+        // Fails after the first 1000 bytes of a file, like a disk error would
+        BandwidthLimiter failing = new BandwidthLimiter() {
+            @Override
+            public InputStream wrap(@NotNull InputStream in) {
+                return new FilterInputStream(in) {
+                    private int count;
+
+                    @Override
+                    public int read(@NotNull byte[] b, int off, int len) throws IOException {
+                        if (count >= 1000) throw new IOException("Disk error");
+                        int read = super.read(b, off, Math.min(len, 1000));
+                        if (read > 0) count += read;
+                        return read;
+                    }
+                };
+            }
+        };
+        try (BackupZipper zipper = new BackupZipper(zip, failing)) {
+            IOException e = assertThrows(IOException.class, () -> zipper.add(source));
+            assertTrue(e.getMessage().contains("Failed to read"));
+            // No truncated but valid looking entry gets committed
+            assertThrows(IOException.class, zipper::commit);
+        }
+        assertFalse(zip.exists());
+        assertFalse(new File(zip.getPath() + ".tmp").exists());
+    }
+
+    private File createSource() throws IOException {
+        Path source = dir.resolve("source");
+        Files.createDirectories(source);
+        Files.write(source.resolve("big.bin"), new byte[200000]);
+        Files.write(source.resolve("small.txt"), "hello".getBytes());
+        return source.toFile();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ConsoleHistoryTest {
+
+    @Test
+    void onHeap() {
+        test(new ConsoleHistory(100, 0));
+    }
+
+    @Test
+    void offHeap() {
+        test(new ConsoleHistory(100, 1024 * 1024));
+    }
+
+    @Test
+    void offHeapFullBuffer() {
+        // Each line has 10 bytes, thus only 10 lines fit into the buffer
+        ConsoleHistory history = new ConsoleHistory(100, 105);
+        for (int i = 0; i < 25; i++) {
+            history.add(String.format("line %05d", i));
+        }
+        List<ConsoleHistory.Line> lines = history.getLast(100);
+        assertEquals(history.getSize(), lines.size());
+        assertEquals(24, lines.get(lines.size() - 1).seq);
+        for (ConsoleHistory.Line line :
+                lines) {
+            assertEquals(String.format("line %05d", line.seq), line.text);
+        }
+    }
+
+    @Test
+    void offHeapMixedLengthsWrapping() {
+        // Lines of different lengths, so that the buffer wraps at different positions
+        // and sometimes leaves older lines at its end, behind the younger ones at its start
+        ConsoleHistory history = new ConsoleHistory(1000, 100);
+        for (int i = 0; i < 100; i++) {
+            history.add(mixedLine(i));
+            List<ConsoleHistory.Line> lines = history.getLast(1000);
+            assertEquals(history.getSize(), lines.size());
+            assertEquals(i, lines.get(lines.size() - 1).seq);
+            for (ConsoleHistory.Line line :
+                    lines) {
+                assertEquals(mixedLine((int) line.seq), line.text);
+            }
+        }
+    }
+
+    private String mixedLine(int i) {
+        int[] lengths = {95, 5, 80, 30, 60, 2, 3, 90, 41, 17};
+        StringBuilder builder = new StringBuilder(i + ":");
+        while (builder.length() < lengths[i % lengths.length]) {
+            builder.append('x');
+        }
+        return builder.toString();
+    }
+
+    private void test(ConsoleHistory history) {
+        for (int i = 0; i < 250; i++) {
+            history.add("[INFO] Line number " + i + (i % 50 == 0 ? " Can't keep up!" : ""));
+        }
+        assertEquals(100, history.getSize());
+        assertEquals(250, history.getNextSeq());
+
+        List<ConsoleHistory.Line> last = history.getLast(10);
+        assertEquals(10, last.size());
+        assertEquals(240, last.get(0).seq);
+        assertEquals("[INFO] Line number 249", last.get(9).text);
+
+        List<ConsoleHistory.Line> after = history.getAfter(245, 100);
+        assertEquals(4, after.size());
+        assertEquals(246, after.get(0).seq);
+        // Lines after 10 were already overwritten, thus starts with the oldest one
+        assertEquals(150, history.getAfter(10, 100).get(0).seq);
+
+        List<ConsoleHistory.Line> found = history.grep("can't KEEP up", 100);
+        assertEquals(2, found.size());
+        assertEquals(150, found.get(0).seq);
+        assertEquals(200, found.get(1).seq);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.utils;
+
+import com.osiris.autoplug.core.logger.AL;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DirectoryListingTest {
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void beforeAll() {
+        new AL().start();
+    }
+
+    @Test
+    void sorting() throws IOException {
+        Files.createDirectory(dir.resolve("b-dir"));
+        Files.createDirectory(dir.resolve("A-dir"));
+        Files.write(dir.resolve("small.txt"), new byte[10]);
+        Files.write(dir.resolve("big.txt"), new byte[1000]);
+        Files.write(dir.resolve(".hidden"), new byte[100]);
+        Files.setLastModifiedTime(dir.resolve("big.txt"), FileTime.fromMillis(1000));
+
+        try (DirectoryListing listing = new DirectoryListing(10000, 4)) {
+            List<DirectoryListing.Entry> entries = listing.list(dir, DirectoryListing.SORT_NAME, false);
+            assertEquals(5, entries.size());
+            // Directories first
+            assertEquals("A-dir", entries.get(0).name);
+            assertEquals("b-dir", entries.get(1).name);
+            assertTrue(entries.get(0).isDirectory);
+            assertEquals(".hidden", entries.get(2).name);
+
+            entries = listing.list(dir, DirectoryListing.SORT_SIZE, true);
+            assertEquals("big.txt", entries.get(2).name);
+            assertEquals(1000, entries.get(2).size);
+            assertEquals("small.txt", entries.get(4).name);
+
+            entries = listing.list(dir, DirectoryListing.SORT_LAST_MODIFIED, false);
+            assertEquals("big.txt", entries.get(2).name);
+            assertEquals(1000, entries.get(2).lastModified);
+        }
+    }
+
+    @Test
+    void invalidation() throws IOException, InterruptedException {
+        try (DirectoryListing listing = new DirectoryListing(60000, 4)) {
+            assertEquals(0, listing.list(dir, DirectoryListing.SORT_NAME, false).size());
+            Files.write(dir.resolve("new.txt"), new byte[1]);
+            // Depending on the platform, the watcher needs some time to notice the change
+            long deadline = System.currentTimeMillis() + 15000;
+            while (listing.list(dir, DirectoryListing.SORT_NAME, false).isEmpty() && System.currentTimeMillis() < deadline)
+                Thread.sleep(100);
+            assertEquals(1, listing.list(dir, DirectoryListing.SORT_NAME, false).size());
+
+            Files.write(dir.resolve("other.txt"), new byte[1]);
+            listing.invalidateAll();
+            assertEquals(2, listing.list(dir, DirectoryListing.SORT_NAME, false).size());
+        }
+    }
+}
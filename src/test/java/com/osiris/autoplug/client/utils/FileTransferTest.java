@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileTransferTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void wholeFile() throws IOException {
+        byte[] content = randomBytes(FileTransfer.CHUNK_SIZE * 3 + 123);
+        assertArrayEquals(content, transfer(content, 0, content.length, false));
+        assertArrayEquals(content, transfer(content, 0, content.length, true));
+    }
+
+    @Test
+    void range() throws IOException {
+        byte[] content = randomBytes(200000);
+        assertArrayEquals(Arrays.copyOfRange(content, 1000, 71000), transfer(content, 1000, 71000, false));
+        assertArrayEquals(Arrays.copyOfRange(content, 1000, 71000), transfer(content, 1000, 71000, true));
+        assertEquals(0, transfer(content, 5, 5, false).length);
+    }
+
+    @Test
+    void maxBytes() throws IOException {
+        byte[] content = randomBytes(100000);
+        ByteArrayOutputStream bytes = send(content, 0, content.length, false);
+        UFDataIn in = new UFDataIn(new ByteArrayInputStream(bytes.toByteArray()), UFDataOut.VERSION_BINARY);
+        assertThrows(IOException.class, () -> FileTransfer.receive(in, new ByteArrayOutputStream(), false, 99999));
+    }
+
+    @Test
+    void corrupted() throws IOException {
+        byte[] content = randomBytes(1000);
+        byte[] bytes = send(content, 0, content.length, false).toByteArray();
+        bytes[100]++; // Frame (4) + chunk (4) header, thus in the content
+        UFDataIn in = new UFDataIn(new ByteArrayInputStream(bytes), UFDataOut.VERSION_BINARY);
+        assertThrows(FileTransfer.ChecksumMismatchException.class, () -> FileTransfer.receive(in, new ByteArrayOutputStream(), false, Long.MAX_VALUE));
+    }
+
+    @Test
+    void chunksAlignedWithFrames() throws IOException {
+        byte[] content = randomBytes(FileTransfer.CHUNK_SIZE * 3);
+        Path file = dir.resolve("file.bin");
+        Files.write(file, content);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        UFDataOut out = new UFDataOut(bytes, UFDataOut.VERSION_BINARY);
+        out.writeLong(content.length); // Header
+        try (FileChannel channel = FileChannel.open(file)) {
+            FileTransfer.send(out, channel, 0, content.length, false);
+        }
+        // Header, 3 full chunks, end marker + checksum
+        DataInputStream frames = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        int[] expected = {8, UFDataOut.MAX_FRAME, UFDataOut.MAX_FRAME, UFDataOut.MAX_FRAME, 4 + 8};
+        for (int length : expected) {
+            assertEquals(length, frames.readInt());
+            assertEquals(length, frames.skipBytes(length));
+        }
+        assertEquals(0, frames.available());
+    }
+
+    private byte[] transfer(byte[] content, long start, long end, boolean compress) throws IOException {
+        ByteArrayOutputStream bytes = send(content, start, end, compress);
+        UFDataIn in = new UFDataIn(new ByteArrayInputStream(bytes.toByteArray()), UFDataOut.VERSION_BINARY);
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        assertEquals(end - start, FileTransfer.receive(in, received, compress, Long.MAX_VALUE));
+        return received.toByteArray();
+    }
+
+    private ByteArrayOutputStream send(byte[] content, long start, long end, boolean compress) throws IOException {
+        Path file = dir.resolve("file.bin");
+        Files.write(file, content);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (FileChannel channel = FileChannel.open(file)) {
+            assertEquals(end - start, FileTransfer.send(new UFDataOut(bytes, UFDataOut.VERSION_BINARY), channel, start, end, compress));
+        }
+        return bytes;
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+}
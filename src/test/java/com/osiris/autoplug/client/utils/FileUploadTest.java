@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileUploadTest {
+    private static final boolean IS_POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    @TempDir
+    Path dir;
+
+    @Test
+    void replace() throws IOException {
+        Path target = dir.resolve("server.properties");
+        Files.write(target, "old".getBytes());
+        if (IS_POSIX) Files.setPosixFilePermissions(target, PosixFilePermissions.fromString("rw-r-----"));
+        byte[] content = "new content".getBytes();
+        try (FileUpload upload = new FileUpload(target, content.length, 1000)) {
+            upload.receive(toTransfer(content), false);
+            assertArrayEquals("old".getBytes(), Files.readAllBytes(target)); // Unchanged until committed
+            upload.commit();
+        }
+        assertArrayEquals(content, Files.readAllBytes(target));
+        if (IS_POSIX)
+            assertEquals("rw-r-----", PosixFilePermissions.toString(Files.getPosixFilePermissions(target)));
+        assertEquals(1, countFiles()); // No temporary file left
+    }
+
+    @Test
+    void replaceThroughSymlink() throws IOException {
+        Path target = dir.resolve("real.yml");
+        Files.write(target, "old".getBytes());
+        Path link = dir.resolve("link.yml");
+        try {
+            Files.createSymbolicLink(link, target);
+        } catch (UnsupportedOperationException | IOException e) {
+            return; // Windows without the required privilege
+        }
+        byte[] content = "new".getBytes();
+        try (FileUpload upload = new FileUpload(link, content.length, 1000)) {
+            assertEquals(target.toRealPath(), upload.getTarget());
+            upload.receive(toTransfer(content), false);
+            upload.commit();
+        }
+        assertTrue(Files.isSymbolicLink(link));
+        assertArrayEquals(content, Files.readAllBytes(target));
+    }
+
+    @Test
+    void notCommitted() throws IOException {
+        Path target = dir.resolve("file.txt");
+        Files.write(target, "old".getBytes());
+        try (FileUpload upload = new FileUpload(target, 3, 1000)) {
+            upload.receive(toTransfer("new".getBytes()), false);
+        }
+        assertArrayEquals("old".getBytes(), Files.readAllBytes(target));
+        assertEquals(1, countFiles());
+    }
+
+    @Test
+    void tooBig() throws IOException {
+        Path target = dir.resolve("file.txt");
+        assertThrows(FileUpload.TooBigException.class, () -> new FileUpload(target, 1001, 1000));
+        assertThrows(FileUpload.TooBigException.class, () -> new FileUpload(target, -1, 1000));
+        assertEquals(0, countFiles());
+
+        // More content than announced
+        try (FileUpload upload = new FileUpload(target, 10, 1000)) {
+            assertThrows(IOException.class, () -> upload.receive(toTransfer(new byte[11]), false));
+        }
+        assertFalse(Files.exists(target));
+        assertEquals(0, countFiles());
+    }
+
+    private UFDataIn toTransfer(byte[] content) throws IOException {
+        Path source = Files.createTempFile("upload", ".tmp");
+        try {
+            Files.write(source, content);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (FileChannel channel = FileChannel.open(source)) {
+                FileTransfer.send(new UFDataOut(bytes, UFDataOut.VERSION_BINARY), channel, 0, content.length, false);
+            }
+            return new UFDataIn(new ByteArrayInputStream(bytes.toByteArray()), UFDataOut.VERSION_BINARY);
+        } finally {
+            Files.delete(source);
+        }
+    }
+
+    private long countFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JvmFlagProfileTest {
+    private static final long GB = 1024L * 1024 * 1024;
+    @TempDir
+    Path dir;
+
+    @Test
+    void computeHeapMb() {
+        assertEquals(12 * 1024, JvmFlagProfile.AIKAR.computeHeapMb(16 * GB));
+        assertEquals(3 * 1024, JvmFlagProfile.AIKAR.computeHeapMb(4 * GB)); // At least 1GB left
+        assertEquals(512, JvmFlagProfile.AIKAR.computeHeapMb(GB)); // Min. heap
+        assertEquals(2048, JvmFlagProfile.SMALL_HEAP.computeHeapMb(16 * GB));
+        assertEquals(1024, JvmFlagProfile.SMALL_HEAP.computeHeapMb(2 * GB));
+    }
+
+    @Test
+    void parseCgroupLimit() {
+        assertEquals(-1, JvmFlagProfile.parseCgroupLimit("max\n"));
+        assertEquals(-1, JvmFlagProfile.parseCgroupLimit("9223372036854771712\n")); // cgroup v1 unlimited
+        assertEquals(-1, JvmFlagProfile.parseCgroupLimit(""));
+        assertEquals(4 * GB, JvmFlagProfile.parseCgroupLimit((4 * GB) + "\n"));
+    }
+
+    @Test
+    void containerMemoryLimit() throws IOException {
+        File v2 = dir.resolve("memory.max").toFile();
+        File v1 = dir.resolve("memory.limit_in_bytes").toFile();
+        // No cgroup files, thus the hosts memory
+        assertEquals(64 * GB, JvmFlagProfile.getAvailableMemory(64 * GB, v2, v1));
+
+        Files.write(v1.toPath(), String.valueOf(4 * GB).getBytes());
+        assertEquals(4 * GB, JvmFlagProfile.getAvailableMemory(64 * GB, v2, v1));
+
+        Files.write(v2.toPath(), "max".getBytes()); // Unlimited in v2, thus v1 is checked too
+        assertEquals(4 * GB, JvmFlagProfile.getAvailableMemory(64 * GB, v2, v1));
+
+        Files.write(v2.toPath(), String.valueOf(2 * GB).getBytes());
+        assertEquals(2 * GB, JvmFlagProfile.getAvailableMemory(64 * GB, v2, v1));
+        // Limit bigger than the host
+        assertEquals(GB, JvmFlagProfile.getAvailableMemory(GB, v2, v1));
+    }
+
+    @Test
+    void flags() {
+        List<String> flags = JvmFlagProfile.AIKAR.getFlags(17, 4096, 4, false, true, true);
+        assertTrue(flags.contains("-Xms4096M"));
+        assertTrue(flags.contains("-Xmx4096M"));
+        assertTrue(flags.contains("-XX:+UseG1GC"));
+        assertTrue(flags.contains("-XX:+AlwaysPreTouch"));
+        assertTrue(flags.contains("-XX:G1HeapRegionSize=8M"));
+        assertTrue(flags.contains("-XX:ParallelGCThreads=4"));
+
+        // Auto computed heap
+        assertFalse(JvmFlagProfile.AIKAR.getFlags(17, 4096, 4, false, false, true).contains("-XX:+AlwaysPreTouch"));
+
+        assertTrue(JvmFlagProfile.ZGC.getFlags(21, 4096, 4, true, true, true).contains("-XX:+ZGenerational"));
+        assertFalse(JvmFlagProfile.ZGC.getFlags(23, 4096, 4, true, true, true).contains("-XX:+ZGenerational"));
+        assertTrue(JvmFlagProfile.NONE.getFlags(17, 4096, 4, false, true, true).isEmpty());
+        assertEquals(13, JvmFlagProfile.computeParallelGCThreads(16));
+    }
+
+    @Test
+    void userSelectedGc() {
+        assertEquals("-XX:+UseG1GC", JvmFlagProfile.findGcFlag(Arrays.asList("-Xmx4G", "-XX:+UseG1GC", "-XX:MaxGCPauseMillis=200")));
+        assertEquals("-XX:+UseConcMarkSweepGC", JvmFlagProfile.findGcFlag(Arrays.asList("-XX:+UseConcMarkSweepGC")));
+        assertNull(JvmFlagProfile.findGcFlag(Arrays.asList("-Xmx4G", "-XX:+DisableExplicitGC", "-XX:+UseGCOverheadLimit")));
+        assertNull(JvmFlagProfile.findGcFlag(Arrays.asList("-XX:+UseAdaptiveSizePolicyWithSystemGC")));
+
+        List<String> flags = JvmFlagProfile.ZGC.getFlags(21, 4096, 4, false, true, false);
+        assertTrue(flags.contains("-Xmx4096M"));
+        assertFalse(flags.contains("-XX:+UseZGC"));
+        assertFalse(flags.contains("-XX:+ZGenerational"));
+        assertFalse(JvmFlagProfile.SMALL_HEAP.getFlags(17, 1024, 2, false, true, false).contains("-XX:+UseSerialGC"));
+        for (String flag :
+                JvmFlagProfile.AIKAR.getFlags(17, 4096, 4, false, true, false)) {
+            assertFalse(flag.contains("G1") || flag.contains("GCThreads"), flag);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.utils;
+
+import org.apache.commons.lang.StringUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link KeywordClassifier} with the containsIgnoreCase chain,
+ * that was used before to color the servers output. <br>
+ * Run the main method to execute it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeywordClassifierBenchmark {
+    private final String[] lines = {
+            "[12:34:56] [Server thread/INFO]: Preparing spawn area: 83%",
+            "[12:34:56] [Server thread/INFO]: Steve[/127.0.0.1:51234] logged in with entity id 123 at ([world]12.5, 64.0, -3.5)",
+            "[12:34:56] [Server thread/WARN]: Can't keep up! Is the server overloaded? Running 5023ms or 100 ticks behind",
+            "[12:34:56] [Server thread/ERROR]: Could not pass event PlayerJoinEvent to ExamplePlugin v1.0",
+            "java.lang.NullPointerException: Cannot invoke \"String.length()\" because \"s\" is null",
+            "[12:34:56] [Server thread/INFO]: [ModLoader] Loaded 312 recipes from 57 mods in 1423ms, nothing to report here",
+            "[12:34:56] [Server thread/DEBUG]: Chunk [12, -4] saved"
+    };
+    private KeywordClassifier<Integer> classifier;
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(KeywordClassifierBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+    @Setup
+    public void setup() {
+        classifier = new KeywordClassifier<Integer>()
+                .add("error", 0)
+                .add("critical", 0)
+                .add("exception", 0)
+                .add("warn", 1)
+                .add("debug", 2)
+                .build();
+    }
+
+    @Benchmark
+    public void containsIgnoreCaseChain(Blackhole bh) {
+        for (String line : lines) {
+            int result;
+            if (StringUtils.containsIgnoreCase(line, "error") ||
+                    StringUtils.containsIgnoreCase(line, "critical") ||
+                    StringUtils.containsIgnoreCase(line, "exception")) {
+                result = 0;
+            } else if (StringUtils.containsIgnoreCase(line, "warn") ||
+                    StringUtils.containsIgnoreCase(line, "warning")) {
+                result = 1;
+            } else if (StringUtils.containsIgnoreCase(line, "debug")) {
+                result = 2;
+            } else {
+                result = -1;
+            }
+            bh.consume(result);
+        }
+    }
+
+    @Benchmark
+    public void keywordClassifier(Blackhole bh) {
+        for (String line : lines) {
+            bh.consume(classifier.classify(line));
+        }
+    }
+}
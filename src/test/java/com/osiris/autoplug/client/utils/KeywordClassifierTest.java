@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class KeywordClassifierTest {
+
+    @Test
+    void classify() {
+        KeywordClassifier<String> classifier = new KeywordClassifier<String>()
+                .add("error", "red")
+                .add("exception", "red")
+                .add("warn", "yellow")
+                .add("debug", "blue")
+                .add("größe", "non-ascii")
+                .build();
+        assertNull(classifier.classify("[12:00:00 INFO]: Done (3.2s)! For help, type \"help\""));
+        assertEquals("yellow", classifier.classify("[12:00:00 WARNING]: Something"));
+        assertEquals("blue", classifier.classify("[DEBUG] something"));
+        // Higher priority wins, no matter the position in the line
+        assertEquals("red", classifier.classify("[WARN] java.lang.NullPointerException"));
+        assertEquals("red", classifier.classify("ErRoR at the start, debug later"));
+        assertEquals("non-ascii", classifier.classify("Maximale GRÖSSE erreicht, GRÖßE"));
+    }
+
+    @Test
+    void overlappingKeywords() {
+        // Classic Aho-Corasick example, where keywords are suffixes/prefixes of each other
+        KeywordClassifier<Integer> classifier = new KeywordClassifier<Integer>()
+                .add("hers", 0)
+                .add("his", 1)
+                .add("she", 2)
+                .add("he", 3)
+                .build();
+        assertEquals(2, classifier.classify("ushe"));
+        assertEquals(0, classifier.classify("ushers"));
+        assertEquals(3, classifier.classify("ahe"));
+        assertEquals(1, classifier.classify("this"));
+        assertNull(classifier.classify("hi s"));
+    }
+}
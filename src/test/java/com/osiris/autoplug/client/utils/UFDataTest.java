@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UFDataTest {
+
+    @Test
+    void text() throws IOException {
+        test(UFDataOut.VERSION_TEXT);
+    }
+
+    @Test
+    void binary() throws IOException {
+        test(UFDataOut.VERSION_BINARY);
+    }
+
+    @Test
+    void binaryFrames() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        UFDataOut out = new UFDataOut(bytes, UFDataOut.VERSION_BINARY);
+        out.writeInt(1);
+        out.writeLine("äöü");
+        assertEquals(0, bytes.size()); // Nothing sent before the message ends
+        out.flush();
+        assertEquals(4 + 4 + 4 + 6, bytes.size()); // Frame length, int, string length, string
+        out.flush();
+        assertEquals(4 + 4 + 4 + 6, bytes.size()); // Empty messages aren't sent
+
+        // Values bigger than a frame get split, which is transparent to the reader
+        String big = new String(new char[UFDataOut.MAX_FRAME * 2]).replace('\0', 'x');
+        out.writeLine(big);
+        out.writeLong(Long.MIN_VALUE);
+        out.flush();
+        UFDataIn in = new UFDataIn(new ByteArrayInputStream(bytes.toByteArray()), UFDataOut.VERSION_BINARY);
+        assertEquals(1, in.readInt());
+        assertEquals("äöü", in.readLine());
+        assertEquals(big, in.readLine());
+        assertEquals(Long.MIN_VALUE, in.readLong());
+        assertNull(in.readLine());
+    }
+
+    private void test(int version) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        UFDataOut out = new UFDataOut(bytes, version);
+        out.writeLine("/some/path");
+        out.writeBoolean(true);
+        out.writeLong(1234567890123L);
+        out.writeInt(-5);
+        out.writeFloat(1.5f);
+        out.writeByte((byte) 3);
+        out.writeBoolean(false);
+        out.flush();
+
+        UFDataIn in = new UFDataIn(new ByteArrayInputStream(bytes.toByteArray()), version);
+        assertEquals("/some/path", in.readLine());
+        assertTrue(in.readBoolean());
+        assertEquals(1234567890123L, in.readLong());
+        assertEquals(-5, in.readInt());
+        assertEquals(1.5f, in.readFloat());
+        assertEquals(3, in.readByte());
+        assertFalse(in.readBoolean());
+    }
+}
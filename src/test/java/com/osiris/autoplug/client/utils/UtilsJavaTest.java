@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2021 Osiris-Team.
+ * All rights reserved.
+ *
+ * This software is copyrighted work, licensed under the terms
+ * of the MIT-License. Consult the "LICENSE" file for details.
+ */
+
+package com.osiris.autoplug.client.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UtilsJavaTest {
+
+    @Test
+    void versionLine() {
+        UtilsJava utils = new UtilsJava();
+        String output = "Picked up JAVA_TOOL_OPTIONS: -Xmx512m\n" +
+                "Picked up _JAVA_OPTIONS: -Dfile.encoding=UTF-8\r\n" +
+                "openjdk version \"17.0.1\" 2021-10-19\n" +
+                "OpenJDK Runtime Environment (build 17.0.1+12-39)\n";
+        assertEquals("openjdk version \"17.0.1\" 2021-10-19", utils.findVersionLine(output));
+        assertEquals(17, utils.parseMajorVersion(utils.findVersionLine(output)));
+        assertEquals(8, utils.parseMajorVersion("java version \"1.8.0_301\""));
+        assertEquals(21, utils.parseMajorVersion("openjdk version \"21-ea\" 2023-09-19"));
+        assertNull(utils.findVersionLine("Error: could not find libjava.so"));
+    }
+
+    @Test
+    void currentJava() throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        String spec = System.getProperty("java.specification.version");
+        int expected = Integer.parseInt(spec.startsWith("1.") ? spec.substring(2) : spec);
+        UtilsJava utils = new UtilsJava();
+        assertEquals(expected, utils.getMajorVersion(java));
+        assertTrue(utils.isFlagSupported(java, "-Xmx64m"));
+        assertFalse(utils.isFlagSupported(java, "-XX:+ThisFlagDoesNotExist"));
+    }
+}